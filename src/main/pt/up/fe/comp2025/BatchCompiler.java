@@ -0,0 +1,292 @@
+package pt.up.fe.comp2025;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2025.backend.ClassFileGenerator;
+import pt.up.fe.comp2025.backend.JasminBackendImpl;
+import pt.up.fe.comp2025.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2025.parser.JmmParserImpl;
+import pt.up.fe.comp2025.utils.PhaseProfiler;
+import pt.up.fe.comp2025.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Compiles several Java-- classes in a single run, given with '-b=<DIR|GLOB|MANIFEST>'.
+ * <p>
+ * The input can be a directory (every .jmm file inside it, recursively), a glob pattern (relative patterns start at
+ * the working directory), a single .jmm file, or a manifest file with one path per line. Every class goes through the full
+ * pipeline in its own task of a fork-join pool, with fresh instances of every stage. The Jasmin code (or the class file,
+ * with '-e=class') of each class is written next to its input file, and the reports and profiling results are
+ * aggregated at the end.
+ */
+public class BatchCompiler {
+
+    private static final String JMM_EXTENSION = ".jmm";
+
+    private final Map<String, String> config;
+
+    public BatchCompiler(Map<String, String> config) {
+        this.config = config;
+    }
+
+    public void run() {
+        var inputs = resolveInputs(CompilerConfig.getBatch(config).orElseThrow());
+
+        if (inputs.isEmpty()) {
+            throw new RuntimeException("No input files found for '-b=" + CompilerConfig.getBatch(config).get() + "'");
+        }
+
+        var pool = new ForkJoinPool(Math.min(inputs.size(), Runtime.getRuntime().availableProcessors()));
+        List<Future<Compilation>> futures = new ArrayList<>();
+
+        try {
+            for (var input : inputs) {
+                futures.add(pool.submit(() -> compile(input)));
+            }
+
+            // Results are collected in input order, so the aggregated output does not depend on scheduling
+            List<Compilation> compilations = new ArrayList<>();
+            for (var future : futures) {
+                compilations.add(future.get());
+            }
+
+            printSummary(compilations);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Batch compilation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Exception during batch compilation", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Compilation compile(File input) {
+        // Each compilation gets its own copy of the config, pointing to its input file
+        var fileConfig = new HashMap<>(config);
+        fileConfig.put(ConfigOptions.getInputFile(), input.getAbsolutePath());
+
+        var compilation = new Compilation(input);
+        var profiler = CompilerConfig.getProfile(config) ? PhaseProfiler.install() : null;
+
+        try {
+            String code = SpecsIo.read(input);
+
+            var parserResult = PhaseProfiler.measure("parse", () -> new JmmParserImpl().parse(code, fileConfig));
+            if (compilation.addReports(parserResult.getReports())) {
+                return compilation;
+            }
+
+            var analysis = new JmmAnalysisImpl();
+            var semanticsResult = PhaseProfiler.measure("semanticAnalysis", () -> analysis.semanticAnalysis(parserResult));
+            if (compilation.addReports(semanticsResult.getReports())) {
+                return compilation;
+            }
+
+            var optimization = new JmmOptimizationImpl();
+            var optimizedSemantics = PhaseProfiler.measure("optimizeAst", () -> optimization.optimize(semanticsResult));
+            var generatedOllir = PhaseProfiler.measure("toOllir", () -> optimization.toOllir(optimizedSemantics));
+            var ollirResult = PhaseProfiler.measure("optimizeOllir", () -> optimization.optimize(generatedOllir));
+            if (compilation.addReports(ollirResult.getReports())) {
+                return compilation;
+            }
+
+            if (CompilerConfig.getEmitClassFile(config)) {
+                var classFileGen = new ClassFileGenerator(ollirResult);
+                byte[] classFile = PhaseProfiler.measure("toClassFile", classFileGen::build);
+                if (compilation.addReports(classFileGen.getReports())) {
+                    return compilation;
+                }
+
+                compilation.output = Launcher.writeClassFile(input.getAbsoluteFile().getParentFile(),
+                        classFileGen.getClassName(), classFile);
+                return compilation;
+            }
+
+            var jasminResult = PhaseProfiler.measure("toJasmin", () -> new JasminBackendImpl().toJasmin(ollirResult));
+            if (compilation.addReports(jasminResult.getReports())) {
+                return compilation;
+            }
+
+            compilation.output = writeJasmin(input, jasminResult);
+        } catch (RuntimeException e) {
+            compilation.addReports(List.of(Report.newError(Stage.OTHER, -1, -1,
+                    "Exception while compiling '" + input + "'", e)));
+        } finally {
+            if (profiler != null) {
+                compilation.profiler = profiler;
+                PhaseProfiler.uninstall();
+            }
+        }
+
+        return compilation;
+    }
+
+    private File writeJasmin(File input, JasminResult jasminResult) {
+        var outputFile = new File(input.getAbsoluteFile().getParentFile(), jasminResult.getClassName() + ".j");
+        SpecsIo.write(outputFile, jasminResult.getJasminCode());
+        return outputFile;
+    }
+
+    private void printSummary(List<Compilation> compilations) {
+        int failed = 0;
+
+        for (var compilation : compilations) {
+            if (compilation.output != null) {
+                System.out.println("[OK]    " + compilation.input + " -> " + compilation.output);
+                continue;
+            }
+
+            failed++;
+            System.out.println("[ERROR] " + compilation.input);
+            for (var report : compilation.reports) {
+                System.out.println("        " + report);
+            }
+        }
+
+        System.out.println("Compiled " + (compilations.size() - failed) + " of " + compilations.size() + " files");
+
+        if (CompilerConfig.getProfile(config)) {
+            var profilers = compilations.stream()
+                    .filter(compilation -> compilation.profiler != null)
+                    .map(compilation -> compilation.profiler)
+                    .toList();
+            System.out.println("Aggregated over " + profilers.size() + " compilations.");
+            Launcher.printProfile(PhaseProfiler.merge(profilers), config);
+        }
+
+        if (failed > 0) {
+            throw new RuntimeException("Batch compilation failed for " + failed + " of " + compilations.size() + " files");
+        }
+    }
+
+    /**
+     * Expands the batch argument into the list of files to compile.
+     *
+     * @param batch a directory, a .jmm file, a manifest file or a glob pattern
+     * @return the files to compile, sorted by path
+     */
+    static List<File> resolveInputs(String batch) {
+        var path = new File(batch);
+
+        if (path.isDirectory()) {
+            return SpecsIo.getFilesRecursive(path, "jmm").stream()
+                    .sorted()
+                    .toList();
+        }
+
+        if (path.isFile()) {
+            if (path.getName().endsWith(JMM_EXTENSION)) {
+                return List.of(path);
+            }
+
+            return readManifest(path);
+        }
+
+        return expandGlob(batch);
+    }
+
+    private static List<File> readManifest(File manifest) {
+        var baseFolder = manifest.getAbsoluteFile().getParentFile();
+        List<File> files = new ArrayList<>();
+
+        for (var line : SpecsIo.read(manifest).split("\\R")) {
+            var entry = line.strip();
+
+            // Skip empty lines and comments
+            if (entry.isEmpty() || entry.startsWith("#")) {
+                continue;
+            }
+
+            var file = new File(entry);
+            if (!file.isAbsolute()) {
+                file = new File(baseFolder, entry);
+            }
+
+            if (!file.isFile()) {
+                throw new RuntimeException("Could not find input file '" + file + "' listed in manifest '" + manifest + "'");
+            }
+
+            files.add(file);
+        }
+
+        return files;
+    }
+
+    private static List<File> expandGlob(String glob) {
+        // Relative patterns are relative to the working directory
+        var pattern = new File(glob).isAbsolute() ? glob : new File("").getAbsolutePath() + File.separator + glob;
+
+        // Only walk the folder before the first wildcard
+        int wildcard = firstWildcard(pattern);
+        if (wildcard < 0) {
+            return List.of();
+        }
+
+        var baseFolder = new File(pattern.substring(0, wildcard + 1)).getParentFile();
+        if (baseFolder == null || !baseFolder.isDirectory()) {
+            return List.of();
+        }
+
+        var matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+
+        try (Stream<Path> paths = Files.walk(baseFolder.toPath())) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(matcher::matches)
+                    .map(Path::toFile)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not expand glob '" + glob + "'", e);
+        }
+    }
+
+    private static int firstWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if ("*?[{".indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static class Compilation {
+
+        private final File input;
+        private final List<Report> reports;
+        private File output;
+        private PhaseProfiler profiler;
+
+        private Compilation(File input) {
+            this.input = input;
+            this.reports = new ArrayList<>();
+        }
+
+        /**
+         * Adds the reports of a stage.
+         *
+         * @return true if there are errors and the compilation must stop
+         */
+        private boolean addReports(List<Report> stageReports) {
+            reports.addAll(stageReports);
+            return ReportUtils.anyError(stageReports);
+        }
+    }
+}
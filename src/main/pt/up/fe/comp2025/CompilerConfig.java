@@ -10,6 +10,20 @@ public class CompilerConfig {
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String PROFILE = "profile";
+    private static final String BATCH = "batch";
+    private static final String DAEMON = "daemon";
+    private static final String EMIT = "emit";
+    private static final String PARALLEL_ANALYSIS = "parallelAnalysis";
+    private static final String ALLOCATOR = "allocator";
+    private static final String DEBUG = "debug";
+    private static final String EXTRA = "extra";
+
+    private static final String EMIT_JASMIN = "jasmin";
+    private static final String EMIT_CLASS = "class";
+
+    private static final String ALLOCATOR_GRAPH = "graph";
+    private static final String ALLOCATOR_LINEAR = "linear";
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -18,6 +32,14 @@ public class CompilerConfig {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("p", CompilerConfig.PROFILE);
+        shortToLong.put("b", CompilerConfig.BATCH);
+        shortToLong.put("d", CompilerConfig.DAEMON);
+        shortToLong.put("e", CompilerConfig.EMIT);
+        shortToLong.put("a", CompilerConfig.PARALLEL_ANALYSIS);
+        shortToLong.put("s", CompilerConfig.ALLOCATOR);
+        shortToLong.put("g", CompilerConfig.DEBUG);
+        shortToLong.put("x", CompilerConfig.EXTRA);
     }
 
 
@@ -32,6 +54,78 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    /**
+     * The inputs of a batch compilation, given with '-b=<DIR|GLOB|MANIFEST>'.
+     */
+    public static Optional<String> getBatch(Map<String, String> config) {
+        return Optional.ofNullable(config.get(BATCH));
+    }
+
+    public static boolean getDaemon(Map<String, String> config) {
+        return !config.getOrDefault(DAEMON, "false").equals("false");
+    }
+
+    /**
+     * The port of the compiler daemon, given with '-d=<PORT>'. With a plain '-d' any free port is used.
+     */
+    public static int getDaemonPort(Map<String, String> config) {
+        var daemon = config.getOrDefault(DAEMON, "false");
+
+        if (daemon.equals("true") || daemon.equals("false")) {
+            return 0;
+        }
+
+        return Integer.parseInt(daemon);
+    }
+
+    /**
+     * True when the backend writes the class file directly, selected with '-e=class'.
+     * The default, '-e=jasmin', generates Jasmin code.
+     */
+    public static boolean getEmitClassFile(Map<String, String> config) {
+        var emit = config.getOrDefault(EMIT, EMIT_JASMIN);
+
+        return switch (emit) {
+            case EMIT_JASMIN -> false;
+            case EMIT_CLASS -> true;
+            default -> throw new RuntimeException("Unknown output format '" + emit + "', expected '" + EMIT_JASMIN
+                    + "' or '" + EMIT_CLASS + "'");
+        };
+    }
+
+    /**
+     * True when the semantic analysis of each method runs in parallel, enabled with '-a'.
+     */
+    public static boolean getParallelAnalysis(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PARALLEL_ANALYSIS, "false"));
+    }
+
+    public static boolean getDebug(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(DEBUG, "false"));
+    }
+
+    /**
+     * True when the OLLIR code is optimized before register allocation, enabled with '-x'.
+     */
+    public static boolean getExtra(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(EXTRA, "false"));
+    }
+
+    /**
+     * True when '-r' uses the linear scan register allocator, selected with '-s=linear'.
+     * The default, '-s=graph', uses graph coloring.
+     */
+    public static boolean getLinearScan(Map<String, String> config) {
+        var allocator = config.getOrDefault(ALLOCATOR, ALLOCATOR_GRAPH);
+
+        return switch (allocator) {
+            case ALLOCATOR_GRAPH -> false;
+            case ALLOCATOR_LINEAR -> true;
+            default -> throw new RuntimeException("Unknown register allocator '" + allocator + "', expected '"
+                    + ALLOCATOR_GRAPH + "' or '" + ALLOCATOR_LINEAR + "'");
+        };
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
@@ -40,6 +134,24 @@ public class CompilerConfig {
         return Integer.parseInt(config.getOrDefault(REGISTER, "-1"));
     }
 
+    public static boolean getProfile(Map<String, String> config) {
+        return !config.getOrDefault(PROFILE, "false").equals("false");
+    }
+
+    /**
+     * The file where the profiling results are written as JSON, when '-p=<PATH_TO_FILE>' is used.
+     * With a plain '-p' the results are printed as a table instead.
+     */
+    public static Optional<File> getProfileOutput(Map<String, String> config) {
+        var profile = config.getOrDefault(PROFILE, "false");
+
+        if (profile.equals("true") || profile.equals("false")) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(profile));
+    }
+
 
     public static Map<String, String> getDefault() {
 
@@ -47,6 +159,12 @@ public class CompilerConfig {
 
         config.put(CompilerConfig.OPTIMIZE, "false");
         config.put(CompilerConfig.REGISTER, "-1");
+        config.put(CompilerConfig.PROFILE, "false");
+        config.put(CompilerConfig.EMIT, CompilerConfig.EMIT_JASMIN);
+        config.put(CompilerConfig.PARALLEL_ANALYSIS, "false");
+        config.put(CompilerConfig.ALLOCATOR, CompilerConfig.ALLOCATOR_GRAPH);
+        config.put(CompilerConfig.DEBUG, "false");
+        config.put(CompilerConfig.EXTRA, "false");
 
         return config;
     }
@@ -89,23 +207,28 @@ public class CompilerConfig {
             config.put(getLongOpt(shortOption), value);
         }
 
-        if (!config.containsKey(INPUT_FILE)) {
+        if (!config.containsKey(INPUT_FILE) && !config.containsKey(BATCH) && !config.containsKey(DAEMON)) {
 
-            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
+            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>' or '-b=<DIR|GLOB|MANIFEST>'");
         }
 
         // make sure we save the absolute path of the input file
-        var inputFile = new File(config.get(INPUT_FILE));
-        if (!inputFile.isFile()) {
-            throw new RuntimeException("Could not find input file '" + inputFile + "'");
-        }
+        if (config.containsKey(INPUT_FILE)) {
+            var inputFile = new File(config.get(INPUT_FILE));
+            if (!inputFile.isFile()) {
+                throw new RuntimeException("Could not find input file '" + inputFile + "'");
+            }
 
-        var absolutePath = inputFile.getAbsolutePath();
-        config.put(INPUT_FILE, absolutePath);
+            var absolutePath = inputFile.getAbsolutePath();
+            config.put(INPUT_FILE, absolutePath);
+        }
 
         // Verify if values are valid
         getOptimize(config);
         getRegisterAllocation(config);
+        getDaemonPort(config);
+        getEmitClassFile(config);
+        getLinearScan(config);
 
         return config;
     }
@@ -0,0 +1,224 @@
+package pt.up.fe.comp2025;
+
+import pt.up.fe.comp2025.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2025.backend.JasminBackendImpl;
+import pt.up.fe.comp2025.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2025.parser.JmmParserImpl;
+import pt.up.fe.comp2025.utils.PhaseProfiler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Long-running compile server, started with '-d' (any free port) or '-d=<PORT>'.
+ * <p>
+ * Keeps a single warmed-up instance of every stage, so requests do not pay for JVM startup, ANTLR ATN
+ * deserialization and JIT warm-up. The daemon only listens on the loopback interface and writes its port and a
+ * random token to {@link #PORT_FILE_NAME} in the user home, which is where the 'jmm' script looks for them. The file
+ * can only be read by its owner, so other users of the machine cannot send requests.
+ * <p>
+ * Protocol, one request per connection: the client sends the token in the first line, its working directory in the
+ * second, then one argument per line, then an empty line. When the token is wrong the daemon closes the connection
+ * without answering. Otherwise it answers with {@link #ACCEPTED}, the output of the compilation and a last line
+ * with {@link #EXIT_PREFIX} followed by the exit status.
+ */
+public class CompilerDaemon {
+
+    public static final String PORT_FILE_NAME = ".jmm-daemon";
+    public static final String ACCEPTED = "#jmm-accepted";
+    public static final String EXIT_PREFIX = "#jmm-exit ";
+
+    private static final int TOKEN_BYTES = 32;
+
+    private static final String WARM_UP_CODE = """
+            class WarmUp {
+                public int foo(int a) {
+                    int b;
+                    b = 0;
+                    while (b < a) {
+                        b = b + 1;
+                    }
+                    return b;
+                }
+            }
+            """;
+
+    private final Map<String, String> config;
+    private final String token;
+
+    private final JmmParserImpl parser;
+    private final JmmAnalysisImpl analysis;
+    private final JmmOptimizationImpl optimization;
+    private final JasminBackendImpl backend;
+
+    public CompilerDaemon(Map<String, String> config) {
+        this.config = config;
+        this.token = newToken();
+        this.parser = new JmmParserImpl();
+        this.analysis = new JmmAnalysisImpl();
+        this.optimization = new JmmOptimizationImpl();
+        this.backend = new JasminBackendImpl();
+    }
+
+    public static File getPortFile() {
+        return new File(System.getProperty("user.home"), PORT_FILE_NAME);
+    }
+
+    public void run() {
+        var portFile = getPortFile();
+
+        try (var server = new ServerSocket(CompilerConfig.getDaemonPort(config), 50, InetAddress.getLoopbackAddress())) {
+            warmUp();
+
+            writePortFile(portFile, server.getLocalPort());
+            portFile.deleteOnExit();
+
+            System.out.println("Compiler daemon listening on port " + server.getLocalPort());
+
+            // Requests are handled one at a time, since the output of each one is redirected to its client
+            while (true) {
+                try (var client = server.accept()) {
+                    handle(client);
+                } catch (IOException e) {
+                    System.err.println("Could not handle request: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not start compiler daemon", e);
+        }
+    }
+
+    private static String newToken() {
+        var bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /**
+     * Writes the port in the first line of the port file and the token in the second. The file is created again with
+     * owner-only permissions, so a file left by another user or another daemon is never reused.
+     */
+    private void writePortFile(File portFile, int port) throws IOException {
+        var path = portFile.toPath();
+        Files.deleteIfExists(path);
+
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system, restrict the file after creating it
+            Files.createFile(path);
+            portFile.setReadable(false, false);
+            portFile.setWritable(false, false);
+            portFile.setReadable(true, true);
+            portFile.setWritable(true, true);
+        } catch (FileAlreadyExistsException e) {
+            throw new IOException("Port file '" + portFile + "' was created by another process", e);
+        }
+
+        Files.writeString(path, port + System.lineSeparator() + token + System.lineSeparator(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses and analyses a small class, so that the parser and the most common visitors are loaded before the first
+     * request arrives.
+     */
+    private void warmUp() {
+        var parserResult = parser.parse(WARM_UP_CODE, config);
+
+        if (parserResult.getRootNode() != null) {
+            analysis.semanticAnalysis(parserResult);
+        }
+    }
+
+    private void handle(Socket client) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        var out = new PrintStream(client.getOutputStream(), true, StandardCharsets.UTF_8);
+
+        // Requests without the token of the port file are dropped before reading anything else
+        var requestToken = reader.readLine();
+        if (requestToken == null || !MessageDigest.isEqual(requestToken.getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8))) {
+            return;
+        }
+
+        var workingDir = reader.readLine();
+        if (workingDir == null) {
+            return;
+        }
+        out.println(ACCEPTED);
+
+        List<String> args = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            args.add(line);
+        }
+
+        var oldOut = System.out;
+        var oldErr = System.err;
+        System.setOut(out);
+        System.setErr(out);
+
+        int status = 0;
+        try {
+            var requestConfig = CompilerConfig.parseArgs(resolveArgs(args, new File(workingDir)));
+
+            if (CompilerConfig.getDaemon(requestConfig)) {
+                throw new RuntimeException("A compiler daemon is already running");
+            }
+
+            Launcher.compile(requestConfig, parser, analysis, optimization, backend);
+        } catch (RuntimeException | LinkageError e) {
+            // Report the failure to the client, the daemon keeps running
+            e.printStackTrace(out);
+            status = 1;
+        } finally {
+            PhaseProfiler.uninstall();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+        }
+
+        out.println(EXIT_PREFIX + status);
+        out.flush();
+    }
+
+    /**
+     * Makes the paths given to the options relative to the working directory of the client instead of the daemon.
+     */
+    private String[] resolveArgs(List<String> args, File workingDir) {
+        var resolved = new String[args.size()];
+
+        for (int i = 0; i < args.size(); i++) {
+            var arg = args.get(i);
+            resolved[i] = arg;
+
+            if (!(arg.startsWith("-i=") || arg.startsWith("-b=") || arg.startsWith("-p="))) {
+                continue;
+            }
+
+            var value = arg.substring(3);
+            if (value.equals("true") || value.equals("false") || new File(value).isAbsolute()) {
+                continue;
+            }
+
+            resolved[i] = arg.substring(0, 3) + new File(workingDir, value).getPath();
+        }
+
+        return resolved;
+    }
+}
@@ -11,6 +11,11 @@ public class ConfigOptions {
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
     private static final String EXTRA = "extra";
+    private static final String PROFILE = "profile";
+    private static final String EMIT = "emit";
+    private static final String PARALLEL_ANALYSIS = "parallelAnalysis";
+    private static final String ALLOCATOR = "allocator";
+    private static final String DEBUG = "debug";
 
     // These methods should be on CompilerConfig, but to avoid rewriting a file
     // that is in the src folder, this new class was added
@@ -31,6 +36,26 @@ public class ConfigOptions {
         return EXTRA;
     }
 
+    public static String getProfile() {
+        return PROFILE;
+    }
+
+    public static String getEmit() {
+        return EMIT;
+    }
+
+    public static String getParallelAnalysis() {
+        return PARALLEL_ANALYSIS;
+    }
+
+    public static String getAllocator() {
+        return ALLOCATOR;
+    }
+
+    public static String getDebug() {
+        return DEBUG;
+    }
+
     public static Optional<File> getInputFile(Map<String, String> config) {
         var inputFile = config.get(INPUT_FILE);
 
@@ -51,7 +76,21 @@ public class ConfigOptions {
         return Integer.parseInt(config.getOrDefault(REGISTER, "-1"));
     }
 
+    // The options added after these methods are parsed and validated by CompilerConfig, so they only delegate to it
+
+    public static boolean getParallelAnalysis(Map<String, String> config) {
+        return CompilerConfig.getParallelAnalysis(config);
+    }
+
+    public static boolean getLinearScan(Map<String, String> config) {
+        return CompilerConfig.getLinearScan(config);
+    }
+
+    public static boolean getDebug(Map<String, String> config) {
+        return CompilerConfig.getDebug(config);
+    }
+
     public static boolean getExtra(Map<String, String> config) {
-        return Boolean.parseBoolean(config.getOrDefault(EXTRA, "false"));
+        return CompilerConfig.getExtra(config);
     }
 }
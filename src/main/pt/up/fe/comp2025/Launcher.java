@@ -6,12 +6,17 @@ import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp2025.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2025.backend.ClassFileGenerator;
 import pt.up.fe.comp2025.backend.JasminBackendImpl;
 import pt.up.fe.comp2025.optimization.JmmOptimizationImpl;
 import pt.up.fe.comp2025.parser.JmmParserImpl;
+import pt.up.fe.comp2025.utils.PhaseProfiler;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Map;
 
 public class Launcher {
@@ -21,42 +26,110 @@ public class Launcher {
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
 
+        if (CompilerConfig.getDaemon(config)) {
+            new CompilerDaemon(config).run();
+            return;
+        }
+
+        compile(config, new JmmParserImpl(), new JmmAnalysisImpl(), new JmmOptimizationImpl(), new JasminBackendImpl());
+    }
+
+    /**
+     * Runs the compilation described by the given config with the given stages.
+     * <p>
+     * The stages are received as parameters so that the compiler daemon can reuse warmed-up instances across requests.
+     */
+    static void compile(Map<String, String> config, JmmParserImpl parser, JmmAnalysisImpl sema,
+                        JmmOptimizationImpl ollirGen, JasminBackendImpl jasminGen) {
+
+        if (CompilerConfig.getBatch(config).isPresent()) {
+            new BatchCompiler(config).run();
+            return;
+        }
+
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
-            throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
+            throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + inputFile + "'.");
         }
         String code = SpecsIo.read(inputFile);
 
-        // Parsing stage
-        JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
-        TestUtils.noErrors(parserResult.getReports());
+        var profiler = CompilerConfig.getProfile(config) ? PhaseProfiler.install() : null;
+
+        // The profiler belongs to the thread, which batch workers and the daemon reuse for the next compilation
+        try {
+            // Parsing stage
+            JmmParserResult parserResult = PhaseProfiler.measure("parse", () -> parser.parse(code, config));
+            TestUtils.noErrors(parserResult.getReports());
+
+            // Print AST
+            System.out.println(parserResult.getRootNode());
+            System.out.println(parserResult.getRootNode().toTree());
+
+            // Semantic Analysis stage
+            JmmSemanticsResult semanticsResult = PhaseProfiler.measure("semanticAnalysis", () -> sema.semanticAnalysis(parserResult));
+            TestUtils.noErrors(semanticsResult.getReports());
+
 
-        // Print AST
-        System.out.println(parserResult.getRootNode());
-        System.out.println(parserResult.getRootNode().toTree());
+            // Optimization stage
+            JmmSemanticsResult optimizedSemantics = PhaseProfiler.measure("optimizeAst", () -> ollirGen.optimize(semanticsResult));
+            OllirResult generatedOllir = PhaseProfiler.measure("toOllir", () -> ollirGen.toOllir(optimizedSemantics));
+            OllirResult ollirResult = PhaseProfiler.measure("optimizeOllir", () -> ollirGen.optimize(generatedOllir));
+            TestUtils.noErrors(ollirResult.getReports());
 
-        // Semantic Analysis stage
-        JmmAnalysisImpl sema = new JmmAnalysisImpl();
-        JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
-        TestUtils.noErrors(semanticsResult.getReports());
+            // Print OLLIR code
+            //System.out.println(ollirResult.getOllirCode());
 
+            // Code generation stage
+            if (CompilerConfig.getEmitClassFile(config)) {
+                var classFileGen = new ClassFileGenerator(ollirResult);
+                byte[] classFile = PhaseProfiler.measure("toClassFile", classFileGen::build);
+                TestUtils.noErrors(classFileGen.getReports());
 
-        // Optimization stage
-        JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
-        TestUtils.noErrors(ollirResult.getReports());
+                var outputFile = writeClassFile(inputFile.getAbsoluteFile().getParentFile(), classFileGen.getClassName(), classFile);
+                System.out.println("Class file written to '" + outputFile + "'");
+            } else {
+                JasminResult jasminResult = PhaseProfiler.measure("toJasmin", () -> jasminGen.toJasmin(ollirResult));
+                TestUtils.noErrors(jasminResult.getReports());
 
-        // Print OLLIR code
-        //System.out.println(ollirResult.getOllirCode());
+                // Print Jasmin code
+                //System.out.println(jasminResult.getJasminCode());
+            }
+        } finally {
+            if (profiler != null) {
+                PhaseProfiler.uninstall();
+            }
+        }
+
+        if (profiler != null) {
+            printProfile(profiler, config);
+        }
+    }
+
+    static File writeClassFile(File folder, String className, byte[] classFile) {
+        var outputFile = new File(folder, className + ".class");
 
-        // Code generation stage
-        JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
-        TestUtils.noErrors(jasminResult.getReports());
+        try {
+            Files.write(outputFile.toPath(), classFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write class file '" + outputFile + "'", e);
+        }
+
+        return outputFile;
+    }
+
+    static void printProfile(PhaseProfiler profiler, Map<String, String> config) {
+        var profileOutput = CompilerConfig.getProfileOutput(config);
+
+        if (profileOutput.isPresent()) {
+            SpecsIo.write(profileOutput.get(), profiler.toJson());
+            System.out.println("Profile written to '" + profileOutput.get().getAbsolutePath() + "'");
+            return;
+        }
 
-        // Print Jasmin code
-        //System.out.println(jasminResult.getJasminCode());
+        System.out.println("Profile:");
+        System.out.println(profiler.toTable());
+        System.out.println("Parses that fell back from SLL to full LL: " + JmmParserImpl.getLlFallbackCount()
+                + " of " + JmmParserImpl.getParseCount());
     }
 
 }
@@ -11,7 +11,10 @@ import pt.up.fe.comp2025.ast.Kind;
 import pt.up.fe.comp2025.ast.TypeUtils;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
  * Implementation of AnalysisPass that automatically visits nodes using preorder traversal.
@@ -20,11 +23,39 @@ public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Vo
 
     private List<Report> reports;
 
+    // Not initialized in the declaration, since buildVisitor() runs in the super constructor
+    private Set<String> visitedKinds;
+
     public AnalysisVisitor() {
         reports = new ArrayList<>();
         setDefaultValue(() -> null);
     }
 
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, SymbolTable, Void> method) {
+        if (visitedKinds == null) {
+            visitedKinds = new HashSet<>();
+        }
+
+        visitedKinds.add(kind);
+        super.addVisit(kind, method);
+    }
+
+    /**
+     * @return true if this pass has its own visit method for the given node
+     */
+    public boolean visits(JmmNode node) {
+        return visitedKinds != null && node.getHierarchy().stream().anyMatch(visitedKinds::contains);
+    }
+
+    /**
+     * Applies the visit method of this pass to the given node, without visiting its children.
+     * Used when several passes share a single traversal of the AST.
+     */
+    public void visitNode(JmmNode node, SymbolTable table) {
+        getVisit(node).apply(node, table);
+    }
+
     protected void addReport(Report report) {
         reports.add(report);
     }
@@ -0,0 +1,81 @@
+package pt.up.fe.comp2025.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Runs several analysis passes with a single preorder traversal of the AST.
+ * <p>
+ * Each node is given to the passes that have a visit method for it, in the order of the passes, so every pass sees
+ * the same nodes in the same order as in its own traversal. A pass that throws an exception stops receiving nodes, as
+ * its own traversal would have stopped. The reports are kept per pass, so they can be merged in the order of the passes.
+ */
+public class FusedAnalysis {
+
+    private final List<AnalysisVisitor> passes;
+
+    // The passes interested in each node hierarchy, in the order of the passes
+    private final Map<List<String>, List<AnalysisVisitor>> passesByHierarchy;
+
+    private final Map<AnalysisVisitor, Exception> failures;
+
+    public FusedAnalysis(List<AnalysisVisitor> passes) {
+        this.passes = passes;
+        this.passesByHierarchy = new HashMap<>();
+        this.failures = new IdentityHashMap<>();
+    }
+
+    public void analyze(JmmNode root, SymbolTable table) {
+        visit(root, table);
+    }
+
+    private void visit(JmmNode node, SymbolTable table) {
+        visitNode(node, table);
+
+        for (var child : node.getChildren()) {
+            visit(child, table);
+        }
+    }
+
+    /**
+     * Gives a single node to the interested passes, without visiting its children.
+     */
+    void visitNode(JmmNode node, SymbolTable table) {
+        for (var pass : getPasses(node)) {
+            if (failures.containsKey(pass)) {
+                continue;
+            }
+
+            try {
+                pass.visitNode(node, table);
+            } catch (Exception e) {
+                failures.put(pass, e);
+            }
+        }
+    }
+
+    private List<AnalysisVisitor> getPasses(JmmNode node) {
+        return passesByHierarchy.computeIfAbsent(List.copyOf(node.getHierarchy()), hierarchy ->
+                passes.stream()
+                        .filter(pass -> pass.visits(node))
+                        .toList());
+    }
+
+    public List<Report> getReports(AnalysisVisitor pass) {
+        return pass.getReports();
+    }
+
+    /**
+     * @return the exception thrown by the given pass, if any
+     */
+    public Optional<Exception> getFailure(AnalysisVisitor pass) {
+        return Optional.ofNullable(failures.get(pass));
+    }
+}
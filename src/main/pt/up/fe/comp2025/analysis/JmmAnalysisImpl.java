@@ -9,9 +9,11 @@ import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ConfigOptions;
 import pt.up.fe.comp2025.analysis.passes.*;
 import pt.up.fe.comp2025.ast.Kind;
 import pt.up.fe.comp2025.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2025.utils.PhaseProfiler;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -31,6 +33,8 @@ public class JmmAnalysisImpl implements JmmAnalysis {
     // not sure why the symbol table is passed as a parameter
     private List<AnalysisVisitor> buildPasses(SymbolTable table) {
         return List.of(
+                // Runs first, so the other passes find the types of the expressions already computed
+                new ExprTyping(),
                 new UndeclaredVariable(),
                 new IncompatibleOperandType(),
                 new ArrayAccess(),
@@ -51,7 +55,7 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         var symbolTableBuilder = new JmmSymbolTableBuilder();
 
-        SymbolTable table = symbolTableBuilder.build(rootNode);
+        SymbolTable table = PhaseProfiler.measure("JmmSymbolTableBuilder", () -> symbolTableBuilder.build(rootNode));
 
         List<Report> reports = symbolTableBuilder.getReports();
         return new JmmSemanticsResult(parserResult, table, reports);
@@ -66,34 +70,40 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         var reports = new ArrayList<Report>();
 
-        // This is a simple implementation that assumes all passes are implemented as visitors, each one making a full visit of the AST.
-        // There are other implementations that reduce the number of full AST visits, this is not required for the work, but a nice challenge if you want to try.
-        for (var analysisVisitor : analysisVisitors) {
-            try {
-                var passReports = analysisVisitor.analyze(rootNode, table);
-
-                var hasSymbolTableErrors = passReports.stream()
-                        .anyMatch(report -> report.getType() == ReportType.ERROR);
-
+        // All passes share a single visit of the AST, and their reports are then merged in the order of the passes.
+        // In parallel mode, each method is visited in its own task, with new instances of the passes
+        var fusedAnalysis = ConfigOptions.getParallelAnalysis(semanticsResult.getConfig()) ?
+                new ParallelAnalysis(analysisVisitors, () -> buildPasses(table)) :
+                new FusedAnalysis(analysisVisitors);
+        PhaseProfiler.measure(fusedAnalysis.getClass().getSimpleName(), () -> fusedAnalysis.analyze(rootNode, table));
 
-                reports.addAll(passReports);
-
-                // Return early in case of error report
-                if (hasSymbolTableErrors) {
-                    System.out.println("Found errors: " + reports);
-                    return new JmmSemanticsResult(semanticsResult, reports);
-                }
+        for (var analysisVisitor : analysisVisitors) {
+            var failure = fusedAnalysis.getFailure(analysisVisitor);
 
-            } catch (Exception e) {
+            if (failure.isPresent()) {
                 reports.add(Report.newError(Stage.SEMANTIC,
                         -1,
                         -1,
                         "Problem while executing analysis pass '" + analysisVisitor.getClass() + "'",
-                        e)
+                        failure.get())
                 );
                 System.out.println("Exception: " + reports);
+                continue;
             }
 
+            var passReports = fusedAnalysis.getReports(analysisVisitor);
+
+            var hasSymbolTableErrors = passReports.stream()
+                    .anyMatch(report -> report.getType() == ReportType.ERROR);
+
+
+            reports.addAll(passReports);
+
+            // Return early in case of error report, ignoring the results of the following passes
+            if (hasSymbolTableErrors) {
+                System.out.println("Found errors: " + reports);
+                return new JmmSemanticsResult(semanticsResult, reports);
+            }
         }
 
 
@@ -0,0 +1,124 @@
+package pt.up.fe.comp2025.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2025.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Runs the analysis passes of each method in parallel, on the common fork-join pool.
+ * <p>
+ * The AST is split in preorder into method subtrees and the nodes between them, and each part is analysed by a
+ * {@link FusedAnalysis} with its own instances of the passes. The results are then concatenated in preorder, so the
+ * reports of every pass are in the same order as in a single traversal. This relies on the passes only keeping state
+ * about the method being visited.
+ */
+public class ParallelAnalysis extends FusedAnalysis {
+
+    private final List<AnalysisVisitor> passes;
+    private final Supplier<List<AnalysisVisitor>> passFactory;
+    private final List<Part> parts;
+
+    /**
+     * @param passes      the passes used to identify the results, in order
+     * @param passFactory creates a new instance of the same passes, in the same order, for each part of the AST
+     */
+    public ParallelAnalysis(List<AnalysisVisitor> passes, Supplier<List<AnalysisVisitor>> passFactory) {
+        super(passes);
+        this.passes = passes;
+        this.passFactory = passFactory;
+        this.parts = new ArrayList<>();
+    }
+
+    @Override
+    public void analyze(JmmNode root, SymbolTable table) {
+        split(root);
+
+        var tasks = parts.stream()
+                .map(part -> ForkJoinTask.adapt(() -> part.analyze(table)))
+                .toList();
+
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    /**
+     * Adds the given subtree to the parts, in preorder. Method declarations become parts of their own, the other nodes
+     * are grouped with the nodes next to them.
+     */
+    private void split(JmmNode node) {
+        if (Kind.METHOD_DECL.check(node)) {
+            var part = new Part(passFactory.get(), true);
+            part.nodes.add(node);
+            parts.add(part);
+            return;
+        }
+
+        if (parts.isEmpty() || parts.getLast().isMethod) {
+            parts.add(new Part(passFactory.get(), false));
+        }
+        parts.getLast().nodes.add(node);
+
+        for (var child : node.getChildren()) {
+            split(child);
+        }
+    }
+
+    @Override
+    public List<Report> getReports(AnalysisVisitor pass) {
+        int index = passes.indexOf(pass);
+
+        List<Report> reports = new ArrayList<>();
+        for (var part : parts) {
+            reports.addAll(part.analysis.getReports(part.passes.get(index)));
+        }
+
+        return reports;
+    }
+
+    /**
+     * @return the first exception thrown by the given pass, in preorder, if any
+     */
+    @Override
+    public Optional<Exception> getFailure(AnalysisVisitor pass) {
+        int index = passes.indexOf(pass);
+
+        return parts.stream()
+                .map(part -> part.analysis.getFailure(part.passes.get(index)))
+                .flatMap(Optional::stream)
+                .findFirst();
+    }
+
+    private static class Part {
+
+        private final List<AnalysisVisitor> passes;
+        private final FusedAnalysis analysis;
+        private final boolean isMethod;
+
+        // A method subtree, or the nodes outside methods, which are visited without their children
+        private final List<JmmNode> nodes;
+
+        private Part(List<AnalysisVisitor> passes, boolean isMethod) {
+            this.passes = passes;
+            this.analysis = new FusedAnalysis(passes);
+            this.isMethod = isMethod;
+            this.nodes = new ArrayList<>();
+        }
+
+        private void analyze(SymbolTable table) {
+            if (isMethod) {
+                analysis.analyze(nodes.getFirst(), table);
+                return;
+            }
+
+            for (var node : nodes) {
+                analysis.visitNode(node, table);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package pt.up.fe.comp2025.analysis.passes;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2025.analysis.AnalysisVisitor;
+import pt.up.fe.comp2025.ast.Kind;
+import pt.up.fe.comp2025.ast.TypeUtils;
+
+/**
+ * Computes the type of every expression, filling the type cache of the symbol table for the passes that run after it.
+ * <p>
+ * Does not report anything. Expressions that cannot be typed are left for the other passes to report.
+ */
+public class ExprTyping extends AnalysisVisitor {
+
+    private String currentMethod;
+
+    @Override
+    public void buildVisitor() {
+        addVisit(Kind.METHOD_DECL, this::visitMethodDecl);
+        addVisit(Kind.EXPR, this::visitExpr);
+    }
+
+    private Void visitMethodDecl(JmmNode method, SymbolTable table) {
+        currentMethod = method.get("name");
+        return null;
+    }
+
+    private Void visitExpr(JmmNode expr, SymbolTable table) {
+        TypeUtils typeUtils = new TypeUtils(table);
+        typeUtils.setCurrentMethod(currentMethod);
+
+        try {
+            typeUtils.getExprType(expr);
+        } catch (RuntimeException ignored) {
+            // Failed types are not cached, the pass that uses them reports the problem
+        }
+
+        return null;
+    }
+
+}
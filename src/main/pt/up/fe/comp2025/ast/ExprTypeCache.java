@@ -0,0 +1,80 @@
+package pt.up.fe.comp2025.ast;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Types already computed by {@link TypeUtils#getExprType(JmmNode)}, shared by every pass of a compilation.
+ * <p>
+ * Nodes are keyed by identity ({@link JmmNode} does not override equals). Each entry also keeps the method the type
+ * was computed for, since the type of a variable depends on the method where it is used. The map is concurrent
+ * because methods may be analysed in parallel.
+ * <p>
+ * Code that rewrites the AST must call {@link #invalidate(JmmNode)} on the nodes it replaces.
+ */
+public class ExprTypeCache {
+
+    private final Map<JmmNode, Entry> types;
+
+    public ExprTypeCache() {
+        this.types = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the cached type of the expression, or computes and caches it.
+     * <p>
+     * The type is not cached if the computation throws, so the exception is thrown again to the next caller.
+     *
+     * @param expr    the expression
+     * @param method  the method the type is computed for
+     * @param compute computes the type, which may be null
+     */
+    public Type get(JmmNode expr, String method, Supplier<Type> compute) {
+        var entry = types.get(expr);
+        if (entry != null && Objects.equals(entry.method, method)) {
+            return entry.type;
+        }
+
+        // Not computeIfAbsent, since the computation recursively adds the types of the children
+        var type = compute.get();
+        types.put(expr, new Entry(method, type));
+
+        return type;
+    }
+
+    /**
+     * Removes the types of the node, of its descendants and of its ancestors, whose type may depend on it.
+     * Must be called before the node is detached from its parent.
+     */
+    public void invalidate(JmmNode node) {
+        removeSubtree(node);
+
+        for (var ancestor = node.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            types.remove(ancestor);
+        }
+    }
+
+    private void removeSubtree(JmmNode node) {
+        types.remove(node);
+
+        for (var child : node.getChildren()) {
+            removeSubtree(child);
+        }
+    }
+
+    public void clear() {
+        types.clear();
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    private record Entry(String method, Type type) {
+    }
+}
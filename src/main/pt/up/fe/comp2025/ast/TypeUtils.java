@@ -1,6 +1,5 @@
 package pt.up.fe.comp2025.ast;
 
-import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
@@ -48,22 +47,9 @@ public class TypeUtils {
 
     public Type getVarType(String varName) {
 
-      for(Symbol s: table.getLocalVariables(currentMethod)) {
-            if (s.getName().equals(varName)) {
-                return s.getType();
-            }
-        }
-
-        for(Symbol s: table.getParameters(currentMethod)) {
-            if (s.getName().equals(varName)) {
-                return s.getType();
-            }
-        }
-
-        for(Symbol s: table.getFields()) {
-            if (s.getName().equals(varName)) {
-                return s.getType();
-            }
+        var symbol = table.resolve(currentMethod, varName);
+        if (symbol.isPresent()) {
+            return symbol.get().getSymbol().getType();
         }
 
         if (varName.equals("this")) {
@@ -75,11 +61,17 @@ public class TypeUtils {
 
     /**
      * Gets the {@link Type} of an arbitrary expression.
+     * <p>
+     * Types are cached in the symbol table, so each expression is only typed once per compilation.
      *
      * @param expr
      * @return
      */
     public Type getExprType(JmmNode expr) {
+        return table.getExprTypes().get(expr, currentMethod, () -> computeExprType(expr));
+    }
+
+    private Type computeExprType(JmmNode expr) {
         if (expr.getKind().equals(Kind.VAR_REF_EXPR.toString()) || expr.getKind().equals("Var")) {
             return getVarType(expr.get("name"));
         }
@@ -0,0 +1,309 @@
+package pt.up.fe.comp2025.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bytecode of a single method.
+ * <p>
+ * Instructions are encoded as they are added. Branches may refer to labels that are only defined later, their
+ * offsets are patched in {@link #toByteArray()}. Every instruction also records its stack effect, which is used
+ * to compute the maximum stack size of the method.
+ */
+public class BytecodeBuffer {
+
+    public static final int NOP = 0x00;
+    public static final int ICONST_M1 = 0x02;
+    public static final int ICONST_0 = 0x03;
+    public static final int ICONST_1 = 0x04;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ALOAD = 0x19;
+    public static final int ILOAD_0 = 0x1a;
+    public static final int ALOAD_0 = 0x2a;
+    public static final int IALOAD = 0x2e;
+    public static final int ISTORE = 0x36;
+    public static final int ASTORE = 0x3a;
+    public static final int ISTORE_0 = 0x3b;
+    public static final int ASTORE_0 = 0x4b;
+    public static final int IASTORE = 0x4f;
+    public static final int POP = 0x57;
+    public static final int DUP = 0x59;
+    public static final int IADD = 0x60;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int IDIV = 0x6c;
+    public static final int IREM = 0x70;
+    public static final int INEG = 0x74;
+    public static final int ISHL = 0x78;
+    public static final int IAND = 0x7e;
+    public static final int IOR = 0x80;
+    public static final int IXOR = 0x82;
+    public static final int IINC = 0x84;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IFLT = 0x9b;
+    public static final int IFGE = 0x9c;
+    public static final int IFGT = 0x9d;
+    public static final int IFLE = 0x9e;
+    public static final int IF_ICMPEQ = 0x9f;
+    public static final int IF_ICMPNE = 0xa0;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int IF_ACMPEQ = 0xa5;
+    public static final int IF_ACMPNE = 0xa6;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int GETFIELD = 0xb4;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int NEW = 0xbb;
+    public static final int NEWARRAY = 0xbc;
+    public static final int ARRAYLENGTH = 0xbe;
+    public static final int CHECKCAST = 0xc0;
+    public static final int WIDE = 0xc4;
+    public static final int IFNULL = 0xc6;
+    public static final int IFNONNULL = 0xc7;
+
+    public static final int T_INT = 10;
+
+    private final ByteArrayOutputStream code;
+    private final List<Entry> entries;
+    private final Map<String, Integer> labels;
+
+    public BytecodeBuffer() {
+        this.code = new ByteArrayOutputStream();
+        this.entries = new ArrayList<>();
+        this.labels = new HashMap<>();
+    }
+
+    /**
+     * Defines a label at the current position.
+     */
+    public void label(String name) {
+        if (labels.put(name, code.size()) != null) {
+            throw new RuntimeException("Label '" + name + "' is defined more than once");
+        }
+    }
+
+    /**
+     * Adds an instruction without operands.
+     */
+    public void op(int opcode, int stackEffect) {
+        begin(opcode, stackEffect, null);
+        code.write(opcode);
+    }
+
+    /**
+     * Adds an instruction with a one-byte operand.
+     */
+    public void opByte(int opcode, int operand, int stackEffect) {
+        begin(opcode, stackEffect, null);
+        code.write(opcode);
+        code.write(operand);
+    }
+
+    /**
+     * Adds an instruction with a two-byte operand, such as a constant pool index.
+     */
+    public void opShort(int opcode, int operand, int stackEffect) {
+        begin(opcode, stackEffect, null);
+        code.write(opcode);
+        writeShort(operand);
+    }
+
+    /**
+     * Pushes an int constant, using the shortest instruction available.
+     */
+    public void pushInt(int value, ConstantPool constantPool) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            opByte(BIPUSH, value & 0xFF, 1);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            opShort(SIPUSH, value & 0xFFFF, 1);
+        } else {
+            ldc(constantPool.addInteger(value));
+        }
+    }
+
+    public void ldc(int index) {
+        if (index <= 0xFF) {
+            opByte(LDC, index, 1);
+        } else {
+            opShort(LDC_W, index, 1);
+        }
+    }
+
+    /**
+     * Adds a load or store of a local variable.
+     *
+     * @param opcode    the generic opcode, such as ILOAD or ASTORE
+     * @param shortBase the opcode of the short form for register 0, such as ILOAD_0 or ASTORE_0
+     * @param reg       the register
+     */
+    public void local(int opcode, int shortBase, int reg, int stackEffect) {
+        if (reg >= 0 && reg <= 3) {
+            op(shortBase + reg, stackEffect);
+        } else if (reg <= 0xFF) {
+            opByte(opcode, reg, stackEffect);
+        } else {
+            begin(opcode, stackEffect, null);
+            code.write(WIDE);
+            code.write(opcode);
+            writeShort(reg);
+        }
+    }
+
+    /**
+     * Adds an iinc, in its wide form when the register or the value do not fit in a byte.
+     *
+     * @throws IllegalArgumentException if the value does not fit in a signed short
+     */
+    public void iinc(int reg, int value) {
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Increment " + value + " does not fit in an iinc");
+        }
+
+        begin(IINC, 0, null);
+
+        if (reg <= 0xFF && value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.write(IINC);
+            code.write(reg);
+            code.write(value & 0xFF);
+        } else {
+            code.write(WIDE);
+            code.write(IINC);
+            writeShort(reg);
+            writeShort(value & 0xFFFF);
+        }
+    }
+
+    /**
+     * Adds a goto or a conditional branch to the given label.
+     */
+    public void branch(int opcode, String label, int stackEffect) {
+        begin(opcode, stackEffect, label);
+        code.write(opcode);
+        writeShort(0);
+    }
+
+    public byte[] toByteArray() {
+        var bytes = code.toByteArray();
+
+        for (var entry : entries) {
+            if (entry.target == null) {
+                continue;
+            }
+
+            int offset = getLabelOffset(entry.target) - entry.offset;
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new RuntimeException("Branch to label '" + entry.target + "' is too far");
+            }
+
+            bytes[entry.offset + 1] = (byte) (offset >> 8);
+            bytes[entry.offset + 2] = (byte) offset;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Computes the maximum stack size by propagating the stack height of each instruction to its successors.
+     *
+     * @return the maximum number of values on the stack at any point of the method
+     */
+    public int computeMaxStack() {
+        Map<Integer, Integer> indexByOffset = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            indexByOffset.put(entries.get(i).offset, i);
+        }
+
+        var heights = new int[entries.size()];
+        Arrays.fill(heights, -1);
+
+        var worklist = new ArrayDeque<Integer>();
+        int maxStack = 0;
+
+        if (!entries.isEmpty()) {
+            heights[0] = 0;
+            worklist.push(0);
+        }
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            var entry = entries.get(index);
+
+            int height = heights[index] + entry.stackEffect;
+            if (height < 0) {
+                throw new RuntimeException("Stack underflow at bytecode offset " + entry.offset);
+            }
+
+            // The operands of an instruction are on the stack before it executes
+            maxStack = Math.max(maxStack, Math.max(heights[index], height));
+
+            List<Integer> successors = new ArrayList<>();
+            if (entry.target != null) {
+                var target = indexByOffset.get(getLabelOffset(entry.target));
+                if (target == null) {
+                    throw new RuntimeException("Label '" + entry.target + "' does not mark an instruction");
+                }
+                successors.add(target);
+            }
+            if (!isUnconditionalJump(entry.opcode) && index + 1 < entries.size()) {
+                successors.add(index + 1);
+            }
+
+            for (var successor : successors) {
+                if (heights[successor] == -1) {
+                    heights[successor] = height;
+                    worklist.push(successor);
+                } else if (heights[successor] != height) {
+                    throw new RuntimeException("Inconsistent stack height at bytecode offset "
+                            + entries.get(successor).offset);
+                }
+            }
+        }
+
+        return maxStack;
+    }
+
+    private boolean isUnconditionalJump(int opcode) {
+        return opcode == GOTO || (opcode >= IRETURN && opcode <= RETURN);
+    }
+
+    private int getLabelOffset(String label) {
+        var offset = labels.get(label);
+        if (offset == null) {
+            throw new RuntimeException("Undefined label '" + label + "'");
+        }
+
+        return offset;
+    }
+
+    private void begin(int opcode, int stackEffect, String target) {
+        entries.add(new Entry(code.size(), opcode, stackEffect, target));
+    }
+
+    private void writeShort(int value) {
+        code.write((value >> 8) & 0xFF);
+        code.write(value & 0xFF);
+    }
+
+    private record Entry(int offset, int opcode, int stackEffect, String target) {
+    }
+}
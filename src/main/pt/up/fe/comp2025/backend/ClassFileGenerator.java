@@ -0,0 +1,90 @@
+package pt.up.fe.comp2025.backend;
+
+import org.specs.comp.ollir.AccessModifier;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.List;
+
+/**
+ * Generates the bytes of a JVM class file directly from an OllirResult, without going through Jasmin.
+ * <p>
+ * The code of each method is the list of {@link JasminInstruction} selected by {@link JasminGenerator}, after its
+ * peephole pass, and is encoded by a {@link ClassFileWriter}. Both backends thus run the same instructions.
+ * One ClassFileGenerator instance per OllirResult.
+ */
+public class ClassFileGenerator {
+
+    private final OllirResult ollirResult;
+
+    byte[] bytes;
+
+    private final JasminGenerator jasminGenerator;
+
+    public ClassFileGenerator(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+
+        bytes = null;
+        jasminGenerator = new JasminGenerator(ollirResult);
+    }
+
+    public List<Report> getReports() {
+        return jasminGenerator.getReports();
+    }
+
+    public String getClassName() {
+        return ollirResult.getOllirClass().getClassName();
+    }
+
+    public byte[] build() {
+
+        // This way, build is idempotent
+        if (bytes == null) {
+            bytes = generateClassUnit(ollirResult.getOllirClass());
+            jasminGenerator.reportPeepholeHits();
+        }
+
+        return bytes;
+    }
+
+    private byte[] generateClassUnit(ClassUnit classUnit) {
+        var superClass = jasminGenerator.getSuperClass(classUnit);
+        var writer = new ClassFileWriter(classUnit.getClassName(), superClass);
+
+        for (var field : classUnit.getFields()) {
+            writer.field(ClassFileWriter.ACC_PUBLIC, field.getFieldName(),
+                    jasminGenerator.descriptorOf(field.getFieldType()));
+        }
+
+        // Ignore constructors, since there is always one constructor
+        // that receives no arguments, and it is added here
+        writer.method(ClassFileWriter.ACC_PUBLIC, "<init>", "()V",
+                jasminGenerator.generateDefaultConstructor(superClass), 1);
+
+        for (var method : classUnit.getMethods()) {
+            if (method.isConstructMethod()) {
+                continue;
+            }
+
+            int accessFlags = getAccessFlags(method.getMethodAccessModifier());
+            if (method.getMethodName().equals("main")) {
+                accessFlags |= ClassFileWriter.ACC_STATIC;
+            }
+
+            writer.method(accessFlags, method.getMethodName(), jasminGenerator.getMethodDescriptor(method),
+                    jasminGenerator.generateBody(method), jasminGenerator.getMaxLocals(method));
+        }
+
+        return writer.toByteArray();
+    }
+
+    private int getAccessFlags(AccessModifier accessModifier) {
+        return switch (accessModifier) {
+            case PUBLIC -> ClassFileWriter.ACC_PUBLIC;
+            case PRIVATE -> ClassFileWriter.ACC_PRIVATE;
+            case PROTECTED -> ClassFileWriter.ACC_PROTECTED;
+            case DEFAULT -> 0;
+        };
+    }
+}
@@ -0,0 +1,278 @@
+package pt.up.fe.comp2025.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bytes of a JVM class file, written from the fields and the instruction lists of its methods.
+ * <p>
+ * The counterpart of {@link JasminWriter} for '-e=class': every {@link JasminInstruction} is encoded through a
+ * {@link BytecodeBuffer}, and the classes, fields, methods and large ints it refers to are added to the constant pool.
+ * The constant pool is only complete after the last method, so the header is written in {@link #toByteArray()}.
+ */
+public class ClassFileWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_PROTECTED = 0x0004;
+    public static final int ACC_STATIC = 0x0008;
+
+    private static final int ACC_SUPER = 0x0020;
+
+    // Same version that Jasmin uses, which does not need StackMapTable attributes
+    private static final int MAJOR_VERSION = 45;
+    private static final int MINOR_VERSION = 3;
+
+    private static final Map<String, Integer> OPCODES = Map.ofEntries(
+            Map.entry("nop", BytecodeBuffer.NOP),
+            Map.entry("iconst_m1", BytecodeBuffer.ICONST_M1),
+            Map.entry("iconst_0", BytecodeBuffer.ICONST_0),
+            Map.entry("iconst_1", BytecodeBuffer.ICONST_1),
+            Map.entry("iconst_2", BytecodeBuffer.ICONST_0 + 2),
+            Map.entry("iconst_3", BytecodeBuffer.ICONST_0 + 3),
+            Map.entry("iconst_4", BytecodeBuffer.ICONST_0 + 4),
+            Map.entry("iconst_5", BytecodeBuffer.ICONST_0 + 5),
+            Map.entry("iaload", BytecodeBuffer.IALOAD),
+            Map.entry("iastore", BytecodeBuffer.IASTORE),
+            Map.entry("pop", BytecodeBuffer.POP),
+            Map.entry("dup", BytecodeBuffer.DUP),
+            Map.entry("iadd", BytecodeBuffer.IADD),
+            Map.entry("isub", BytecodeBuffer.ISUB),
+            Map.entry("imul", BytecodeBuffer.IMUL),
+            Map.entry("idiv", BytecodeBuffer.IDIV),
+            Map.entry("irem", BytecodeBuffer.IREM),
+            Map.entry("ineg", BytecodeBuffer.INEG),
+            Map.entry("ishl", BytecodeBuffer.ISHL),
+            Map.entry("iand", BytecodeBuffer.IAND),
+            Map.entry("ior", BytecodeBuffer.IOR),
+            Map.entry("ixor", BytecodeBuffer.IXOR),
+            Map.entry("ifeq", BytecodeBuffer.IFEQ),
+            Map.entry("ifne", BytecodeBuffer.IFNE),
+            Map.entry("iflt", BytecodeBuffer.IFLT),
+            Map.entry("ifge", BytecodeBuffer.IFGE),
+            Map.entry("ifgt", BytecodeBuffer.IFGT),
+            Map.entry("ifle", BytecodeBuffer.IFLE),
+            Map.entry("if_icmpeq", BytecodeBuffer.IF_ICMPEQ),
+            Map.entry("if_icmpne", BytecodeBuffer.IF_ICMPNE),
+            Map.entry("if_icmplt", BytecodeBuffer.IF_ICMPLT),
+            Map.entry("if_icmpge", BytecodeBuffer.IF_ICMPGE),
+            Map.entry("if_icmpgt", BytecodeBuffer.IF_ICMPGT),
+            Map.entry("if_icmple", BytecodeBuffer.IF_ICMPLE),
+            Map.entry("if_acmpeq", BytecodeBuffer.IF_ACMPEQ),
+            Map.entry("if_acmpne", BytecodeBuffer.IF_ACMPNE),
+            Map.entry("ifnull", BytecodeBuffer.IFNULL),
+            Map.entry("ifnonnull", BytecodeBuffer.IFNONNULL),
+            Map.entry("goto", BytecodeBuffer.GOTO),
+            Map.entry("ireturn", BytecodeBuffer.IRETURN),
+            Map.entry("areturn", BytecodeBuffer.ARETURN),
+            Map.entry("return", BytecodeBuffer.RETURN),
+            Map.entry("getfield", BytecodeBuffer.GETFIELD),
+            Map.entry("putfield", BytecodeBuffer.PUTFIELD),
+            Map.entry("invokevirtual", BytecodeBuffer.INVOKEVIRTUAL),
+            Map.entry("invokespecial", BytecodeBuffer.INVOKESPECIAL),
+            Map.entry("invokenonvirtual", BytecodeBuffer.INVOKESPECIAL),
+            Map.entry("invokestatic", BytecodeBuffer.INVOKESTATIC),
+            Map.entry("new", BytecodeBuffer.NEW),
+            Map.entry("newarray", BytecodeBuffer.NEWARRAY),
+            Map.entry("arraylength", BytecodeBuffer.ARRAYLENGTH),
+            Map.entry("checkcast", BytecodeBuffer.CHECKCAST));
+
+    private final String className;
+    private final ConstantPool constantPool;
+    private final int thisIndex;
+    private final int superIndex;
+
+    private final ByteArrayOutputStream fields;
+    private final ByteArrayOutputStream methods;
+    private int numFields;
+    private int numMethods;
+
+    public ClassFileWriter(String className, String superClass) {
+        this.className = className;
+        this.constantPool = new ConstantPool();
+        this.thisIndex = constantPool.addClass(className);
+        this.superIndex = constantPool.addClass(superClass);
+
+        this.fields = new ByteArrayOutputStream();
+        this.methods = new ByteArrayOutputStream();
+        this.numFields = 0;
+        this.numMethods = 0;
+    }
+
+    public ClassFileWriter field(int accessFlags, String name, String descriptor) {
+        var out = new DataOutputStream(fields);
+
+        try {
+            out.writeShort(accessFlags);
+            out.writeShort(constantPool.addUtf8(name));
+            out.writeShort(constantPool.addUtf8(descriptor));
+            // No field attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write field '" + name + "' of '" + className + "'", e);
+        }
+
+        numFields++;
+        return this;
+    }
+
+    /**
+     * Adds a method with a single Code attribute, whose maximum stack size is computed from the encoded instructions.
+     */
+    public ClassFileWriter method(int accessFlags, String name, String descriptor, List<JasminInstruction> code,
+                                  int maxLocals) {
+        var buffer = new BytecodeBuffer();
+        for (var instruction : code) {
+            encode(instruction, buffer);
+        }
+
+        var bytecode = buffer.toByteArray();
+        var out = new DataOutputStream(methods);
+
+        try {
+            out.writeShort(accessFlags);
+            out.writeShort(constantPool.addUtf8(name));
+            out.writeShort(constantPool.addUtf8(descriptor));
+
+            // A single Code attribute, without exception table nor attributes
+            out.writeShort(1);
+            out.writeShort(constantPool.addUtf8("Code"));
+            out.writeInt(12 + bytecode.length);
+            out.writeShort(buffer.computeMaxStack());
+            out.writeShort(maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write method '" + name + "' of '" + className + "'", e);
+        }
+
+        numMethods++;
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        var classFile = new ByteArrayOutputStream();
+        var out = new DataOutputStream(classFile);
+
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(MINOR_VERSION);
+            out.writeShort(MAJOR_VERSION);
+            constantPool.write(out);
+            out.writeShort(ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            // No interfaces
+            out.writeShort(0);
+            out.writeShort(numFields);
+            fields.writeTo(out);
+            out.writeShort(numMethods);
+            methods.writeTo(out);
+            // No class attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write class file of '" + className + "'", e);
+        }
+
+        return classFile.toByteArray();
+    }
+
+    private void encode(JasminInstruction instruction, BytecodeBuffer code) {
+        if (instruction.isLabel()) {
+            code.label(instruction.getLabel());
+            return;
+        }
+
+        var opcode = instruction.getOpcode();
+        var operands = instruction.getOperands();
+        int stackEffect = JasminStackAnalysis.getStackEffect(instruction);
+
+        if (instruction.isLoad() || instruction.isStore()) {
+            encodeLocal(instruction, stackEffect, code);
+            return;
+        }
+
+        if (instruction.isBranch()) {
+            code.branch(getOpcode(opcode), instruction.getTarget(), stackEffect);
+            return;
+        }
+
+        switch (opcode) {
+            case "iinc" -> code.iinc(instruction.getLocal(), Integer.parseInt(operands.get(1)));
+            case "bipush" -> code.opByte(BytecodeBuffer.BIPUSH, Integer.parseInt(operands.getFirst()) & 0xFF, stackEffect);
+            case "sipush" -> code.opShort(BytecodeBuffer.SIPUSH, Integer.parseInt(operands.getFirst()) & 0xFFFF, stackEffect);
+            case "ldc", "ldc_w" -> code.ldc(constantPool.addInteger(Integer.parseInt(operands.getFirst())));
+            case "newarray" -> code.opByte(BytecodeBuffer.NEWARRAY, getArrayType(operands.getFirst()), stackEffect);
+            case "new", "checkcast" -> code.opShort(getOpcode(opcode), constantPool.addClass(operands.getFirst()),
+                    stackEffect);
+            case "getfield", "putfield" -> code.opShort(getOpcode(opcode), getFieldref(operands), stackEffect);
+            case "invokestatic", "invokevirtual", "invokespecial", "invokenonvirtual" ->
+                    code.opShort(getOpcode(opcode), getMethodref(operands.getFirst()), stackEffect);
+            default -> {
+                if (!operands.isEmpty()) {
+                    throw new RuntimeException("Unexpected operands in instruction '" + instruction + "'");
+                }
+
+                code.op(getOpcode(opcode), stackEffect);
+            }
+        }
+    }
+
+    /**
+     * Loads and stores are encoded in their short form for the first four registers, whatever form they are in.
+     */
+    private void encodeLocal(JasminInstruction instruction, int stackEffect, BytecodeBuffer code) {
+        boolean isReference = instruction.getOpcode().charAt(0) == 'a';
+
+        if (instruction.isLoad()) {
+            code.local(isReference ? BytecodeBuffer.ALOAD : BytecodeBuffer.ILOAD,
+                    isReference ? BytecodeBuffer.ALOAD_0 : BytecodeBuffer.ILOAD_0, instruction.getLocal(), stackEffect);
+        } else {
+            code.local(isReference ? BytecodeBuffer.ASTORE : BytecodeBuffer.ISTORE,
+                    isReference ? BytecodeBuffer.ASTORE_0 : BytecodeBuffer.ISTORE_0, instruction.getLocal(), stackEffect);
+        }
+    }
+
+    private int getOpcode(String opcode) {
+        var value = OPCODES.get(opcode);
+        if (value == null) {
+            throw new RuntimeException("Instruction '" + opcode + "' cannot be written to a class file");
+        }
+
+        return value;
+    }
+
+    private int getArrayType(String type) {
+        if (!type.equals("int")) {
+            throw new RuntimeException("Arrays of '" + type + "' cannot be written to a class file");
+        }
+
+        return BytecodeBuffer.T_INT;
+    }
+
+    /**
+     * Reference to a field from the operands of getfield and putfield, such as 'A/a' and 'I'.
+     */
+    private int getFieldref(List<String> operands) {
+        var field = operands.get(0);
+        int slash = field.lastIndexOf('/');
+
+        return constantPool.addFieldref(field.substring(0, slash), field.substring(slash + 1), operands.get(1));
+    }
+
+    /**
+     * Reference to a method from the operand of an invocation, such as 'io/println(I)V'.
+     */
+    private int getMethodref(String method) {
+        int open = method.indexOf('(');
+        int slash = method.lastIndexOf('/', open);
+
+        return constantPool.addMethodref(method.substring(0, slash), method.substring(slash + 1, open),
+                method.substring(open));
+    }
+}
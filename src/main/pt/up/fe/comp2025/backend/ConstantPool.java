@@ -0,0 +1,132 @@
+package pt.up.fe.comp2025.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constant pool of a class file.
+ * <p>
+ * Every add method returns the index of the entry, and equal entries are only added once.
+ */
+public class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int FIELDREF = 9;
+    private static final int METHODREF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream entries;
+    private final Map<String, Integer> indexes;
+
+    // Index 0 is not used
+    private int count = 1;
+
+    public ConstantPool() {
+        this.bytes = new ByteArrayOutputStream();
+        this.entries = new DataOutputStream(bytes);
+        this.indexes = new HashMap<>();
+    }
+
+    public int addUtf8(String value) {
+        var index = indexes.get(UTF8 + ":" + value);
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            entries.writeByte(UTF8);
+            entries.writeUTF(value);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write constant '" + value + "'", e);
+        }
+
+        return register(UTF8 + ":" + value);
+    }
+
+    public int addInteger(int value) {
+        var index = indexes.get(INTEGER + ":" + value);
+        if (index != null) {
+            return index;
+        }
+
+        writeEntry(INTEGER, value >>> 16, value & 0xFFFF);
+        return register(INTEGER + ":" + value);
+    }
+
+    public int addClass(String internalName) {
+        var index = indexes.get(CLASS + ":" + internalName);
+        if (index != null) {
+            return index;
+        }
+
+        writeEntry(CLASS, addUtf8(internalName));
+        return register(CLASS + ":" + internalName);
+    }
+
+    public int addNameAndType(String name, String descriptor) {
+        var key = NAME_AND_TYPE + ":" + name + ":" + descriptor;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        writeEntry(NAME_AND_TYPE, addUtf8(name), addUtf8(descriptor));
+        return register(key);
+    }
+
+    public int addFieldref(String owner, String name, String descriptor) {
+        return addMemberRef(FIELDREF, owner, name, descriptor);
+    }
+
+    public int addMethodref(String owner, String name, String descriptor) {
+        return addMemberRef(METHODREF, owner, name, descriptor);
+    }
+
+    private int addMemberRef(int tag, String owner, String name, String descriptor) {
+        var key = tag + ":" + owner + "." + name + ":" + descriptor;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        writeEntry(tag, addClass(owner), addNameAndType(name, descriptor));
+        return register(key);
+    }
+
+    /**
+     * Writes an entry made of a tag and two-byte values.
+     */
+    private void writeEntry(int tag, int... values) {
+        try {
+            entries.writeByte(tag);
+            for (var value : values) {
+                entries.writeShort(value);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write constant pool entry", e);
+        }
+    }
+
+    private int register(String key) {
+        if (count > 0xFFFF) {
+            throw new RuntimeException("Constant pool has more than 65535 entries");
+        }
+
+        indexes.put(key, count);
+        return count++;
+    }
+
+    /**
+     * Writes the constant_pool_count followed by the entries.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeShort(count);
+        bytes.writeTo(out);
+    }
+}
@@ -5,16 +5,16 @@ import org.specs.comp.ollir.inst.*;
 import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.specs.util.classmap.FunctionClassMap;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.specs.util.classmap.BiConsumerClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
-import pt.up.fe.specs.util.utilities.StringLines;
 import org.specs.comp.ollir.type.*;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
-import java.util.stream.Collectors;
 
 import static org.specs.comp.ollir.OperationType.GTH;
 import static org.specs.comp.ollir.OperationType.LTH;
@@ -22,13 +22,13 @@ import static org.specs.comp.ollir.OperationType.LTH;
 /**
  * Generates Jasmin code from an OllirResult.
  * <p>
+ * The instructions of each method are added to a list of {@link JasminInstruction}, and the text of the whole class
+ * is only written at the end, by a {@link JasminWriter}. The same lists are encoded into a class file by
+ * {@link ClassFileGenerator}, so both backends select their instructions here.
  * One JasminGenerator instance per OllirResult.
  */
 public class JasminGenerator {
 
-    private static final String NL = "\n";
-    private static final String TAB = "   ";
-
     private final OllirResult ollirResult;
 
     List<Report> reports;
@@ -42,7 +42,16 @@ public class JasminGenerator {
     private int maxStack = 0;
     private int labelCounter = 0;
 
-    private final FunctionClassMap<TreeNode, String> generators;
+    private final BiConsumerClassMap<TreeNode, List<JasminInstruction>> generators;
+
+    // Only with '-o'
+    private final JasminPeephole peephole;
+
+    // With '-o', comparisons branch directly with if_icmpXX, or ifXX against zero
+    private final boolean fuseBranches;
+
+    // With '-g', the stack counters are checked against the exact maximum stack size
+    private final boolean debug;
 
     public JasminGenerator(OllirResult ollirResult) {
         this.ollirResult = ollirResult;
@@ -52,10 +61,11 @@ public class JasminGenerator {
         currentMethod = null;
 
         types = new JasminUtils(ollirResult);
+        peephole = ConfigOptions.getOptimize(ollirResult.getConfig()) ? JasminPeephole.withDefaultRules() : null;
+        fuseBranches = ConfigOptions.getOptimize(ollirResult.getConfig());
+        debug = ConfigOptions.getDebug(ollirResult.getConfig());
 
-        this.generators = new FunctionClassMap<>();
-        generators.put(ClassUnit.class, this::generateClassUnit);
-        generators.put(Method.class, this::generateMethod);
+        this.generators = new BiConsumerClassMap<>();
         generators.put(AssignInstruction.class, this::generateAssign);
         generators.put(SingleOpInstruction.class, this::generateSingleOp);
         generators.put(LiteralElement.class, this::generateLiteral);
@@ -75,15 +85,8 @@ public class JasminGenerator {
         generators.put(ArrayLengthInstruction.class, this::generateArrayLengthInstruction);
     }
 
-    private String apply(TreeNode node) {
-        var code = new StringBuilder();
-
-        // Print the corresponding OLLIR code as a comment
-        //code.append("; ").append(node).append(NL);
-
-        code.append(generators.apply(node));
-
-        return code.toString();
+    private void apply(TreeNode node, List<JasminInstruction> code) {
+        generators.accept(node, code);
     }
 
 
@@ -95,47 +98,47 @@ public class JasminGenerator {
 
         // This way, build is idempotent
         if (code == null) {
-            code = apply(ollirResult.getOllirClass());
+            var writer = new JasminWriter();
+            generateClassUnit(ollirResult.getOllirClass(), writer);
+            code = writer.toString();
+            reportPeepholeHits();
         }
 
         return code;
     }
 
+    /**
+     * Adds a log with the number of times each peephole rule was applied, when the peephole pass is enabled.
+     */
+    void reportPeepholeHits() {
+        if (peephole != null) {
+            var message = "Peephole rules applied: " + peephole.getHits();
+            reports.add(Report.newLog(Stage.OPTIMIZATION, -1, -1, message, null));
+        }
+    }
 
-    private String generateClassUnit(ClassUnit classUnit) {
 
-        var code = new StringBuilder();
+    private void generateClassUnit(ClassUnit classUnit, JasminWriter writer) {
 
         // generate class name
-        var className = ollirResult.getOllirClass().getClassName();
-        code.append(".class ").append(className).append(NL).append(NL);
+        var className = classUnit.getClassName();
+        writer.line(".class " + className).line("");
 
-        String superClass = ollirResult.getOllirClass().getSuperClass();
-        var fullSuperClass = superClass != null ? superClass : "java/lang/Object";
+        var fullSuperClass = getSuperClass(classUnit);
 
-        code.append(".super ").append(fullSuperClass).append(NL);
+        writer.line(".super " + fullSuperClass);
 
-        for (var field : ollirResult.getOllirClass().getFields()) {
-            code.append(".field public '").append(field.getFieldName()).append("' ");
-            if (BuiltinType.is(field.getFieldType(), BuiltinKind.BOOLEAN)) {
-                code.append("Z").append(NL);
-            } else {
-                code.append(types.getType(field.getFieldType())).append(NL);
-            }
+        for (var field : classUnit.getFields()) {
+            writer.line(".field public '" + field.getFieldName() + "' " + descriptorOf(field.getFieldType()));
         }
         // generate a single constructor method
-        var defaultConstructor = """
-                ;default constructor
-                .method public <init>()V
-                    aload_0
-                    invokespecial %s/<init>()V
-                    return
-                .end method
-                """.formatted(fullSuperClass);
-        code.append(defaultConstructor);
+        writer.line(";default constructor")
+                .line(".method public <init>()V")
+                .instructions(generateDefaultConstructor(fullSuperClass))
+                .line(".end method");
 
         // generate code for all other methods
-        for (var method : ollirResult.getOllirClass().getMethods()) {
+        for (var method : classUnit.getMethods()) {
 
             // Ignore constructor, since there is always one constructor
             // that receives no arguments, and has been already added
@@ -144,12 +147,24 @@ public class JasminGenerator {
                 continue;
             }
 
-            code.append(apply(method));
+            generateMethod(method, writer);
         }
+    }
+
 
-        return code.toString();
+    String getSuperClass(ClassUnit classUnit) {
+        return classUnit.getSuperClass() != null ? classUnit.getSuperClass() : "java/lang/Object";
     }
 
+    /**
+     * The body of the constructor without arguments that every class has, which only calls the one of its superclass.
+     */
+    List<JasminInstruction> generateDefaultConstructor(String superClass) {
+        return List.of(
+                JasminInstruction.of("aload_0"),
+                JasminInstruction.of("invokespecial", superClass + "/<init>()V"),
+                JasminInstruction.of("return"));
+    }
 
     private int getMaxVarIndex(Map<String, Descriptor> varTable) {
         OptionalInt maxIndex = varTable.values().stream()
@@ -159,15 +174,36 @@ public class JasminGenerator {
         return maxIndex.orElse(0);
     }
 
-    private String generateMethod(Method method) {
-        // set method
-        currentMethod = method;
-        currentStack = 0;
-        maxStack = 0;
-        labelCounter = 0;
+    int getMaxLocals(Method method) {
+        return getMaxVarIndex(method.getVarTable()) + 1;
+    }
+
+    /**
+     * The descriptor of a method, such as '(IZ)I'.
+     */
+    String getMethodDescriptor(Method method) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (var param : method.getParams()) {
+            descriptor.append(descriptorOf(param.getType()));
+        }
+
+        return descriptor.append(")").append(descriptorOf(method.getReturnType())).toString();
+    }
 
-        var code = new StringBuilder();
+    /**
+     * The descriptor of a type in fields and method signatures, where booleans are 'Z' instead of the 'I' of
+     * {@link JasminUtils#getType(Type)}. The references to fields and methods must use the same descriptors as
+     * their declarations, or they are not found at runtime.
+     */
+    String descriptorOf(Type type) {
+        if (BuiltinType.is(type, BuiltinKind.BOOLEAN)) {
+            return "Z";
+        }
 
+        return types.getType(type);
+    }
+
+    private void generateMethod(Method method, JasminWriter writer) {
         // calculate modifier
         var modifier = types.getModifier(method.getMethodAccessModifier());
 
@@ -177,138 +213,95 @@ public class JasminGenerator {
             modifier += "static ";
         }
 
-        StringBuilder params = new StringBuilder();
-        if(!method.getParams().isEmpty()) {
-            for(var param : method.getParams()) {
-                if (BuiltinType.is(param.getType(), BuiltinKind.BOOLEAN)) {
-                    params.append("Z");
-                } else {
-                    params.append(types.getType(param.getType()));
-                }
-            }
-        }
-
-        boolean isReturnBool = BuiltinType.is(method.getReturnType(), BuiltinKind.BOOLEAN);
-        var returnType = isReturnBool ? "Z" : types.getType(method.getReturnType());
+        writer.line("").line(".method " + modifier + methodName + getMethodDescriptor(method));
 
-        code.append("\n.method ").append(modifier)
-                .append(methodName).append("(").append(params).append(")").append(returnType).append(NL);
+        var body = generateBody(method);
+        writer.instructions(body);
 
         // Add limits
-        int maxVarIndex = getMaxVarIndex(method.getVarTable());
+        writer.directive(".limit stack " + JasminStackAnalysis.computeMaxStack(body));
+        writer.directive(".limit locals " + getMaxLocals(method));
+        writer.line(".end method");
+    }
+
+    /**
+     * Selects the instructions of a method, after the peephole pass when it is enabled.
+     */
+    List<JasminInstruction> generateBody(Method method) {
+        // set method
+        currentMethod = method;
+        currentStack = 0;
+        maxStack = 0;
+        labelCounter = 0;
 
+        List<JasminInstruction> body = new ArrayList<>();
         for (var inst : method.getInstructions()) {
             for(var label : method.getLabels(inst)) {
-                code.append(label).append(":").append(NL);
+                body.add(JasminInstruction.label(label));
             }
 
-            var instCode = StringLines.getLines(apply(inst)).stream()
-                    .collect(Collectors.joining(NL + TAB, TAB, NL));
+            apply(inst, body);
+        }
 
-            code.append(instCode);
+        if (peephole != null) {
+            peephole.optimize(body);
         }
 
-        code.append(TAB).append(".limit stack ").append(maxStack).append(NL);
-        code.append(TAB).append(".limit locals ").append(maxVarIndex + 1).append(NL);
-        code.append(".end method\n");
+        if (debug) {
+            int exactMaxStack = JasminStackAnalysis.computeMaxStack(body);
+            if (exactMaxStack != maxStack) {
+                var message = "Method " + method.getMethodName() + " needs a stack of " + exactMaxStack
+                        + ", but the stack counters of the generator give " + maxStack;
+                reports.add(Report.newWarn(Stage.GENERATION, -1, -1, message, null));
+            }
+        }
 
         // unset method
         currentMethod = null;
 
-        return code.toString();
-    }
-
-    private boolean checkIncrement(AssignInstruction assign) {
-        if (assign.getRhs() instanceof BinaryOpInstruction binaryOp) {
-            if (binaryOp.getOperation().getOpType().equals(OperationType.ADD)) {
-                Operand left = (Operand) assign.getDest();
-                boolean allOperandsAreEqual = true;
-                boolean found = false;
-                for(var operand: binaryOp.getOperands()) {
-                    if (operand instanceof Operand) {
-                        if (((Operand) operand).getName().equals(left.getName())) {
-                            found = true;
-                        }
-                    }
-                    else allOperandsAreEqual = false;
-                }
-                return found && !allOperandsAreEqual;
-            }
-        }
+        return body;
+    }
 
-        // tmp variable
-        if (assign.getRhs() instanceof SingleOpInstruction singleOp &&
-                singleOp.getSingleOperand() instanceof Operand tempVar) {
-            var instructions = currentMethod.getInstructions();
-            for (var inst : instructions) {
-                if (inst instanceof AssignInstruction prevAssign &&
-                        prevAssign.getDest() instanceof Operand dest &&
-                        dest.getName().equals(tempVar.getName()) &&
-                        prevAssign.getRhs() instanceof BinaryOpInstruction binaryOp) {
-
-                    if (binaryOp.getOperation().getOpType().equals(OperationType.ADD)) {
-                        Operand target = (Operand) assign.getDest();
-                        boolean hasTarget = false;
-                        boolean hasLiteral = false;
-
-                        for (var operand : binaryOp.getOperands()) {
-                            if (operand instanceof Operand op &&
-                                    op.getName().equals(target.getName())) {
-                                hasTarget = true;
-                            }
-                            if (operand instanceof LiteralElement) {
-                                hasLiteral = true;
-                            }
-                        }
-
-                        return hasTarget && hasLiteral;
-                    }
-                }
-            }
+    private int getRegister(Element element) {
+        return currentMethod.getVarTable().get(((Operand) element).getName()).getVirtualReg();
+    }
+
+    /**
+     * Checks if values of the given type are handled with the 'a' instructions instead of the 'i' ones.
+     */
+    private boolean isReference(Type type) {
+        var typeStr = types.getType(type);
+
+        if (typeStr.equals("V")) {
+            throw new NotImplementedException(type);
         }
 
-        return false;
+        return !typeStr.equals("I");
     }
 
-    private String handleIncrement(AssignInstruction assign) {
-        StringBuilder code = new StringBuilder();
-
+    private void handleIncrement(AssignInstruction assign, List<JasminInstruction> code) {
         var operand = (Operand) assign.getDest();
         var reg = currentMethod.getVarTable().get(operand.getName());
-        String literalStr = "";
-
-        if (assign.getRhs() instanceof BinaryOpInstruction binaryOp) {
-            for(var ops: binaryOp.getOperands()) {
-                if(ops instanceof LiteralElement literal) {
-                    literalStr = literal.getLiteral();
-                }
-            }
-        } else if (assign.getRhs() instanceof SingleOpInstruction singleOp) {
-            var tempVar = (Operand) singleOp.getSingleOperand();
-            for (var inst : currentMethod.getInstructions()) {
-                if (inst instanceof AssignInstruction prevAssign &&
-                        prevAssign.getDest() instanceof Operand dest &&
-                        dest.getName().equals(tempVar.getName()) &&
-                        prevAssign.getRhs() instanceof BinaryOpInstruction binaryOp) {
-
-                    for(var ops: binaryOp.getOperands()) {
-                        if(ops instanceof LiteralElement literal) {
-                            literalStr = literal.getLiteral();
-                            break;
-                        }
-                    }
-                    break;
-                }
-            }
-        }
 
-        code.append("iinc ").append(reg.getVirtualReg()).append(" ").append(literalStr).append(NL);
-        return code.toString();
+        code.add(JasminInstruction.of("iinc", String.valueOf(reg.getVirtualReg()),
+                types.getIncrementLiteral(assign, currentMethod)));
     }
 
-    private String generateAssign(AssignInstruction assign) {
-        var code = new StringBuilder();
+    /**
+     * Adds a load or a store, using the short form for the first four registers.
+     *
+     * @param prefix the type of the value, 'i' or 'a'
+     * @param action 'load' or 'store'
+     */
+    private void addLocal(String prefix, String action, int reg, List<JasminInstruction> code) {
+        if (reg >= 0 && reg <= 3) {
+            code.add(JasminInstruction.of(prefix + action + "_" + reg));
+        } else {
+            code.add(JasminInstruction.of(prefix + action, String.valueOf(reg)));
+        }
+    }
 
+    private void generateAssign(AssignInstruction assign, List<JasminInstruction> code) {
         // store value in the stack in destination
         var lhs = assign.getDest();
 
@@ -322,117 +315,104 @@ public class JasminGenerator {
         // get register
         var reg = currentMethod.getVarTable().get(operand.getName());
 
-        if (checkIncrement(assign)) {
-            code.append(handleIncrement(assign));
-            return code.toString();
+        if (types.isSelfMove(assign, currentMethod)) {
+            return;
+        }
+
+        if (types.isIncrement(assign, currentMethod)) {
+            handleIncrement(assign, code);
+            return;
         }
 
 
         if (lhs instanceof ArrayOperand) {
-            code.append(apply(assign.getDest()));
-            code.append(apply(assign.getRhs()));
-            code.append("iastore").append(NL);
+            apply(assign.getDest(), code);
+            apply(assign.getRhs(), code);
+            code.add(JasminInstruction.of("iastore"));
             popStack();
             popStack();
-            return code.toString();
+            return;
         }
 
         // generate code for loading what's on the right
-        code.append(apply(assign.getRhs()));
+        apply(assign.getRhs(), code);
 
         if (assign.getRhs() instanceof SingleOpInstruction &&
                 ((SingleOpInstruction) assign.getRhs()).getSingleOperand() instanceof ArrayOperand) {
-            code.append("iaload").append(NL);
+            code.add(JasminInstruction.of("iaload"));
             pushStack();
         }
 
-        String operandStr = types.getType(operand.getType());
-        if(operandStr.equals("V")) {
-            operandStr = "";
-        }
-        if(operandStr.startsWith("[") || operand.getType() instanceof ArrayType || operand.getType() instanceof ClassType) {
-            operandStr = "a";
-        }
-        if(operandStr.equals("Ljava/lang/String;")) {
-            operandStr = "a";
-        }
-
-        if (reg.getVirtualReg() >= 0 && reg.getVirtualReg() <= 3) {
-            code.append(operandStr.toLowerCase()).append("store_").append(reg.getVirtualReg()).append(NL);
-        } else {
-            code.append(operandStr.toLowerCase()).append("store ").append(reg.getVirtualReg()).append(NL);
-        }
+        addLocal(isReference(operand.getType()) ? "a" : "i", "store", reg.getVirtualReg(), code);
 
         popStack();
-
-        return code.toString();
     }
 
-    private String generateSingleOp(SingleOpInstruction singleOp) {
-        return apply(singleOp.getSingleOperand());
+    private void generateSingleOp(SingleOpInstruction singleOp, List<JasminInstruction> code) {
+        apply(singleOp.getSingleOperand(), code);
     }
 
-    private String generateLiteral(LiteralElement literal) {
+    private void generateLiteral(LiteralElement literal, List<JasminInstruction> code) {
         int value = Integer.parseInt(literal.getLiteral());
-        String inst;
         pushStack();
-        if (value >= 0 && value <= 5) {
-            inst = "iconst_";
+        if (value == -1) {
+            code.add(JasminInstruction.of("iconst_m1"));
+        } else if (value >= 0 && value <= 5) {
+            code.add(JasminInstruction.of("iconst_" + literal.getLiteral()));
         } else if (value >= -128 && value <= 127) {
-            inst = "bipush ";
+            code.add(JasminInstruction.of("bipush", literal.getLiteral()));
         } else if (value >= -32768 && value <= 32767) {
-            inst = "sipush ";
+            code.add(JasminInstruction.of("sipush", literal.getLiteral()));
         } else {
-            inst = "ldc ";
+            code.add(JasminInstruction.of("ldc", literal.getLiteral()));
         }
-        return inst + literal.getLiteral() + NL;
     }
 
-    private String generateOperand(Operand operand) {
-        var code = new StringBuilder();
+    private void generateOperand(Operand operand, List<JasminInstruction> code) {
         // get register
         var reg = currentMethod.getVarTable().get(operand.getName());
-        String regStr = types.getType(operand.getType());
 
-        if(regStr.equals("V")) {
-            regStr = "";
-        }
-        if(regStr.startsWith("[") || operand.getType() instanceof ArrayType || operand instanceof ArrayOperand || operand.getType() instanceof ClassType) {
-            regStr = "a";
+        // An array access loads the array, and then its index
+        var prefix = operand instanceof ArrayOperand || isReference(operand.getType()) ? "a" : "i";
+        addLocal(prefix, "load", reg.getVirtualReg(), code);
+        pushStack();
+
+        for (var child: operand.getChildren()) {
+            apply(child, code);
         }
+    }
 
-        if (reg.getVirtualReg() >= 0 && reg.getVirtualReg() <= 3) {
-            code.append(regStr.toLowerCase()).append("load_").append(reg.getVirtualReg()).append(NL);
-            pushStack();
+    private void generateBinaryOp(BinaryOpInstruction binaryOp, List<JasminInstruction> code) {
+        var opType = binaryOp.getOperation().getOpType();
 
-        } else {
-            code.append(regStr.toLowerCase()).append("load ").append(reg.getVirtualReg()).append(NL);
+        if (fuseBranches && (opType.equals(LTH) || opType.equals(GTH))) {
+            int currentLabel = labelCounter++;
+            generateCompareBranch(binaryOp.getLeftOperand(), binaryOp.getRightOperand(), opType,
+                    "j_true_" + currentLabel, code);
+
+            code.add(JasminInstruction.of("iconst_0"));
+            code.add(JasminInstruction.of("goto", "j_end_" + currentLabel));
+            code.add(JasminInstruction.label("j_true_" + currentLabel));
+            code.add(JasminInstruction.of("iconst_1"));
+            code.add(JasminInstruction.label("j_end_" + currentLabel));
             pushStack();
 
+            return;
         }
 
-        for (var child: operand.getChildren()) {
-            code.append(apply(child));
-        }
-
-        return code.toString();
-    }
-
-    private String generateBinaryOp(BinaryOpInstruction binaryOp) {
-        var code = new StringBuilder();
-
-        code.append(apply(binaryOp.getLeftOperand()));
-        code.append(apply(binaryOp.getRightOperand()));
+        apply(binaryOp.getLeftOperand(), code);
+        apply(binaryOp.getRightOperand(), code);
 
         var op = switch (binaryOp.getOperation().getOpType()) {
             case ADD -> "iadd";
             case MUL -> "imul";
             case DIV -> "idiv";
+            case SHL -> "ishl";
             case SUB, LTH, GTH -> "isub";
             default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
         };
 
-        code.append(op).append(NL);
+        code.add(JasminInstruction.of(op));
 
         popStack();
         popStack();
@@ -440,194 +420,209 @@ public class JasminGenerator {
 
         if(binaryOp.getOperation().getOpType().equals(LTH) || binaryOp.getOperation().getOpType().equals(GTH)) {
             int currentLabel = labelCounter++;
-            code.append(binaryOp.getOperation().getOpType().equals(LTH) ? "iflt" : "ifgt")
-                    .append(" j_true_").append(currentLabel).append(NL);
+            code.add(JasminInstruction.of(binaryOp.getOperation().getOpType().equals(LTH) ? "iflt" : "ifgt",
+                    "j_true_" + currentLabel));
 
             popStack();
 
-            code.append("iconst_0").append(NL);
+            code.add(JasminInstruction.of("iconst_0"));
             pushStack();
 
-            code.append("goto j_end_").append(currentLabel).append(NL);
-            code.append("j_true_").append(currentLabel).append(":").append(NL);
+            code.add(JasminInstruction.of("goto", "j_end_" + currentLabel));
+            code.add(JasminInstruction.label("j_true_" + currentLabel));
 
             popStack();
-            code.append("iconst_1").append(NL);
+            code.add(JasminInstruction.of("iconst_1"));
             pushStack();
 
-            code.append("j_end_").append(currentLabel).append(":").append(NL);
+            code.add(JasminInstruction.label("j_end_" + currentLabel));
         }
-
-        return code.toString();
     }
 
-    private String generateReturn(ReturnInstruction returnInst) {
-        var code = new StringBuilder();
-        String returnStr = types.getType(returnInst.getReturnType());
-
-        if(returnStr.equals("V")) {
-            returnStr = "";
-        }
-        if(returnStr.startsWith("[") || returnInst.getReturnType() instanceof ArrayType || returnInst.getReturnType() instanceof ClassType) {
-            returnStr = "a";
-        }
-
+    private void generateReturn(ReturnInstruction returnInst, List<JasminInstruction> code) {
         if(returnInst.getOperand().isPresent()) {
-            code.append(apply(returnInst.getOperand().get()));
+            apply(returnInst.getOperand().get(), code);
             popStack();
         }
 
-        code.append(returnStr.toLowerCase()).append("return").append(NL);
+        var returnType = returnInst.getReturnType();
 
-        return code.toString();
+        if (BuiltinType.is(returnType, BuiltinKind.VOID)) {
+            code.add(JasminInstruction.of("return"));
+        } else {
+            code.add(JasminInstruction.of(isReference(returnType) ? "areturn" : "ireturn"));
+        }
     }
 
-    private String generateNewInstruction(NewInstruction newInst) {
-        var code = new StringBuilder();
+    private void generateNewInstruction(NewInstruction newInst, List<JasminInstruction> code) {
         if (newInst.getOperands().size() > 1) {
             for (int i = 1; i < newInst.getOperands().size(); i++) {
-                code.append(apply(newInst.getOperands().get(i)));
+                apply(newInst.getOperands().get(i), code);
             }
         }
 
         if (newInst.getReturnType() instanceof ArrayType) {
-            code.append("newarray int").append(NL);
+            code.add(JasminInstruction.of("newarray", "int"));
         }
         else if(newInst.getReturnType() instanceof ClassType) {
-            code.append("new ").append(((ClassType) newInst.getReturnType()).getName()).append(NL);
+            code.add(JasminInstruction.of("new", ((ClassType) newInst.getReturnType()).getName()));
         }
-
-        return code.toString();
     }
 
-    private String generateInvokeSpecial(InvokeSpecialInstruction invokeInst) {
-        var code = new StringBuilder();
-        code.append(apply(invokeInst.getCaller()));
+    private void generateInvokeSpecial(InvokeSpecialInstruction invokeInst, List<JasminInstruction> code) {
+        apply(invokeInst.getCaller(), code);
 
         String className = types.getClassName(invokeInst.getCaller().getType());
         String methodName = ((LiteralElement) invokeInst.getMethodName()).getLiteral();
 
-        code.append("invokenonvirtual ").append(className).append("/").append(methodName).append("(");
+        var method = new StringBuilder();
+        method.append(className).append("/").append(methodName).append("(");
 
         for (var arg: invokeInst.getArguments()) {
-            code.append(types.getType(arg.getType()));
+            method.append(descriptorOf(arg.getType()));
         }
 
-        code.append(")V").append(NL);
+        method.append(")V");
 
-        return code.toString();
+        code.add(JasminInstruction.of("invokenonvirtual", method.toString()));
     }
 
-    private String generatePutFieldInstruction(PutFieldInstruction putFieldInst) {
-        StringBuilder code = new StringBuilder();
-        int reg = currentMethod.getVarTable().get(putFieldInst.getObject().getName()).getVirtualReg();
-        code.append("aload_").append(reg).append(NL);
+    private void generatePutFieldInstruction(PutFieldInstruction putFieldInst, List<JasminInstruction> code) {
+        addLocal("a", "load", getRegister(putFieldInst.getObject()), code);
         pushStack();
 
-        if (putFieldInst.getValue() instanceof LiteralElement) {
-            LiteralElement literalElement = (LiteralElement) putFieldInst.getValue();
-            code.append("bipush ").append(literalElement.getLiteral()).append(NL);
-            code.append("putfield ").append(currentMethod.getOllirClass().getClassName()).append("/").append(putFieldInst.getField().getName()).append(" ").append(types.getType(literalElement.getType())).append(NL);
-        } else {
-            code.append(apply(putFieldInst.getValue())).append(NL);
-            code.append("putfield ").append(currentMethod.getOllirClass().getClassName()).append("/").append(putFieldInst.getField().getName()).append(" ").append(types.getType(putFieldInst.getValue().getType())).append(NL);
-        }
+        // Literals are pushed with the smallest instruction that holds them, like any other operand
+        apply(putFieldInst.getValue(), code);
+
+        code.add(JasminInstruction.of("putfield",
+                currentMethod.getOllirClass().getClassName() + "/" + putFieldInst.getField().getName(),
+                descriptorOf(putFieldInst.getField().getType())));
 
         popStack();
         popStack();
-
-        return code.toString();
     }
 
-    private String generateGetFieldInstruction(GetFieldInstruction getFieldInst) {
-        StringBuilder code = new StringBuilder();
-        int reg = currentMethod.getVarTable().get(getFieldInst.getObject().getName()).getVirtualReg();
-        code.append("aload_").append(reg).append(NL);
+    private void generateGetFieldInstruction(GetFieldInstruction getFieldInst, List<JasminInstruction> code) {
+        addLocal("a", "load", getRegister(getFieldInst.getObject()), code);
         pushStack();
-        code.append("getfield ").append(currentMethod.getOllirClass().getClassName()).append("/").append(getFieldInst.getField().getName()).append(" ").append(types.getType(getFieldInst.getField().getType())).append(NL);
+        code.add(JasminInstruction.of("getfield",
+                currentMethod.getOllirClass().getClassName() + "/" + getFieldInst.getField().getName(),
+                descriptorOf(getFieldInst.getField().getType())));
 
         popStack();
         pushStack();
-        return code.toString();
     }
 
-    private String generateOpCondInstruction(OpCondInstruction opCondInst) {
-        StringBuilder code = new StringBuilder();
+    private void generateOpCondInstruction(OpCondInstruction opCondInst, List<JasminInstruction> code) {
+        // A negated condition jumps when the value is zero
+        if (opCondInst.getCondition() instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType().equals(OperationType.NOTB)) {
+            apply(unaryOp.getOperand(), code);
+            code.add(JasminInstruction.of("ifeq", opCondInst.getLabel()));
+            popStack();
+            return;
+        }
+
+        if (fuseBranches) {
+            var operands = opCondInst.getCondition().getOperands();
+            generateCompareBranch(operands.get(0), operands.get(1),
+                    opCondInst.getCondition().getOperation().getOpType(), opCondInst.getLabel(), code);
+            return;
+        }
+
         for(var operand: opCondInst.getCondition().getOperands()) {
-            code.append(apply(operand));
+            apply(operand, code);
         }
 
         // instead of using if 10 < 20, we use if 10 - 20 < 0
-        code.append("isub").append(NL);
+        code.add(JasminInstruction.of("isub"));
         String condition = switch (opCondInst.getCondition().getOperation().getOpType()) {
             case LTH -> "iflt";
             case GTE -> "ifge";
             case GTH -> "ifgt";
             case LTE -> "ifle";
+            case EQ -> "ifeq";
+            case NEQ -> "ifne";
             default -> throw new NotImplementedException(opCondInst.getCondition().getOperation().getOpType());
         };
 
-        code.append(condition).append(" ").append(opCondInst.getLabel()).append(NL);
+        code.add(JasminInstruction.of(condition, opCondInst.getLabel()));
+    }
 
-        return code.toString();
+    /**
+     * Compares two ints and jumps to the label if the comparison holds, with a single if_icmpXX instruction, or with
+     * ifXX when one of the operands is zero.
+     */
+    private void generateCompareBranch(Element left, Element right, OperationType opType, String label,
+                                       List<JasminInstruction> code) {
+        if (types.isZero(right)) {
+            apply(left, code);
+            code.add(JasminInstruction.of("if" + types.getComparisonSuffix(opType), label));
+            popStack();
+        } else if (types.isZero(left)) {
+            apply(right, code);
+            code.add(JasminInstruction.of("if" + types.getComparisonSuffix(types.swapComparison(opType)), label));
+            popStack();
+        } else {
+            apply(left, code);
+            apply(right, code);
+            code.add(JasminInstruction.of("if_icmp" + types.getComparisonSuffix(opType), label));
+            popStack();
+            popStack();
+        }
     }
 
-    private String generateGoToInstruction(GotoInstruction gotoInst) {
-        return "goto " + gotoInst.getLabel() + NL;
+    private void generateGoToInstruction(GotoInstruction gotoInst, List<JasminInstruction> code) {
+        code.add(JasminInstruction.of("goto", gotoInst.getLabel()));
     }
 
-    private String generateInvokeStatic(InvokeStaticInstruction invokeInst) {
-        var code = new StringBuilder();
+    private void generateInvokeStatic(InvokeStaticInstruction invokeInst, List<JasminInstruction> code) {
         for (var arg: invokeInst.getArguments()) {
-            code.append(apply(arg)).append(NL);
+            apply(arg, code);
         }
 
         String className = ((Operand) invokeInst.getCaller()).getName();
         String methodName = ((LiteralElement) invokeInst.getMethodName()).getLiteral();
 
-        code.append("invokestatic ").append(className).append("/").append(methodName).append("(");
+        var method = new StringBuilder();
+        method.append(className).append("/").append(methodName).append("(");
 
         for (var arg: invokeInst.getArguments()) {
-            code.append(types.getType(arg.getType()));
+            method.append(descriptorOf(arg.getType()));
         }
 
         for (var ignored: invokeInst.getArguments()) {
             popStack();
         }
 
-        code.append(")").append(types.getType(invokeInst.getReturnType())).append(NL);
+        method.append(")").append(descriptorOf(invokeInst.getReturnType()));
 
-        return code.toString();
+        code.add(JasminInstruction.of("invokestatic", method.toString()));
     }
 
-    private String generateSingleOpCond(SingleOpCondInstruction singleOpCondInst) {
-        return apply(singleOpCondInst.getCondition()) +
-                "ifne " + singleOpCondInst.getLabel() + NL;
+    private void generateSingleOpCond(SingleOpCondInstruction singleOpCondInst, List<JasminInstruction> code) {
+        apply(singleOpCondInst.getCondition(), code);
+        code.add(JasminInstruction.of("ifne", singleOpCondInst.getLabel()));
     }
 
-    private String generateInvokeVirtual(InvokeVirtualInstruction invokeInst) {
-        var code = new StringBuilder();
-        code.append(apply(invokeInst.getCaller()));
+    private void generateInvokeVirtual(InvokeVirtualInstruction invokeInst, List<JasminInstruction> code) {
+        apply(invokeInst.getCaller(), code);
         for (var arg: invokeInst.getArguments()) {
-            code.append(apply(arg)).append(NL);
+            apply(arg, code);
         }
         String className = types.getClassName(invokeInst.getCaller().getType());
         String methodName = ((LiteralElement) invokeInst.getMethodName()).getLiteral();
 
-        code.append("invokevirtual ").append(className).append("/").append(methodName).append("(");
+        var method = new StringBuilder();
+        method.append(className).append("/").append(methodName).append("(");
 
         for (var arg: invokeInst.getArguments()) {
-            String argType = types.getType(arg.getType());
-            if(arg.getType() instanceof BuiltinType builtinType) {
-                if (BuiltinType.is(builtinType, BuiltinKind.BOOLEAN)) {
-                    argType = "Z";
-                }
-            }
-
-            code.append(argType);
+            method.append(descriptorOf(arg.getType()));
         }
 
-        code.append(")").append(types.getType(invokeInst.getReturnType())).append(NL);
+        method.append(")").append(descriptorOf(invokeInst.getReturnType()));
+
+        code.add(JasminInstruction.of("invokevirtual", method.toString()));
 
         popStack();
 
@@ -636,43 +631,27 @@ public class JasminGenerator {
         }
 
         if (!BuiltinType.is(invokeInst.getReturnType(), BuiltinKind.VOID)) {
-            boolean isValueUsed = isValueUsedInContext(invokeInst);
+            boolean isValueUsed = types.isValueUsed(invokeInst, currentMethod);
 
             if (isValueUsed) {
                 pushStack();
             } else {
-                code.append("pop").append(NL);
+                code.add(JasminInstruction.of("pop"));
             }
         }
-
-        return code.toString();
     }
 
-    private boolean isValueUsedInContext(InvokeVirtualInstruction invokeInst) {
-        for (Instruction inst : currentMethod.getInstructions()) {
-            if (inst instanceof AssignInstruction assignInst) {
-                if (assignInst.getRhs() == invokeInst) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    private void generateUnaryOpInstruction(UnaryOpInstruction unaryOpInst, List<JasminInstruction> code) {
+        apply(unaryOpInst.getOperand(), code);
+        code.add(JasminInstruction.of("iconst_1"));
+        code.add(JasminInstruction.of("ixor"));
     }
 
-    private String generateUnaryOpInstruction(UnaryOpInstruction unaryOpInst) {
-        return apply(unaryOpInst.getOperand()) +
-                "iconst_1" + NL +
-                "ixor" + NL;
-    }
-
-    private String generateArrayLengthInstruction(ArrayLengthInstruction arrayLengthInstruction) {
-        var code = new StringBuilder();
-
-        code.append(apply(arrayLengthInstruction.getCaller()));
-
-        code.append("arraylength").append(NL);
+    private void generateArrayLengthInstruction(ArrayLengthInstruction arrayLengthInstruction,
+                                                List<JasminInstruction> code) {
+        apply(arrayLengthInstruction.getCaller(), code);
 
-        return code.toString();
+        code.add(JasminInstruction.of("arraylength"));
     }
 
     private void popStack() {
@@ -0,0 +1,118 @@
+package pt.up.fe.comp2025.backend;
+
+import java.util.List;
+
+/**
+ * A line of the body of a Jasmin method: either a label or an instruction with its operands.
+ */
+public class JasminInstruction {
+
+    private final String label;
+    private final String opcode;
+    private final List<String> operands;
+
+    private JasminInstruction(String label, String opcode, List<String> operands) {
+        this.label = label;
+        this.opcode = opcode;
+        this.operands = operands;
+    }
+
+    public static JasminInstruction label(String name) {
+        return new JasminInstruction(name, null, List.of());
+    }
+
+    public static JasminInstruction of(String opcode, String... operands) {
+        return new JasminInstruction(null, opcode, List.of(operands));
+    }
+
+    public boolean isLabel() {
+        return label != null;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the opcode, or null if this is a label
+     */
+    public String getOpcode() {
+        return opcode;
+    }
+
+    public List<String> getOperands() {
+        return operands;
+    }
+
+    public boolean is(String opcode) {
+        return opcode.equals(this.opcode);
+    }
+
+    /**
+     * True for goto and the conditional branches, whose last operand is the target label.
+     */
+    public boolean isBranch() {
+        return opcode != null && (opcode.equals("goto") || opcode.startsWith("if"));
+    }
+
+    public String getTarget() {
+        return isBranch() ? operands.getLast() : null;
+    }
+
+    public boolean isReturn() {
+        return opcode != null && opcode.endsWith("return");
+    }
+
+    public boolean isLoad() {
+        return opcode != null && opcode.matches("[ia]load(_\\d)?");
+    }
+
+    public boolean isStore() {
+        return opcode != null && opcode.matches("[ia]store(_\\d)?");
+    }
+
+    /**
+     * @return the local variable read or written by a load, store or iinc, or -1 for other instructions
+     */
+    public int getLocal() {
+        if (!isLoad() && !isStore() && !is("iinc")) {
+            return -1;
+        }
+
+        int underscore = opcode.indexOf('_');
+        if (underscore >= 0) {
+            return Integer.parseInt(opcode.substring(underscore + 1));
+        }
+
+        return Integer.parseInt(operands.getFirst());
+    }
+
+    /**
+     * True if the instruction reads the given local variable.
+     */
+    public boolean reads(int local) {
+        return (isLoad() || is("iinc")) && getLocal() == local;
+    }
+
+    /**
+     * Writes the instruction as a line of Jasmin code, without indentation nor new line.
+     */
+    public void appendTo(StringBuilder out) {
+        if (isLabel()) {
+            out.append(label).append(':');
+            return;
+        }
+
+        out.append(opcode);
+        for (var operand : operands) {
+            out.append(' ').append(operand);
+        }
+    }
+
+    @Override
+    public String toString() {
+        var out = new StringBuilder();
+        appendTo(out);
+        return out.toString();
+    }
+}
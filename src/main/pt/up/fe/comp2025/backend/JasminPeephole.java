@@ -0,0 +1,315 @@
+package pt.up.fe.comp2025.backend;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Peephole optimization of the body of a Jasmin method.
+ * <p>
+ * Each rule is tried at every position of the code, and the whole code is scanned again while any rule changes it.
+ * The number of times each rule was applied is kept across all the methods given to the same instance.
+ */
+public class JasminPeephole {
+
+    private static final Map<String, String> NEGATED_BRANCHES = Map.ofEntries(
+            Map.entry("ifeq", "ifne"), Map.entry("ifne", "ifeq"),
+            Map.entry("iflt", "ifge"), Map.entry("ifge", "iflt"),
+            Map.entry("ifgt", "ifle"), Map.entry("ifle", "ifgt"),
+            Map.entry("if_icmpeq", "if_icmpne"), Map.entry("if_icmpne", "if_icmpeq"),
+            Map.entry("if_icmplt", "if_icmpge"), Map.entry("if_icmpge", "if_icmplt"),
+            Map.entry("if_icmpgt", "if_icmple"), Map.entry("if_icmple", "if_icmpgt"),
+            Map.entry("if_acmpeq", "if_acmpne"), Map.entry("if_acmpne", "if_acmpeq"),
+            Map.entry("ifnull", "ifnonnull"), Map.entry("ifnonnull", "ifnull"));
+
+    private final List<PeepholeRule> rules;
+    private final Map<String, Integer> hits;
+
+    public JasminPeephole(List<PeepholeRule> rules) {
+        this.rules = rules;
+        this.hits = new LinkedHashMap<>();
+
+        for (var rule : rules) {
+            hits.put(rule.getName(), 0);
+        }
+    }
+
+    public static JasminPeephole withDefaultRules() {
+        return new JasminPeephole(List.of(
+                new DeadStoreLoad(),
+                new GotoNext(),
+                new BooleanBranch(),
+                new ConstantBranch(),
+                new DoubleNegation(),
+                new NegatedBranch()));
+    }
+
+    /**
+     * Rewrites the code in place until no rule applies.
+     */
+    public void optimize(List<JasminInstruction> code) {
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < code.size(); i++) {
+                for (var rule : rules) {
+                    // A previous rule may have removed the end of the code
+                    if (i < code.size() && rule.apply(code, i)) {
+                        hits.merge(rule.getName(), 1, Integer::sum);
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of times each rule was applied, in the order of the rules
+     */
+    public Map<String, Integer> getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the instruction at the given index, or null if the index is past the end of the code
+     */
+    private static JasminInstruction get(List<JasminInstruction> code, int index) {
+        return index < code.size() ? code.get(index) : null;
+    }
+
+    private static boolean is(JasminInstruction instruction, String opcode) {
+        return instruction != null && instruction.is(opcode);
+    }
+
+    private static boolean isConditionalBranch(JasminInstruction instruction) {
+        return instruction != null && !instruction.isLabel() && NEGATED_BRANCHES.containsKey(instruction.getOpcode());
+    }
+
+    private static int countReferences(List<JasminInstruction> code, String label) {
+        int count = 0;
+
+        for (var instruction : code) {
+            if (label.equals(instruction.getTarget())) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static void replace(List<JasminInstruction> code, int index, int length, JasminInstruction... replacement) {
+        code.subList(index, index + length).clear();
+        code.addAll(index, List.of(replacement));
+    }
+
+    private static JasminInstruction branch(String opcode, JasminInstruction original, String target) {
+        List<String> operands = new ArrayList<>(original.getOperands());
+        operands.set(operands.size() - 1, target);
+
+        return JasminInstruction.of(opcode, operands.toArray(String[]::new));
+    }
+
+    /**
+     * 'istore n; iload n' where n is not read afterwards: the value stays on the stack instead.
+     */
+    private static class DeadStoreLoad implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "dead store-load";
+        }
+
+        @Override
+        public boolean apply(List<JasminInstruction> code, int index) {
+            var store = code.get(index);
+            var load = get(code, index + 1);
+            if (!store.isStore() || load == null || !load.isLoad()
+                    || store.getOpcode().charAt(0) != load.getOpcode().charAt(0)
+                    || store.getLocal() != load.getLocal()
+                    || !isDeadAfter(code, index + 2, store.getLocal())) {
+                return false;
+            }
+
+            replace(code, index, 2);
+            return true;
+        }
+
+        /**
+         * Looks for a read of the local until it is written again or the method returns. Past a branch or label, the
+         * local is only dead if no other instruction reads it.
+         */
+        private static boolean isDeadAfter(List<JasminInstruction> code, int from, int local) {
+            for (int i = from; i < code.size(); i++) {
+                var instruction = code.get(i);
+
+                if (instruction.reads(local)) {
+                    return false;
+                }
+                if (instruction.isStore() && instruction.getLocal() == local || instruction.isReturn()) {
+                    return true;
+                }
+                if (instruction.isLabel() || instruction.isBranch()) {
+                    break;
+                }
+            }
+
+            for (int i = 0; i < code.size(); i++) {
+                if (i != from - 1 && code.get(i).reads(local)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * 'goto L' followed by the label L.
+     */
+    private static class GotoNext implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "goto next";
+        }
+
+        @Override
+        public boolean apply(List<JasminInstruction> code, int index) {
+            var jump = code.get(index);
+            if (!jump.is("goto")) {
+                return false;
+            }
+
+            for (int i = index + 1; i < code.size() && code.get(i).isLabel(); i++) {
+                if (code.get(i).getLabel().equals(jump.getTarget())) {
+                    code.remove(index);
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * A comparison turned into 0 or 1 and then tested with ifne or ifeq, which can branch directly:
+     * 'ifXX T; iconst_0; goto E; T: iconst_1; E: ifne L' becomes 'ifXX L'.
+     */
+    private static class BooleanBranch implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "boolean branch";
+        }
+
+        @Override
+        public boolean apply(List<JasminInstruction> code, int index) {
+            var condition = code.get(index);
+            var isFalse = get(code, index + 1);
+            var jumpEnd = get(code, index + 2);
+            var trueLabel = get(code, index + 3);
+            var isTrue = get(code, index + 4);
+            var endLabel = get(code, index + 5);
+            var test = get(code, index + 6);
+
+            if (!isConditionalBranch(condition) || !is(isFalse, "iconst_0") || !is(jumpEnd, "goto")
+                    || trueLabel == null || !trueLabel.isLabel() || !trueLabel.getLabel().equals(condition.getTarget())
+                    || !is(isTrue, "iconst_1")
+                    || endLabel == null || !endLabel.isLabel() || !endLabel.getLabel().equals(jumpEnd.getTarget())
+                    || !(is(test, "ifne") || is(test, "ifeq"))) {
+                return false;
+            }
+
+            // The labels are removed, so nothing else may jump to them
+            if (countReferences(code, trueLabel.getLabel()) != 1 || countReferences(code, endLabel.getLabel()) != 1) {
+                return false;
+            }
+
+            var opcode = test.is("ifne") ? condition.getOpcode() : NEGATED_BRANCHES.get(condition.getOpcode());
+            replace(code, index, 7, branch(opcode, condition, test.getTarget()));
+            return true;
+        }
+    }
+
+    /**
+     * A branch on a constant: 'iconst_1; ifne L' always jumps and 'iconst_0; ifne L' never does.
+     */
+    private static class ConstantBranch implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "constant branch";
+        }
+
+        @Override
+        public boolean apply(List<JasminInstruction> code, int index) {
+            var constant = code.get(index);
+            var test = get(code, index + 1);
+            if (!(constant.is("iconst_0") || constant.is("iconst_1")) || !(is(test, "ifne") || is(test, "ifeq"))) {
+                return false;
+            }
+
+            boolean jumps = constant.is("iconst_1") == test.is("ifne");
+            if (jumps) {
+                replace(code, index, 2, JasminInstruction.of("goto", test.getTarget()));
+            } else {
+                replace(code, index, 2);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * 'iconst_1; ixor; iconst_1; ixor', a boolean negated twice.
+     */
+    private static class DoubleNegation implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "double negation";
+        }
+
+        @Override
+        public boolean apply(List<JasminInstruction> code, int index) {
+            if (!isNegation(code, index) || !isNegation(code, index + 2)) {
+                return false;
+            }
+
+            replace(code, index, 4);
+            return true;
+        }
+    }
+
+    /**
+     * 'iconst_1; ixor; ifne L' becomes 'ifeq L', and the other way around.
+     */
+    private static class NegatedBranch implements PeepholeRule {
+
+        @Override
+        public String getName() {
+            return "negated branch";
+        }
+
+        @Override
+        public boolean apply(List<JasminInstruction> code, int index) {
+            var test = get(code, index + 2);
+            if (!isNegation(code, index) || !(is(test, "ifne") || is(test, "ifeq"))) {
+                return false;
+            }
+
+            replace(code, index, 3, branch(NEGATED_BRANCHES.get(test.getOpcode()), test, test.getTarget()));
+            return true;
+        }
+    }
+
+    /**
+     * Booleans are negated with 'iconst_1; ixor', the only use of ixor by the generator.
+     */
+    private static boolean isNegation(List<JasminInstruction> code, int index) {
+        return is(get(code, index), "iconst_1") && is(get(code, index + 1), "ixor");
+    }
+}
@@ -0,0 +1,173 @@
+package pt.up.fe.comp2025.backend;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maximum stack size of the body of a Jasmin method, computed like the bytecode verifier does.
+ * <p>
+ * Each instruction has a stack effect, given by a table for the fixed-size instructions and by the descriptor for
+ * invocations. The stack height is propagated from the first instruction to its successors, following the branches,
+ * and every instruction must be reached with the same height from all its predecessors.
+ */
+public class JasminStackAnalysis {
+
+    private static final Map<String, Integer> STACK_EFFECTS = new HashMap<>();
+
+    static {
+        for (var opcode : List.of("iconst_m1", "iconst_0", "iconst_1", "iconst_2", "iconst_3", "iconst_4", "iconst_5",
+                "bipush", "sipush", "ldc", "ldc_w", "iload", "aload", "dup", "new")) {
+            STACK_EFFECTS.put(opcode, 1);
+        }
+
+        for (var opcode : List.of("istore", "astore", "pop", "iaload", "iadd", "isub", "imul", "idiv", "irem", "ishl",
+                "iand", "ior", "ixor", "ireturn", "areturn", "ifeq", "ifne", "iflt", "ifge", "ifgt", "ifle", "ifnull",
+                "ifnonnull")) {
+            STACK_EFFECTS.put(opcode, -1);
+        }
+
+        for (var opcode : List.of("if_icmpeq", "if_icmpne", "if_icmplt", "if_icmpge", "if_icmpgt", "if_icmple",
+                "if_acmpeq", "if_acmpne", "putfield")) {
+            STACK_EFFECTS.put(opcode, -2);
+        }
+
+        for (var opcode : List.of("ineg", "iinc", "goto", "return", "getfield", "newarray", "arraylength",
+                "checkcast", "nop")) {
+            STACK_EFFECTS.put(opcode, 0);
+        }
+
+        STACK_EFFECTS.put("iastore", -3);
+    }
+
+    private JasminStackAnalysis() {
+    }
+
+    /**
+     * @return the maximum number of values on the stack at any point of the code
+     */
+    public static int computeMaxStack(List<JasminInstruction> code) {
+        // Instructions only, with the index of the instruction that follows each label
+        List<JasminInstruction> instructions = new ArrayList<>();
+        Map<String, Integer> labels = new HashMap<>();
+        for (var instruction : code) {
+            if (instruction.isLabel()) {
+                labels.put(instruction.getLabel(), instructions.size());
+            } else {
+                instructions.add(instruction);
+            }
+        }
+
+        var heights = new int[instructions.size()];
+        Arrays.fill(heights, -1);
+
+        var worklist = new ArrayDeque<Integer>();
+        int maxStack = 0;
+
+        if (!instructions.isEmpty()) {
+            heights[0] = 0;
+            worklist.push(0);
+        }
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            var instruction = instructions.get(index);
+
+            int height = heights[index] + getStackEffect(instruction);
+            if (height < 0) {
+                throw new RuntimeException("Stack underflow at '" + instruction + "'");
+            }
+
+            // The operands of an instruction are on the stack before it executes
+            maxStack = Math.max(maxStack, Math.max(heights[index], height));
+
+            List<Integer> successors = new ArrayList<>(2);
+            if (instruction.isBranch()) {
+                var target = labels.get(instruction.getTarget());
+                if (target == null) {
+                    throw new RuntimeException("Undefined label '" + instruction.getTarget() + "'");
+                }
+                successors.add(target);
+            }
+            if (!instruction.is("goto") && !instruction.isReturn() && index + 1 < instructions.size()) {
+                successors.add(index + 1);
+            }
+
+            for (var successor : successors) {
+                // A label at the end of the code marks no instruction
+                if (successor >= instructions.size()) {
+                    continue;
+                }
+
+                if (heights[successor] == -1) {
+                    heights[successor] = height;
+                    worklist.push(successor);
+                } else if (heights[successor] != height) {
+                    throw new RuntimeException("Inconsistent stack height at '" + instructions.get(successor) + "'");
+                }
+            }
+        }
+
+        return maxStack;
+    }
+
+    /**
+     * @return the number of values pushed by the instruction minus the number of values it pops
+     */
+    public static int getStackEffect(JasminInstruction instruction) {
+        var opcode = instruction.getOpcode();
+
+        if (instruction.isLoad()) {
+            return 1;
+        }
+        if (instruction.isStore()) {
+            return -1;
+        }
+
+        var effect = STACK_EFFECTS.get(opcode);
+        if (effect != null) {
+            return effect;
+        }
+
+        return switch (opcode) {
+            case "invokestatic" -> getInvokeEffect(instruction.getOperands().getFirst());
+            // The object is popped as well
+            case "invokevirtual", "invokespecial", "invokenonvirtual" ->
+                    getInvokeEffect(instruction.getOperands().getFirst()) - 1;
+            default -> throw new RuntimeException("Unknown stack effect of instruction '" + opcode + "'");
+        };
+    }
+
+    /**
+     * Stack effect of a call, from the descriptor in its operand, such as 'io/println(I)V'.
+     */
+    private static int getInvokeEffect(String method) {
+        int open = method.indexOf('(');
+        int close = method.indexOf(')');
+        var params = method.substring(open + 1, close);
+
+        int numParams = 0;
+        for (int i = 0; i < params.length(); i++) {
+            char c = params.charAt(i);
+
+            // Array dimensions belong to the type that follows them
+            if (c == '[') {
+                continue;
+            }
+            if (c == 'L') {
+                i = params.indexOf(';', i);
+                if (i < 0) {
+                    throw new RuntimeException("Invalid method descriptor '" + method + "'");
+                }
+            }
+
+            numParams++;
+        }
+
+        boolean returnsValue = method.charAt(close + 1) != 'V';
+        return (returnsValue ? 1 : 0) - numParams;
+    }
+}
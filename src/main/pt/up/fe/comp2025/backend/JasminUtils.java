@@ -1,6 +1,7 @@
 package pt.up.fe.comp2025.backend;
 
 import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
 import org.specs.comp.ollir.type.*;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.specs.util.SpecsCheck;
@@ -68,4 +69,168 @@ public class JasminUtils {
         }
         return null;
     }
+
+    /**
+     * Suffix of the branch instructions that test a comparison, such as "lt" for iflt and if_icmplt.
+     */
+    public String getComparisonSuffix(OperationType opType) {
+        return switch (opType) {
+            case LTH -> "lt";
+            case GTH -> "gt";
+            case LTE -> "le";
+            case GTE -> "ge";
+            case EQ -> "eq";
+            case NEQ -> "ne";
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    /**
+     * The comparison with its operands swapped, so that 'a < b' becomes 'b > a'.
+     */
+    public OperationType swapComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTH;
+            case GTH -> OperationType.LTH;
+            case LTE -> OperationType.GTE;
+            case GTE -> OperationType.LTE;
+            default -> opType;
+        };
+    }
+
+    public boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && literal.getLiteral().equals("0");
+    }
+
+    /**
+     * Checks if an assignment copies a variable into the register it is already in, which happens when the register
+     * allocator coalesces a copy. Such assignments do not generate any code.
+     */
+    public boolean isSelfMove(AssignInstruction assign, Method method) {
+        if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand
+                || !(assign.getRhs() instanceof SingleOpInstruction singleOp)
+                || !(singleOp.getSingleOperand() instanceof Operand source) || source instanceof ArrayOperand
+                || source.isLiteral()) {
+            return false;
+        }
+
+        var varTable = method.getVarTable();
+        var destVar = varTable.get(dest.getName());
+        var sourceVar = varTable.get(source.getName());
+
+        return destVar != null && sourceVar != null && destVar.getVirtualReg() == sourceVar.getVirtualReg();
+    }
+
+    /**
+     * Checks if an assignment only adds a literal to its destination, either directly or through a temporary
+     * variable, so that it can be replaced by an iinc. The literal must fit in the signed 16 bits of a wide iinc.
+     */
+    public boolean isIncrement(AssignInstruction assign, Method method) {
+        if (!addsLiteralToDest(assign, method)) {
+            return false;
+        }
+
+        int value = Integer.parseInt(getIncrementLiteral(assign, method));
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    private boolean addsLiteralToDest(AssignInstruction assign, Method method) {
+        if (assign.getRhs() instanceof BinaryOpInstruction binaryOp) {
+            if (binaryOp.getOperation().getOpType().equals(OperationType.ADD)) {
+                Operand left = (Operand) assign.getDest();
+                boolean allOperandsAreEqual = true;
+                boolean found = false;
+                for(var operand: binaryOp.getOperands()) {
+                    if (operand instanceof Operand) {
+                        if (((Operand) operand).getName().equals(left.getName())) {
+                            found = true;
+                        }
+                    }
+                    else allOperandsAreEqual = false;
+                }
+                return found && !allOperandsAreEqual;
+            }
+        }
+
+        // tmp variable
+        if (assign.getRhs() instanceof SingleOpInstruction singleOp &&
+                singleOp.getSingleOperand() instanceof Operand tempVar) {
+            var instructions = method.getInstructions();
+            for (var inst : instructions) {
+                if (inst instanceof AssignInstruction prevAssign &&
+                        prevAssign.getDest() instanceof Operand dest &&
+                        dest.getName().equals(tempVar.getName()) &&
+                        prevAssign.getRhs() instanceof BinaryOpInstruction binaryOp) {
+
+                    if (binaryOp.getOperation().getOpType().equals(OperationType.ADD)) {
+                        Operand target = (Operand) assign.getDest();
+                        boolean hasTarget = false;
+                        boolean hasLiteral = false;
+
+                        for (var operand : binaryOp.getOperands()) {
+                            if (operand instanceof Operand op &&
+                                    op.getName().equals(target.getName())) {
+                                hasTarget = true;
+                            }
+                            if (operand instanceof LiteralElement) {
+                                hasLiteral = true;
+                            }
+                        }
+
+                        return hasTarget && hasLiteral;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The literal added by an assignment accepted by {@link #isIncrement(AssignInstruction, Method)}.
+     */
+    public String getIncrementLiteral(AssignInstruction assign, Method method) {
+        String literalStr = "";
+
+        if (assign.getRhs() instanceof BinaryOpInstruction binaryOp) {
+            for(var ops: binaryOp.getOperands()) {
+                if(ops instanceof LiteralElement literal) {
+                    literalStr = literal.getLiteral();
+                }
+            }
+        } else if (assign.getRhs() instanceof SingleOpInstruction singleOp) {
+            var tempVar = (Operand) singleOp.getSingleOperand();
+            for (var inst : method.getInstructions()) {
+                if (inst instanceof AssignInstruction prevAssign &&
+                        prevAssign.getDest() instanceof Operand dest &&
+                        dest.getName().equals(tempVar.getName()) &&
+                        prevAssign.getRhs() instanceof BinaryOpInstruction binaryOp) {
+
+                    for(var ops: binaryOp.getOperands()) {
+                        if(ops instanceof LiteralElement literal) {
+                            literalStr = literal.getLiteral();
+                            break;
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        return literalStr;
+    }
+
+    /**
+     * Checks if the value returned by a call is assigned to a variable, otherwise it must be popped.
+     */
+    public boolean isValueUsed(CallInstruction callInst, Method method) {
+        for (Instruction inst : method.getInstructions()) {
+            if (inst instanceof AssignInstruction assignInst) {
+                if (assignInst.getRhs() == callInst) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,66 @@
+package pt.up.fe.comp2025.backend;
+
+import java.util.List;
+
+/**
+ * Text of a Jasmin class, written once from the directives and the instruction lists of its methods.
+ * <p>
+ * Everything is appended to a single buffer, so the code of each instruction is only rendered when the class is
+ * complete.
+ */
+public class JasminWriter {
+
+    private static final String NL = "\n";
+    private static final String TAB = "   ";
+
+    private final StringBuilder out;
+
+    public JasminWriter() {
+        this.out = new StringBuilder();
+    }
+
+    /**
+     * Appends text as is, such as a block of directives that already ends with a new line.
+     */
+    public JasminWriter append(String text) {
+        out.append(text);
+        return this;
+    }
+
+    /**
+     * Appends a line that is not indented, such as '.method' or '.end method'.
+     */
+    public JasminWriter line(String text) {
+        out.append(text).append(NL);
+        return this;
+    }
+
+    /**
+     * Appends an indented line inside a method, such as '.limit stack 2'.
+     */
+    public JasminWriter directive(String text) {
+        out.append(TAB).append(text).append(NL);
+        return this;
+    }
+
+    /**
+     * Appends the body of a method, one instruction per line, with the labels not indented.
+     */
+    public JasminWriter instructions(List<JasminInstruction> code) {
+        for (var instruction : code) {
+            if (!instruction.isLabel()) {
+                out.append(TAB);
+            }
+
+            instruction.appendTo(out);
+            out.append(NL);
+        }
+
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
@@ -0,0 +1,21 @@
+package pt.up.fe.comp2025.backend;
+
+import java.util.List;
+
+/**
+ * A rewrite of a short sequence of Jasmin instructions, applied by {@link JasminPeephole}.
+ */
+public interface PeepholeRule {
+
+    /**
+     * Name of the rule, used for its hit counter.
+     */
+    String getName();
+
+    /**
+     * Tries to rewrite the instructions that start at the given index.
+     *
+     * @return true if the code was changed
+     */
+    boolean apply(List<JasminInstruction> code, int index);
+}
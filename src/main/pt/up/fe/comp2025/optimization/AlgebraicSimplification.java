@@ -0,0 +1,514 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Descriptor;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.VarScope;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.Type;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Algebraic simplification and strength reduction of the OLLIR code of each method.
+ * <p>
+ * Operations on two literals are folded, for every operator, and so are the identities with a literal operand, such as
+ * 'x + 0', 'x * 1', 'x * 0' or 'b &amp;&amp; true', or with the same variable on both sides, such as 'x - x' or
+ * 'x &lt; x'. A branch whose condition becomes a literal or a variable is left for {@link DeadCodeElimination}.
+ * <p>
+ * In a loop, the multiplication of an induction variable, only written once in the loop by adding a constant to it,
+ * by another constant is replaced by a new variable, which starts with the product before the loop and is increased
+ * right after the induction variable. The multiplications that are left with a power of two become a shift. Divisions
+ * by a power of two are kept, since a shift rounds negative numbers down instead of towards zero.
+ */
+public class AlgebraicSimplification {
+
+    private final OllirResult ollirResult;
+
+    private int simplifiedExpressions;
+    private int reducedMultiplications;
+    private int nextVariable;
+
+    public AlgebraicSimplification(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+    }
+
+    public void optimize() {
+        for (var method : ollirResult.getOllirClass().getMethods()) {
+            if (method.getInstructions().isEmpty()) {
+                continue;
+            }
+
+            simplifyMethod(method);
+
+            // Replacing the multiplications of a loop changes the CFG, so the loops are found again
+            while (reduceInductionVariables(method)) {
+            }
+
+            reduceToShifts(method);
+            OptUtils.buildCFG(method);
+        }
+
+        if (simplifiedExpressions > 0 || reducedMultiplications > 0) {
+            var message = "Algebraic simplification: " + simplifiedExpressions + " expressions simplified, "
+                    + reducedMultiplications + " multiplications reduced";
+            ollirResult.getReports().add(Report.newLog(Stage.OPTIMIZATION, -1, -1, message, null));
+        }
+    }
+
+    private void simplifyMethod(Method method) {
+        var instructions = method.getInstructions();
+
+        Set<Instruction> labeled = Collections.newSetFromMap(new IdentityHashMap<>());
+        labeled.addAll(method.getLabels().values());
+
+        // Variables that hold a literal in the current basic block
+        Map<String, LiteralElement> constants = new HashMap<>();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            if (i == 0 || labeled.contains(instruction) || OptUtils.endsBlock(instructions.get(i - 1))) {
+                constants.clear();
+            }
+
+            if (instruction instanceof AssignInstruction assign) {
+                var rhs = assign.getRhs();
+                propagate(rhs, constants);
+
+                if (rhs instanceof OpInstruction op && simplify(op) instanceof SingleOpInstruction simplified) {
+                    rhs = simplified;
+                    replace(method, i, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), rhs));
+                }
+
+                if (assign.getDest() instanceof Operand dest && !(dest instanceof ArrayOperand)) {
+                    if (rhs instanceof SingleOpInstruction singleOp
+                            && singleOp.getSingleOperand() instanceof LiteralElement literal) {
+                        constants.put(dest.getName(), literal);
+                    } else {
+                        constants.remove(dest.getName());
+                    }
+                }
+            } else if (instruction instanceof OpCondInstruction branch) {
+                propagate(branch.getCondition(), constants);
+
+                if (simplify(branch.getCondition()) instanceof SingleOpInstruction simplified) {
+                    var condition = new SingleOpCondInstruction(simplified);
+                    condition.setLabel(branch.getLabel());
+                    replace(method, i, condition);
+                }
+            } else if (instruction instanceof SingleOpCondInstruction branch) {
+                propagate(branch.getCondition(), constants);
+            }
+        }
+    }
+
+    /**
+     * Replaces the operands of an instruction that hold a literal with the literal.
+     */
+    private static void propagate(Instruction instruction, Map<String, LiteralElement> constants) {
+        switch (instruction) {
+            case BinaryOpInstruction binaryOp -> {
+                binaryOp.setLeftOperand(propagate(binaryOp.getLeftOperand(), constants));
+                binaryOp.setRightOperand(propagate(binaryOp.getRightOperand(), constants));
+            }
+            case UnaryOpInstruction unaryOp -> unaryOp.setOperand(propagate(unaryOp.getOperand(), constants));
+            case SingleOpInstruction singleOp ->
+                    singleOp.setSingleOperand(propagate(singleOp.getSingleOperand(), constants));
+            default -> {
+            }
+        }
+    }
+
+    private static Element propagate(Element element, Map<String, LiteralElement> constants) {
+        if (!(element instanceof Operand operand) || operand.isLiteral() || operand instanceof ArrayOperand) {
+            return element;
+        }
+
+        var literal = constants.get(operand.getName());
+        return literal != null ? new LiteralElement(literal.getLiteral(), operand.getType()) : element;
+    }
+
+    /**
+     * @return the single operand or literal the operation is equal to, or null if it cannot be simplified
+     */
+    private SingleOpInstruction simplify(OpInstruction op) {
+        var opType = op.getOperation().getOpType();
+        var type = op.getOperation().getTypeInfo();
+
+        if (op instanceof UnaryOpInstruction unaryOp) {
+            var operand = getConstant(unaryOp.getOperand());
+            if (operand != null && (opType == OperationType.NOTB || opType == OperationType.NOT)) {
+                simplifiedExpressions++;
+                return literal(operand == 0 ? 1 : 0, type);
+            }
+
+            return null;
+        }
+
+        if (!(op instanceof BinaryOpInstruction binaryOp)) {
+            return null;
+        }
+
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+        var a = getConstant(left);
+        var b = getConstant(right);
+
+        if (a != null && b != null) {
+            var value = fold(opType, a, b);
+            if (value == null) {
+                return null;
+            }
+
+            simplifiedExpressions++;
+            return literal(value, type);
+        }
+
+        boolean same = isSameVariable(left, right);
+        var simplified = switch (opType) {
+            case ADD -> is(b, 0) ? copy(left) : is(a, 0) ? copy(right) : null;
+            case SUB -> is(b, 0) ? copy(left) : same ? literal(0, type) : null;
+            case MUL -> is(a, 0) || is(b, 0) ? literal(0, type)
+                    : is(b, 1) ? copy(left) : is(a, 1) ? copy(right) : null;
+            // The divisor is not zero, so nothing is thrown
+            case DIV -> is(b, 1) ? copy(left) : null;
+            case REM -> is(b, 1) ? literal(0, type) : null;
+            case AND -> is(a, 0) || is(b, 0) ? literal(0, type) : same ? copy(left) : null;
+            case OR -> is(b, 0) || same ? copy(left) : is(a, 0) ? copy(right) : null;
+            case XOR -> is(b, 0) ? copy(left) : is(a, 0) ? copy(right) : same ? literal(0, type) : null;
+            case ANDB -> is(a, 0) || is(b, 0) ? literal(0, type)
+                    : is(b, 1) || same ? copy(left) : is(a, 1) ? copy(right) : null;
+            case ORB -> is(a, 1) || is(b, 1) ? literal(1, type)
+                    : is(b, 0) || same ? copy(left) : is(a, 0) ? copy(right) : null;
+            case EQ, LTE, GTE -> same ? literal(1, type) : null;
+            case NEQ, LTH, GTH -> same ? literal(0, type) : null;
+            default -> null;
+        };
+
+        if (simplified != null) {
+            simplifiedExpressions++;
+        }
+
+        return simplified;
+    }
+
+    /**
+     * @return the value of an operation on two constants, or null if it must still run, as a division by zero
+     */
+    private static Integer fold(OperationType opType, int a, int b) {
+        return switch (opType) {
+            case ADD -> a + b;
+            case SUB -> a - b;
+            case MUL -> a * b;
+            case DIV -> b != 0 ? a / b : null;
+            case REM -> b != 0 ? a % b : null;
+            case SHL -> a << b;
+            case SHR -> a >> b;
+            case SHRR -> a >>> b;
+            case AND -> a & b;
+            case OR -> a | b;
+            case XOR -> a ^ b;
+            case ANDB -> toInt(a != 0 && b != 0);
+            case ORB -> toInt(a != 0 || b != 0);
+            case LTH -> toInt(a < b);
+            case GTH -> toInt(a > b);
+            case LTE -> toInt(a <= b);
+            case GTE -> toInt(a >= b);
+            case EQ -> toInt(a == b);
+            case NEQ -> toInt(a != b);
+            default -> null;
+        };
+    }
+
+    /**
+     * Replaces the multiplications by a constant of the induction variables of the first loop, from the innermost,
+     * that has any.
+     *
+     * @return true if any multiplication was replaced
+     */
+    private boolean reduceInductionVariables(Method method) {
+        OptUtils.buildCFG(method);
+
+        var indexes = NaturalLoop.getIndexes(method);
+        var loops = NaturalLoop.findAll(method, indexes);
+        loops.sort(Comparator.comparingInt(loop -> loop.getBody().cardinality()));
+
+        var accesses = new VariableAccesses(method);
+        var liveness = new Liveness(method, accesses.getUsedVars(), accesses.getDefinedVars());
+
+        for (var loop : loops) {
+            if (loop.hasPreheader(method, indexes) && reduce(method, loop, loops, liveness)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean reduce(Method method, NaturalLoop loop, List<NaturalLoop> loops, Liveness liveness) {
+        var instructions = method.getInstructions();
+        var body = loop.getBody();
+
+        int[] writes = new int[liveness.getNumVariables()];
+        for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+            var defined = liveness.getDefined(instructions.get(i));
+            for (int v = defined.nextSetBit(0); v >= 0; v = defined.nextSetBit(v + 1)) {
+                writes[v]++;
+            }
+        }
+
+        Set<Instruction> labeled = Collections.newSetFromMap(new IdentityHashMap<>());
+        labeled.addAll(method.getLabels().values());
+
+        // The induction variables, with the assignment that steps each one
+        Map<String, Step> steps = new HashMap<>();
+        for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+            var stride = getStride(instructions, i, labeled);
+            if (stride == null) {
+                continue;
+            }
+
+            var assign = (AssignInstruction) instructions.get(i);
+            var name = ((Operand) assign.getDest()).getName();
+            int variable = liveness.getIndex(name);
+
+            // Stepping it in an inner loop would update the new variable more often than the multiplication ran
+            if (variable >= 0 && writes[variable] == 1 && !isInInnerLoop(i, loop, loops)) {
+                steps.put(name, new Step(assign, stride));
+            }
+        }
+
+        if (steps.isEmpty()) {
+            return false;
+        }
+
+        // The variable that replaces each multiplication, by the induction variable and the constant
+        Map<String, Operand> reductions = new LinkedHashMap<>();
+        Map<String, BinaryOpInstruction> products = new HashMap<>();
+        for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)
+                    || !(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand
+                    || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)
+                    || binaryOp.getOperation().getOpType() != OperationType.MUL) {
+                continue;
+            }
+
+            var factor = getConstant(binaryOp.getRightOperand()) != null ? binaryOp.getRightOperand()
+                    : binaryOp.getLeftOperand();
+            var induction = factor == binaryOp.getRightOperand() ? binaryOp.getLeftOperand()
+                    : binaryOp.getRightOperand();
+            if (getConstant(factor) == null || !(induction instanceof Operand variable) || variable.isLiteral()
+                    || !steps.containsKey(variable.getName())) {
+                continue;
+            }
+
+            var key = variable.getName() + " " + getConstant(factor);
+            var reduced = reductions.computeIfAbsent(key,
+                    k -> newVariable(method, binaryOp.getOperation().getTypeInfo()));
+            products.putIfAbsent(key, binaryOp);
+
+            var copy = new SingleOpInstruction(new Operand(reduced.getName(), reduced.getType()));
+            replace(method, i, new AssignInstruction(dest, assign.getTypeOfAssign(), copy));
+            reducedMultiplications++;
+        }
+
+        if (reductions.isEmpty()) {
+            return false;
+        }
+
+        var header = instructions.get(loop.getHeader());
+        for (var entry : reductions.entrySet()) {
+            var product = products.get(entry.getKey());
+            var reduced = entry.getValue();
+            var type = product.getOperation().getTypeInfo();
+            boolean factorOnRight = getConstant(product.getRightOperand()) != null;
+            var induction = (Operand) (factorOnRight ? product.getLeftOperand() : product.getRightOperand());
+            int factor = getConstant(factorOnRight ? product.getRightOperand() : product.getLeftOperand());
+
+            // Right after the induction variable changes, so both always agree inside the loop
+            var step = steps.get(induction.getName());
+            var increment = new BinaryOpInstruction(new Operand(reduced.getName(), type),
+                    new Operation(OperationType.ADD, type),
+                    new LiteralElement(String.valueOf(step.stride() * factor), type));
+            instructions.add(instructions.indexOf(step.assign()) + 1,
+                    new AssignInstruction(new Operand(reduced.getName(), type), type, increment));
+
+            var initial = new BinaryOpInstruction(new Operand(induction.getName(), induction.getType()),
+                    new Operation(OperationType.MUL, type), new LiteralElement(String.valueOf(factor), type));
+            instructions.add(instructions.indexOf(header),
+                    new AssignInstruction(new Operand(reduced.getName(), type), type, initial));
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the constant the assignment at the index adds to its variable, as 'i := i + 2' or 'i := i - 2' do, or
+     * as 'i := tmp' does right after 'tmp := i + 2', or null if it is not like that
+     */
+    private static Integer getStride(List<Instruction> instructions, int index, Set<Instruction> labeled) {
+        if (!(instructions.get(index) instanceof AssignInstruction assign)
+                || !(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand) {
+            return null;
+        }
+
+        if (assign.getRhs() instanceof BinaryOpInstruction binaryOp) {
+            return getStride(binaryOp, dest.getName());
+        }
+
+        // Without a label, the temporary always comes from the previous instruction
+        if (index == 0 || labeled.contains(assign) || !(assign.getRhs() instanceof SingleOpInstruction singleOp)
+                || !(singleOp.getSingleOperand() instanceof Operand temporary) || temporary.isLiteral()
+                || !(instructions.get(index - 1) instanceof AssignInstruction previous)
+                || !isVariable(previous.getDest(), temporary.getName())
+                || !(previous.getRhs() instanceof BinaryOpInstruction binaryOp)) {
+            return null;
+        }
+
+        return getStride(binaryOp, dest.getName());
+    }
+
+    private static Integer getStride(BinaryOpInstruction binaryOp, String name) {
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        return switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> isVariable(left, name) ? getConstant(right)
+                    : isVariable(right, name) ? getConstant(left) : null;
+            case SUB -> isVariable(left, name) && getConstant(right) != null ? -getConstant(right) : null;
+            default -> null;
+        };
+    }
+
+    private static boolean isInInnerLoop(int index, NaturalLoop loop, List<NaturalLoop> loops) {
+        for (var other : loops) {
+            if (other == loop || !other.getBody().get(index)) {
+                continue;
+            }
+
+            var outside = (BitSet) other.getBody().clone();
+            outside.andNot(loop.getBody());
+            if (outside.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 'x * 8' becomes 'x &lt;&lt; 3'.
+     */
+    private void reduceToShifts(Method method) {
+        var instructions = method.getInstructions();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)
+                    || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)
+                    || binaryOp.getOperation().getOpType() != OperationType.MUL) {
+                continue;
+            }
+
+            var left = binaryOp.getLeftOperand();
+            var right = binaryOp.getRightOperand();
+            var operand = isPowerOfTwo(getConstant(right)) ? left : isPowerOfTwo(getConstant(left)) ? right : null;
+            if (operand == null || operand.isLiteral()) {
+                continue;
+            }
+
+            var type = binaryOp.getOperation().getTypeInfo();
+            int shift = Integer.numberOfTrailingZeros(getConstant(operand == left ? right : left));
+            var shiftOp = new BinaryOpInstruction(operand, new Operation(OperationType.SHL, type),
+                    new LiteralElement(String.valueOf(shift), type));
+            replace(method, i, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), shiftOp));
+            reducedMultiplications++;
+        }
+    }
+
+    private Operand newVariable(Method method, Type type) {
+        var varTable = method.getVarTable();
+
+        String name;
+        do {
+            name = "iv" + nextVariable++;
+        } while (varTable.containsKey(name));
+
+        int register = varTable.values().stream().mapToInt(Descriptor::getVirtualReg).max().orElse(0) + 1;
+        varTable.put(name, new Descriptor(VarScope.LOCAL, register, type));
+
+        return new Operand(name, type);
+    }
+
+    /**
+     * Replaces the instruction at the given index, moving its labels to the new one.
+     */
+    private static void replace(Method method, int index, Instruction instruction) {
+        var instructions = method.getInstructions();
+        OptUtils.moveLabels(method, instructions.get(index), instruction);
+        instructions.set(index, instruction);
+    }
+
+    private static Integer getConstant(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isSameVariable(Element left, Element right) {
+        return left instanceof Operand operand && !operand.isLiteral() && !(operand instanceof ArrayOperand)
+                && isVariable(right, operand.getName());
+    }
+
+    private static boolean isVariable(Element element, String name) {
+        return element instanceof Operand operand && !operand.isLiteral() && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(name);
+    }
+
+    private static boolean isPowerOfTwo(Integer value) {
+        return value != null && value > 1 && (value & (value - 1)) == 0;
+    }
+
+    private static boolean is(Integer constant, int value) {
+        return constant != null && constant == value;
+    }
+
+    private static int toInt(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    private static SingleOpInstruction copy(Element element) {
+        return new SingleOpInstruction(element);
+    }
+
+    private static SingleOpInstruction literal(int value, Type type) {
+        return new SingleOpInstruction(new LiteralElement(String.valueOf(value), type));
+    }
+
+    /**
+     * Assignment that adds a constant to an induction variable.
+     */
+    private record Step(AssignInstruction assign, int stride) {
+    }
+}
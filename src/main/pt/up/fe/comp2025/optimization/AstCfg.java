@@ -0,0 +1,150 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2025.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Control flow graph of the statements of a method, built directly from the AST.
+ * <p>
+ * Each node is either a simple statement (assignment, expression statement or return) or the condition of an if or
+ * while. Conditions have two successors, the first one being taken when the condition is true.
+ */
+public class AstCfg {
+
+    private final List<Node> nodes;
+    private final Node entry;
+
+    private AstCfg(JmmNode methodDecl) {
+        this.nodes = new ArrayList<>();
+        this.entry = build(getStatements(methodDecl), null);
+    }
+
+    public static AstCfg build(JmmNode methodDecl) {
+        return new AstCfg(methodDecl);
+    }
+
+    /**
+     * @return the first node of the method, or null if the method has no statements
+     */
+    public Node getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return every node of the graph, indexed by {@link Node#getId()}
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Builds the nodes of the statements, in reverse order so that the successor of each statement already exists.
+     *
+     * @param next the node that follows the statements, or null if they end the method
+     * @return the first node of the statements
+     */
+    private Node build(List<JmmNode> statements, Node next) {
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            next = buildStatement(statements.get(i), next);
+        }
+
+        return next;
+    }
+
+    private Node buildStatement(JmmNode stmt, Node next) {
+        if (stmt.getKind().equals(Kind.WHILE.toString())) {
+            var whileStmt = stmt.getChild(0);
+            var condition = newNode(whileStmt.getChild(0), true);
+
+            // An empty body goes straight back to the condition
+            var body = build(whileStmt.getChildren().subList(1, whileStmt.getNumChildren()), condition);
+            condition.successors.add(body);
+            condition.successors.add(next);
+
+            return condition;
+        }
+
+        if (stmt.getKind().equals(Kind.IF.toString())) {
+            var ifStmt = stmt.getChild(0);
+            var condition = newNode(ifStmt.getChild(0), true);
+
+            var thenEntry = buildStatement(ifStmt.getChild(1), next);
+            var elseEntry = ifStmt.getNumChildren() > 2 ? buildStatement(ifStmt.getChild(2), next) : next;
+            condition.successors.add(thenEntry);
+            condition.successors.add(elseEntry);
+
+            return condition;
+        }
+
+        if (stmt.getKind().equals("StmtScope")) {
+            return build(stmt.getChild(0).getChildren(), next);
+        }
+
+        if (stmt.getKind().equals(Kind.ASSIGN_STMT.toString()) || stmt.getKind().equals("ExprStmt")) {
+            var node = newNode(stmt, false);
+            node.successors.add(next);
+            return node;
+        }
+
+        if (stmt.getKind().equals(Kind.RETURN_STMT.toString())) {
+            // Leaves the method, the statements after it are unreachable
+            return newNode(stmt, false);
+        }
+
+        // Declarations do not execute anything
+        return next;
+    }
+
+    private Node newNode(JmmNode ast, boolean isCondition) {
+        var node = new Node(nodes.size(), ast, isCondition);
+        nodes.add(node);
+        return node;
+    }
+
+    private static List<JmmNode> getStatements(JmmNode methodDecl) {
+        return methodDecl.getChildren().stream()
+                .filter(child -> child.isInstance(Kind.STMT))
+                .toList();
+    }
+
+    public static class Node {
+
+        private final int id;
+        private final JmmNode ast;
+        private final boolean isCondition;
+        private final List<Node> successors;
+
+        private Node(int id, JmmNode ast, boolean isCondition) {
+            this.id = id;
+            this.ast = ast;
+            this.isCondition = isCondition;
+            this.successors = new ArrayList<>(2);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return the statement, or the condition expression if this node is a condition
+         */
+        public JmmNode getAst() {
+            return ast;
+        }
+
+        public boolean isCondition() {
+            return isCondition;
+        }
+
+        /**
+         * @return the successors of this node, where null stands for the end of the method. Conditions have the true
+         * successor first
+         */
+        public List<Node> getSuccessors() {
+            return successors;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2025.ast.Kind;
+import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conditional constant propagation and constant folding, over the {@link AstCfg} of each method.
+ * <p>
+ * The value of every int and boolean local variable and parameter is computed for each node of the graph with a
+ * worklist, until nothing changes. Branches whose condition is a known constant only propagate to the successor that
+ * is taken. Afterwards, every expression with a constant value is replaced by a literal.
+ * <p>
+ * Each node is visited a bounded number of times, since the value of a variable can only go from undefined to a
+ * constant and then to not constant.
+ */
+public class ConstantPropagation {
+
+    private final JmmSymbolTable table;
+    private final TypeUtils types;
+
+    // Dense index of each variable tracked in the current method
+    private Map<String, Integer> variables;
+    private boolean modified;
+
+    public ConstantPropagation(SymbolTable table) {
+        this.table = (JmmSymbolTable) table;
+        this.types = new TypeUtils(table);
+    }
+
+    /**
+     * @return true if any expression was replaced
+     */
+    public boolean optimize(JmmNode root) {
+        modified = false;
+
+        for (var method : root.getDescendants(Kind.METHOD_DECL)) {
+            optimizeMethod(method);
+        }
+
+        return modified;
+    }
+
+    private void optimizeMethod(JmmNode method) {
+        var methodName = method.get("name");
+        types.setCurrentMethod(methodName);
+
+        variables = new HashMap<>();
+        addVariables(table.getParameters(methodName));
+        int numParams = variables.size();
+        addVariables(table.getLocalVariables(methodName));
+
+        var cfg = AstCfg.build(method);
+        var states = solve(cfg, numParams);
+
+        for (var node : cfg.getNodes()) {
+            // Unreachable nodes are still folded, without assuming anything about the variables
+            var state = states[node.getId()] != null ? states[node.getId()] : State.unknown(variables.size());
+            rewrite(node, state);
+        }
+    }
+
+    private void addVariables(List<Symbol> symbols) {
+        for (var symbol : symbols) {
+            var type = symbol.getType();
+            boolean isTracked = !type.isArray() && (type.getName().equals("int") || type.getName().equals("boolean"));
+
+            // A local shadows a parameter with the same name, but both are the same variable here
+            if (isTracked) {
+                variables.putIfAbsent(symbol.getName(), variables.size());
+            }
+        }
+    }
+
+    /**
+     * Computes the values of the variables at the start of each node.
+     *
+     * @return the state of each node, or null for nodes that are never reached
+     */
+    private State[] solve(AstCfg cfg, int numParams) {
+        var states = new State[cfg.getNodes().size()];
+        var entry = cfg.getEntry();
+        if (entry == null) {
+            return states;
+        }
+
+        var entryState = new State(variables.size());
+        // Parameters are known only when the method runs
+        Arrays.fill(entryState.values, 0, numParams, Value.NOT_CONSTANT);
+        states[entry.getId()] = entryState;
+
+        var worklist = new ArrayDeque<AstCfg.Node>();
+        var queued = new boolean[states.length];
+        worklist.add(entry);
+        queued[entry.getId()] = true;
+
+        while (!worklist.isEmpty()) {
+            var node = worklist.poll();
+            queued[node.getId()] = false;
+
+            var in = states[node.getId()];
+            var out = transfer(node, in);
+
+            for (var successor : getTakenSuccessors(node, in)) {
+                if (successor == null) {
+                    continue;
+                }
+
+                var successorState = states[successor.getId()];
+                boolean changed;
+                if (successorState == null) {
+                    states[successor.getId()] = out.copy();
+                    changed = true;
+                } else {
+                    changed = successorState.merge(out);
+                }
+
+                if (changed && !queued[successor.getId()]) {
+                    worklist.add(successor);
+                    queued[successor.getId()] = true;
+                }
+            }
+        }
+
+        return states;
+    }
+
+    private State transfer(AstCfg.Node node, State in) {
+        var stmt = node.getAst();
+        if (node.isCondition() || !stmt.getKind().equals(Kind.ASSIGN_STMT.toString())) {
+            return in;
+        }
+
+        var left = stmt.getChild(0);
+        if (!left.getKind().equals(Kind.VAR_REF_EXPR.toString())) {
+            return in;
+        }
+
+        var index = variables.get(left.get("name"));
+        if (index == null) {
+            return in;
+        }
+
+        var out = in.copy();
+        out.values[index] = eval(stmt.getChild(1), in);
+        return out;
+    }
+
+    private List<AstCfg.Node> getTakenSuccessors(AstCfg.Node node, State in) {
+        if (!node.isCondition()) {
+            return node.getSuccessors();
+        }
+
+        var condition = eval(node.getAst(), in);
+        if (!condition.isConstant()) {
+            return node.getSuccessors();
+        }
+
+        return List.of(node.getSuccessors().get(condition.constant() != 0 ? 0 : 1));
+    }
+
+    private Value eval(JmmNode expr, State state) {
+        return switch (expr.getKind()) {
+            case "IntegerLiteral" -> {
+                try {
+                    yield Value.of(Integer.parseInt(expr.get("value")));
+                } catch (NumberFormatException e) {
+                    yield Value.NOT_CONSTANT;
+                }
+            }
+            case "BooleanLiteral" -> Value.of(isTrue(expr.get("value")) ? 1 : 0);
+            case "VarRefExpr" -> {
+                var index = variables.get(expr.get("name"));
+                yield index != null ? state.values[index] : Value.NOT_CONSTANT;
+            }
+            case "ParenthesesExpr" -> eval(expr.getChild(0), state);
+            case "NegExpr" -> {
+                var operand = eval(expr.getChild(0), state);
+                yield operand.isConstant() ? Value.of(operand.constant() == 0 ? 1 : 0) : operand;
+            }
+            case "BinaryExpr" -> evalBinary(expr, state);
+            default -> Value.NOT_CONSTANT;
+        };
+    }
+
+    private Value evalBinary(JmmNode expr, State state) {
+        var op = expr.get("op");
+        var left = eval(expr.getChild(0), state);
+
+        // The right operand is not evaluated when the left one decides the result
+        if (left.isConstant() && op.equals("&&") && left.constant() == 0) {
+            return Value.of(0);
+        }
+        if (left.isConstant() && op.equals("||") && left.constant() != 0) {
+            return Value.of(1);
+        }
+
+        var right = eval(expr.getChild(1), state);
+        if (left == Value.NOT_CONSTANT || right == Value.NOT_CONSTANT) {
+            return Value.NOT_CONSTANT;
+        }
+        if (left == Value.UNDEFINED || right == Value.UNDEFINED) {
+            return Value.UNDEFINED;
+        }
+
+        int a = left.constant();
+        int b = right.constant();
+
+        return switch (op) {
+            case "+" -> Value.of(a + b);
+            case "-" -> Value.of(a - b);
+            case "*" -> Value.of(a * b);
+            // Division by zero must still throw when the program runs
+            case "/" -> b != 0 ? Value.of(a / b) : Value.NOT_CONSTANT;
+            case "%" -> b != 0 ? Value.of(a % b) : Value.NOT_CONSTANT;
+            case "<" -> Value.of(a < b ? 1 : 0);
+            case ">" -> Value.of(a > b ? 1 : 0);
+            case "<=" -> Value.of(a <= b ? 1 : 0);
+            case ">=" -> Value.of(a >= b ? 1 : 0);
+            case "&" -> Value.of(a & b);
+            case "^" -> Value.of(a ^ b);
+            case "|" -> Value.of(a | b);
+            case "&&" -> Value.of(a != 0 && b != 0 ? 1 : 0);
+            case "||" -> Value.of(a != 0 || b != 0 ? 1 : 0);
+            default -> Value.NOT_CONSTANT;
+        };
+    }
+
+    /**
+     * Replaces the expressions of the node that have a constant value.
+     */
+    private void rewrite(AstCfg.Node node, State state) {
+        var ast = node.getAst();
+
+        if (node.isCondition()) {
+            fold(ast, state);
+            return;
+        }
+
+        if (ast.getKind().equals(Kind.ASSIGN_STMT.toString())) {
+            // The assigned variable is not a use, but the index of an array element is
+            var left = ast.getChild(0);
+            if (left.getKind().equals(Kind.ARRAY_ACCESS.toString())) {
+                fold(left.getChild(1), state);
+            }
+
+            fold(ast.getChild(1), state);
+            return;
+        }
+
+        for (var child : ast.getChildren()) {
+            fold(child, state);
+        }
+    }
+
+    private void fold(JmmNode node, State state) {
+        if (isLiteral(node)) {
+            return;
+        }
+
+        if (node.isInstance(Kind.EXPR)) {
+            var value = eval(node, state);
+            if (value.isConstant()) {
+                replaceWithLiteral(node, value.constant());
+                return;
+            }
+        }
+
+        for (var child : node.getChildren()) {
+            fold(child, state);
+        }
+    }
+
+    private void replaceWithLiteral(JmmNode node, int value) {
+        var type = types.getExprType(node);
+        boolean isBoolean = type != null && type.getName().equals("boolean");
+
+        var kind = isBoolean ? "BooleanLiteral" : Kind.INTEGER_LITERAL.toString();
+        JmmNode literal = new JmmNodeImpl(List.of(kind, Kind.EXPR.toString()));
+        literal.put("value", isBoolean ? String.valueOf(value != 0) : String.valueOf(value));
+
+        var parent = node.getParent();
+        int index = node.getIndexOfSelf();
+
+        table.getExprTypes().invalidate(node);
+        parent.removeChild(index);
+        parent.add(literal, index);
+
+        modified = true;
+    }
+
+    private static boolean isLiteral(JmmNode node) {
+        return node.getKind().equals(Kind.INTEGER_LITERAL.toString()) || node.getKind().equals("BooleanLiteral");
+    }
+
+    private static boolean isTrue(String value) {
+        return value.equals("true") || value.equals("1");
+    }
+
+    /**
+     * Value of a variable or expression: undefined (no assignment reaches it yet), a constant, or not a constant.
+     */
+    private record Value(int kind, int constant) {
+
+        static final Value UNDEFINED = new Value(0, 0);
+        static final Value NOT_CONSTANT = new Value(2, 0);
+
+        static Value of(int constant) {
+            return new Value(1, constant);
+        }
+
+        boolean isConstant() {
+            return kind == 1;
+        }
+
+        Value meet(Value other) {
+            if (this == UNDEFINED) {
+                return other;
+            }
+            if (other == UNDEFINED) {
+                return this;
+            }
+            if (this.equals(other)) {
+                return this;
+            }
+
+            return NOT_CONSTANT;
+        }
+    }
+
+    /**
+     * Values of the tracked variables at some point of the method.
+     */
+    private static class State {
+
+        private final Value[] values;
+
+        State(int size) {
+            this.values = new Value[size];
+            Arrays.fill(values, Value.UNDEFINED);
+        }
+
+        private State(Value[] values) {
+            this.values = values;
+        }
+
+        static State unknown(int size) {
+            var state = new State(size);
+            Arrays.fill(state.values, Value.NOT_CONSTANT);
+            return state;
+        }
+
+        State copy() {
+            return new State(values.clone());
+        }
+
+        /**
+         * Merges the values of another path into this state.
+         *
+         * @return true if any value changed
+         */
+        boolean merge(State other) {
+            boolean changed = false;
+
+            for (int i = 0; i < values.length; i++) {
+                var merged = values[i].meet(other.values[i]);
+                if (!merged.equals(values[i])) {
+                    values[i] = merged;
+                    changed = true;
+                }
+            }
+
+            return changed;
+        }
+    }
+}
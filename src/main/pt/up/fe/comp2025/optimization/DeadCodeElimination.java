@@ -0,0 +1,213 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes the code of each method that has no effect on its result.
+ * <p>
+ * Branches on a constant become a goto or disappear, the instructions that can no longer be reached from the start of
+ * the method are removed, and then assignments to variables that are not live afterwards are removed, repeating the
+ * liveness analysis until no more are found, since removing an assignment can make the ones that feed it dead too.
+ * Finally, the variables that are no longer accessed are removed from the var table.
+ * <p>
+ * An assignment is only removed if computing its value has no side effects: calls, array accesses and divisions,
+ * which may throw, are always kept.
+ */
+public class DeadCodeElimination {
+
+    private final OllirResult ollirResult;
+
+    private int removedInstructions;
+    private int removedVariables;
+
+    public DeadCodeElimination(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+    }
+
+    public void optimize() {
+        for (var method : ollirResult.getOllirClass().getMethods()) {
+            if (method.getInstructions().isEmpty()) {
+                continue;
+            }
+
+            foldConstantBranches(method);
+            removeUnreachable(method);
+            removeDeadStores(method);
+            removeUnusedVariables(method);
+        }
+
+        if (removedInstructions > 0 || removedVariables > 0) {
+            var message = "Dead code elimination: " + removedInstructions + " instructions, "
+                    + removedVariables + " variables removed";
+            ollirResult.getReports().add(Report.newLog(Stage.OPTIMIZATION, -1, -1, message, null));
+        }
+    }
+
+    /**
+     * 'if (1.bool) goto L' becomes 'goto L', and 'if (0.bool) goto L' is removed.
+     */
+    private void foldConstantBranches(Method method) {
+        var instructions = method.getInstructions();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!(instructions.get(i) instanceof SingleOpCondInstruction branch)
+                    || !(branch.getCondition().getSingleOperand() instanceof LiteralElement literal)) {
+                continue;
+            }
+
+            if (Integer.parseInt(literal.getLiteral()) != 0) {
+                var jump = new GotoInstruction(branch.getLabel());
+                OptUtils.moveLabels(method, branch, jump);
+                instructions.set(i, jump);
+            } else if (i + 1 < instructions.size()) {
+                remove(method, i);
+                i--;
+            }
+        }
+    }
+
+    private void removeUnreachable(Method method) {
+        OptUtils.buildCFG(method);
+
+        var instructions = method.getInstructions();
+        Set<Instruction> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        var worklist = new ArrayDeque<Instruction>();
+        reachable.add(instructions.getFirst());
+        worklist.push(instructions.getFirst());
+
+        while (!worklist.isEmpty()) {
+            for (var successor : worklist.pop().getSuccessors()) {
+                if (successor instanceof Instruction instruction && reachable.add(instruction)) {
+                    worklist.push(instruction);
+                }
+            }
+        }
+
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            var instruction = instructions.get(i);
+            if (reachable.contains(instruction)) {
+                continue;
+            }
+
+            // Only other unreachable instructions can jump to its labels
+            method.getLabels().values().removeIf(target -> target == instruction);
+            instructions.remove(i);
+            removedInstructions++;
+        }
+    }
+
+    private void removeDeadStores(Method method) {
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            OptUtils.buildCFG(method);
+            var accesses = new VariableAccesses(method);
+            var liveness = new Liveness(method, accesses.getUsedVars(), accesses.getDefinedVars());
+
+            var instructions = method.getInstructions();
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                if (!(instructions.get(i) instanceof AssignInstruction assign) || !isRemovable(assign)) {
+                    continue;
+                }
+
+                int variable = liveness.getIndex(((Operand) assign.getDest()).getName());
+                if (variable < 0 || liveness.getLiveOut(assign).get(variable)) {
+                    continue;
+                }
+
+                // The labels move to the next instruction, so there must be one
+                if (i + 1 == instructions.size()) {
+                    continue;
+                }
+
+                remove(method, i);
+                changed = true;
+            }
+        }
+
+        OptUtils.buildCFG(method);
+    }
+
+    /**
+     * @return true if the assignment writes a local variable and computing its value has no side effects
+     */
+    private static boolean isRemovable(AssignInstruction assign) {
+        if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand) {
+            return false;
+        }
+
+        return switch (assign.getRhs()) {
+            case SingleOpInstruction singleOp -> !(singleOp.getSingleOperand() instanceof ArrayOperand);
+            case BinaryOpInstruction binaryOp -> binaryOp.getOperation().getOpType() != OperationType.DIV;
+            case UnaryOpInstruction ignored -> true;
+            case GetFieldInstruction ignored -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Removes the variables that no instruction reads or writes anymore. 'this' and the parameters are kept.
+     */
+    private void removeUnusedVariables(Method method) {
+        Set<String> accessed = new HashSet<>();
+        accessed.add("this");
+        for (var param : method.getParams()) {
+            if (param instanceof Operand operand) {
+                accessed.add(operand.getName());
+            }
+        }
+
+        var accesses = new VariableAccesses(method);
+        for (var elements : List.of(accesses.getUsedVars().values(), accesses.getDefinedVars().values())) {
+            for (var set : elements) {
+                for (var element : set) {
+                    addNames(accessed, element);
+                }
+            }
+        }
+
+        int before = method.getVarTable().size();
+        method.getVarTable().keySet().retainAll(accessed);
+        removedVariables += before - method.getVarTable().size();
+    }
+
+    private static void addNames(Set<String> names, Element element) {
+        if (element instanceof Operand operand) {
+            names.add(operand.getName());
+        }
+
+        if (element instanceof ArrayOperand arrayOperand) {
+            for (var index : arrayOperand.getIndexOperands()) {
+                addNames(names, index);
+            }
+        }
+    }
+
+    /**
+     * Removes the instruction at the given index, moving its labels to the instruction that follows it.
+     */
+    private void remove(Method method, int index) {
+        var instructions = method.getInstructions();
+        OptUtils.moveLabels(method, instructions.get(index), instructions.get(index + 1));
+        instructions.remove(index);
+        removedInstructions++;
+    }
+}
@@ -0,0 +1,177 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Interference graph of the variables of a method, whose nodes are the indexes given by {@link Liveness}.
+ * <p>
+ * Edges are kept twice: in a triangular bit matrix, for constant time membership tests, and in an adjacency list per
+ * node, for iterating over the neighbours. Adding an edge is constant time.
+ */
+public class InterferenceGraph {
+
+    private final int size;
+
+    // Bit (i, j) with i > j is at position i * (i - 1) / 2 + j
+    private final long[] matrix;
+
+    private final int[][] neighbors;
+    private final int[] degrees;
+
+    // Pairs of variables related by a copy, as {destination, source}
+    private final List<int[]> moves;
+
+    public InterferenceGraph(int size) {
+        this.size = size;
+
+        long bits = (long) size * (size - 1) / 2;
+        this.matrix = new long[(int) ((bits + 63) / 64)];
+
+        this.neighbors = new int[size][];
+        this.degrees = new int[size];
+        Arrays.fill(neighbors, new int[0]);
+
+        this.moves = new ArrayList<>();
+    }
+
+    /**
+     * Builds the graph from the result of the liveness analysis.
+     * <p>
+     * Every variable written by an instruction interferes with the variables live after it. The source of a copy
+     * ('a := b') is the exception, since both variables hold the same value. Variables live at the start of the method
+     * interfere with each other, since they have no definition where the edge could be added.
+     */
+    public static InterferenceGraph build(Method method, Liveness liveness) {
+        var graph = new InterferenceGraph(liveness.getNumVariables());
+        var instructions = method.getInstructions();
+
+        for (Instruction instruction : instructions) {
+            var liveOut = liveness.getLiveOut(instruction);
+            int copySource = getCopySource(instruction, liveness);
+
+            var defined = liveness.getDefined(instruction);
+            if (copySource >= 0 && defined.cardinality() == 1) {
+                graph.addMove(defined.nextSetBit(0), copySource);
+            }
+
+            for (int def = defined.nextSetBit(0); def >= 0; def = defined.nextSetBit(def + 1)) {
+                for (int live = liveOut.nextSetBit(0); live >= 0; live = liveOut.nextSetBit(live + 1)) {
+                    if (live != copySource) {
+                        graph.addEdge(def, live);
+                    }
+                }
+            }
+        }
+
+        if (!instructions.isEmpty()) {
+            BitSet entry = liveness.getLiveIn(instructions.getFirst());
+            for (int a = entry.nextSetBit(0); a >= 0; a = entry.nextSetBit(a + 1)) {
+                for (int b = entry.nextSetBit(a + 1); b >= 0; b = entry.nextSetBit(b + 1)) {
+                    graph.addEdge(a, b);
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * @return the index of the variable copied by the instruction, or -1 if it is not a copy between variables
+     */
+    private static int getCopySource(Instruction instruction, Liveness liveness) {
+        if (!(instruction instanceof AssignInstruction assign)
+                || !(assign.getRhs() instanceof SingleOpInstruction singleOp)
+                || !(singleOp.getSingleOperand() instanceof Operand operand)
+                || operand.isLiteral()
+                || operand instanceof ArrayOperand) {
+            return -1;
+        }
+
+        return liveness.getIndex(operand.getName());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addMove(int destination, int source) {
+        if (destination != source) {
+            moves.add(new int[]{destination, source});
+        }
+    }
+
+    /**
+     * @return the copies between variables, as {destination, source}, in the order of the instructions
+     */
+    public List<int[]> getMoves() {
+        return moves;
+    }
+
+    /**
+     * Adds an edge between two different nodes, if it does not exist yet.
+     *
+     * @return true if the edge was added
+     */
+    public boolean addEdge(int a, int b) {
+        if (a == b) {
+            return false;
+        }
+
+        int bit = bitIndex(a, b);
+        long mask = 1L << (bit & 63);
+        if ((matrix[bit >>> 6] & mask) != 0) {
+            return false;
+        }
+
+        matrix[bit >>> 6] |= mask;
+        addNeighbor(a, b);
+        addNeighbor(b, a);
+
+        return true;
+    }
+
+    public boolean interferes(int a, int b) {
+        if (a == b) {
+            return false;
+        }
+
+        int bit = bitIndex(a, b);
+        return (matrix[bit >>> 6] & (1L << (bit & 63))) != 0;
+    }
+
+    public int getDegree(int node) {
+        return degrees[node];
+    }
+
+    /**
+     * @return the neighbours of the node, in the first {@link #getDegree(int)} positions of the array
+     */
+    public int[] getNeighbors(int node) {
+        return neighbors[node];
+    }
+
+    private void addNeighbor(int node, int neighbor) {
+        if (degrees[node] == neighbors[node].length) {
+            neighbors[node] = Arrays.copyOf(neighbors[node], Math.max(4, degrees[node] * 2));
+        }
+
+        neighbors[node][degrees[node]++] = neighbor;
+    }
+
+    private static int bitIndex(int a, int b) {
+        int high = Math.max(a, b);
+        int low = Math.min(a, b);
+
+        return high * (high - 1) / 2 + low;
+    }
+}
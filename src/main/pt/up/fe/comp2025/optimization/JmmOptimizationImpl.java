@@ -3,6 +3,8 @@ package pt.up.fe.comp2025.optimization;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.utils.PhaseProfiler;
 
 import java.util.Collections;
 
@@ -12,7 +14,9 @@ public class JmmOptimizationImpl implements JmmOptimization {
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
         // Create visitor that will generate the OLLIR code
-        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
+        var config = semanticsResult.getConfig();
+        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable(), ConfigOptions.getOptimize(config),
+                ConfigOptions.getExtra(config));
 
         // Visit the AST and obtain OLLIR code
         var ollirCode = visitor.visit(semanticsResult.getRootNode());
@@ -25,23 +29,13 @@ public class JmmOptimizationImpl implements JmmOptimization {
     @Override
     public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
 
-        if (semanticsResult.getConfig().get("optimize") == null) {
+        if (!ConfigOptions.getOptimize(semanticsResult.getConfig())) {
             return semanticsResult;
         }
 
-        boolean madeChanges = true;
-        ConstantPropagationVisitor constantPropagationVisitor = new ConstantPropagationVisitor();
-        ConstantFoldingVisitor constantFoldingVisitor = new ConstantFoldingVisitor();
-
-        while (madeChanges) {
-            constantPropagationVisitor.constantFoldingMethod(semanticsResult);
-            boolean propagationChanges = constantPropagationVisitor.isConstantPropagationModified();
-
-            constantFoldingVisitor.constantFoldingMethod(semanticsResult);
-            boolean foldingChanges = constantFoldingVisitor.isConstantFoldingModified();
-
-            madeChanges = propagationChanges || foldingChanges;
-        }
+        // Propagates and folds in a single pass, the dataflow analysis already reaches a fixpoint
+        var constantPropagation = new ConstantPropagation(semanticsResult.getSymbolTable());
+        PhaseProfiler.measure("ConstantPropagation", () -> constantPropagation.optimize(semanticsResult.getRootNode()));
 
         return semanticsResult;
     }
@@ -49,11 +43,28 @@ public class JmmOptimizationImpl implements JmmOptimization {
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
 
+        // Before register allocation, so the removed variables do not take part in it
+        if (ConfigOptions.getExtra(ollirResult.getConfig())) {
+            // Before value numbering, which propagates the copies it leaves
+            var simplification = new AlgebraicSimplification(ollirResult);
+            PhaseProfiler.measure("AlgebraicSimplification", simplification::optimize);
+
+            // Leaves the copies and temporaries it replaces for dead code elimination to remove
+            var valueNumbering = new LocalValueNumbering(ollirResult);
+            PhaseProfiler.measure("LocalValueNumbering", valueNumbering::optimize);
+
+            var codeMotion = new LoopInvariantCodeMotion(ollirResult);
+            PhaseProfiler.measure("LoopInvariantCodeMotion", codeMotion::optimize);
+
+            var deadCodeElimination = new DeadCodeElimination(ollirResult);
+            PhaseProfiler.measure("DeadCodeElimination", deadCodeElimination::optimize);
+        }
+
         if (ollirResult.getConfig().get("registerAllocation") == null || ollirResult.getConfig().get("registerAllocation").equals("-1")) return ollirResult;
 
         RegisterAllocationVisitor registerAllocationVisitor = new RegisterAllocationVisitor(ollirResult, ollirResult.getConfig().get("registerAllocation"));
 
-        registerAllocationVisitor.optimizeRegisterAllocation();
+        PhaseProfiler.measure("RegisterAllocationVisitor", registerAllocationVisitor::optimizeRegisterAllocation);
 
         return ollirResult;
     }
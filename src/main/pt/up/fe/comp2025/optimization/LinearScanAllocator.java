@@ -0,0 +1,139 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.inst.Instruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Linear scan register allocation, a faster alternative to graph coloring for large methods.
+ * <p>
+ * Each variable gets a single live interval over the instructions of the method, in the order they appear. The
+ * instruction at index i has two positions, 2i where its operands are read and 2i + 1 where its result is written, so
+ * a variable that dies in an instruction can share its register with the variable defined by it.
+ * <p>
+ * Intervals are scanned by start position and receive the lowest free register among the first k. When all k are
+ * taken, the interval that ends last is moved to an extra register after them, following Poletto and Sarkar, so the
+ * allocation never fails but may use more than k registers.
+ */
+public class LinearScanAllocator {
+
+    private final Liveness liveness;
+    private final List<Instruction> instructions;
+
+    public LinearScanAllocator(Liveness liveness, List<Instruction> instructions) {
+        this.liveness = liveness;
+        this.instructions = instructions;
+    }
+
+    /**
+     * @param allocatable the variables that need a register
+     * @param firstLocal  the first register that is not taken by 'this' or the parameters
+     * @param k           the number of registers for the allocatable variables
+     * @return the register of each variable, or -1 for the variables that are not allocatable
+     */
+    public int[] allocate(boolean[] allocatable, int firstLocal, int k) {
+        var intervals = buildIntervals(allocatable);
+        intervals.sort(Comparator.comparingInt((Interval interval) -> interval.start)
+                .thenComparingInt(interval -> interval.variable));
+
+        int[] registers = new int[allocatable.length];
+        Arrays.fill(registers, -1);
+
+        // Active intervals in the first k registers, ordered by end position
+        var active = new PriorityQueue<Interval>(Comparator.comparingInt(interval -> interval.end));
+        var free = new BitSet();
+        free.set(firstLocal, firstLocal + k);
+
+        // End position of the last interval placed in each extra register
+        List<Integer> extraEnds = new ArrayList<>();
+
+        for (var interval : intervals) {
+            expire(active, free, registers, interval.start);
+
+            if (!free.isEmpty()) {
+                registers[interval.variable] = free.nextSetBit(0);
+                free.clear(registers[interval.variable]);
+                active.add(interval);
+                continue;
+            }
+
+            // Keep the register for the interval that is released first
+            Interval spilled = interval;
+            var longest = active.stream().max(Comparator.comparingInt(candidate -> candidate.end)).orElse(null);
+            if (longest != null && longest.end > interval.end) {
+                registers[interval.variable] = registers[longest.variable];
+                active.remove(longest);
+                active.add(interval);
+                spilled = longest;
+            }
+
+            // The spilled interval may have started earlier, the extra register must be free since its start
+            int extra = 0;
+            while (extra < extraEnds.size() && extraEnds.get(extra) >= spilled.start) {
+                extra++;
+            }
+            if (extra == extraEnds.size()) {
+                extraEnds.add(spilled.end);
+            } else {
+                extraEnds.set(extra, spilled.end);
+            }
+
+            registers[spilled.variable] = firstLocal + k + extra;
+        }
+
+        // Variables that are never live or written do not conflict with anything
+        for (int variable = 0; variable < allocatable.length; variable++) {
+            if (allocatable[variable] && registers[variable] < 0) {
+                registers[variable] = firstLocal;
+            }
+        }
+
+        return registers;
+    }
+
+    private void expire(PriorityQueue<Interval> active, BitSet free, int[] registers, int position) {
+        while (!active.isEmpty() && active.peek().end < position) {
+            free.set(registers[active.poll().variable]);
+        }
+    }
+
+    private List<Interval> buildIntervals(boolean[] allocatable) {
+        int numVariables = allocatable.length;
+        int[] starts = new int[numVariables];
+        int[] ends = new int[numVariables];
+        Arrays.fill(starts, Integer.MAX_VALUE);
+        Arrays.fill(ends, -1);
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+
+            extend(liveness.getLiveIn(instruction), 2 * i, starts, ends);
+            extend(liveness.getDefined(instruction), 2 * i + 1, starts, ends);
+            extend(liveness.getLiveOut(instruction), 2 * i + 1, starts, ends);
+        }
+
+        List<Interval> intervals = new ArrayList<>();
+        for (int variable = 0; variable < numVariables; variable++) {
+            if (allocatable[variable] && ends[variable] >= 0) {
+                intervals.add(new Interval(variable, starts[variable], ends[variable]));
+            }
+        }
+
+        return intervals;
+    }
+
+    private static void extend(BitSet variables, int position, int[] starts, int[] ends) {
+        for (int variable = variables.nextSetBit(0); variable >= 0; variable = variables.nextSetBit(variable + 1)) {
+            starts[variable] = Math.min(starts[variable], position);
+            ends[variable] = Math.max(ends[variable], position);
+        }
+    }
+
+    private record Interval(int variable, int start, int end) {
+    }
+}
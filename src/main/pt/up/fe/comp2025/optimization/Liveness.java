@@ -0,0 +1,320 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.Instruction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Liveness analysis of the variables of a method.
+ * <p>
+ * Variables are numbered densely from the var table of the method, and the live sets are {@link BitSet}s indexed by
+ * those numbers. The analysis first runs over the basic blocks of the CFG with a worklist, visiting the blocks in
+ * reverse post-order of the reversed graph, and then derives the sets of each instruction from the sets of its block.
+ * <p>
+ * Requires {@link Method#buildCFG()} to have been called.
+ */
+public class Liveness {
+
+    private final List<Instruction> instructions;
+    private final Map<Instruction, Integer> instructionIndexes;
+
+    private final List<String> variables;
+    private final Map<String, Integer> variableIndexes;
+
+    private final BitSet[] use;
+    private final BitSet[] def;
+    private final BitSet[] liveIn;
+    private final BitSet[] liveOut;
+
+    /**
+     * @param usedVars    the variables read by each instruction
+     * @param definedVars the variables written by each instruction
+     */
+    public Liveness(Method method, Map<Instruction, Set<Element>> usedVars, Map<Instruction, Set<Element>> definedVars) {
+        this.instructions = method.getInstructions();
+        this.instructionIndexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            instructionIndexes.put(instructions.get(i), i);
+        }
+
+        // Sorted by register, so the numbering does not depend on the order of the var table
+        var varTable = method.getVarTable();
+        this.variables = varTable.keySet().stream()
+                .sorted(Comparator.comparingInt((String name) -> varTable.get(name).getVirtualReg())
+                        .thenComparing(Comparator.naturalOrder()))
+                .toList();
+        this.variableIndexes = new HashMap<>();
+        for (int i = 0; i < variables.size(); i++) {
+            variableIndexes.put(variables.get(i), i);
+        }
+
+        int n = instructions.size();
+        this.use = new BitSet[n];
+        this.def = new BitSet[n];
+        this.liveIn = new BitSet[n];
+        this.liveOut = new BitSet[n];
+
+        for (int i = 0; i < n; i++) {
+            var instruction = instructions.get(i);
+            use[i] = new BitSet();
+            def[i] = new BitSet();
+
+            for (var element : usedVars.getOrDefault(instruction, Set.of())) {
+                addUse(use[i], element);
+            }
+
+            for (var element : definedVars.getOrDefault(instruction, Set.of())) {
+                // Storing into an array element reads the array reference and the index, it does not redefine the array
+                if (element instanceof ArrayOperand) {
+                    addUse(use[i], element);
+                } else {
+                    addVariable(def[i], element);
+                }
+            }
+        }
+
+        analyse();
+    }
+
+    public int getNumVariables() {
+        return variables.size();
+    }
+
+    public String getVariable(int index) {
+        return variables.get(index);
+    }
+
+    /**
+     * @return the index of the variable, or -1 if it is not in the var table (for example, a field)
+     */
+    public int getIndex(String name) {
+        return variableIndexes.getOrDefault(name, -1);
+    }
+
+    public BitSet getLiveIn(Instruction instruction) {
+        return liveIn[instructionIndexes.get(instruction)];
+    }
+
+    public BitSet getLiveOut(Instruction instruction) {
+        return liveOut[instructionIndexes.get(instruction)];
+    }
+
+    public BitSet getDefined(Instruction instruction) {
+        return def[instructionIndexes.get(instruction)];
+    }
+
+    public BitSet getUsed(Instruction instruction) {
+        return use[instructionIndexes.get(instruction)];
+    }
+
+    private void addUse(BitSet set, Element element) {
+        addVariable(set, element);
+
+        // The indexes of an array access are read as well
+        if (element instanceof ArrayOperand arrayOperand) {
+            for (var index : arrayOperand.getIndexOperands()) {
+                addVariable(set, index);
+            }
+        }
+    }
+
+    private void addVariable(BitSet set, Element element) {
+        if (element instanceof Operand operand && !operand.isLiteral()) {
+            var index = variableIndexes.get(operand.getName());
+            if (index != null) {
+                set.set(index);
+            }
+        }
+    }
+
+    private void analyse() {
+        if (instructions.isEmpty()) {
+            return;
+        }
+
+        var blocks = buildBlocks();
+
+        for (var block : blocks) {
+            block.computeUseDef();
+        }
+
+        // Liveness flows backwards, so successors should be visited before their predecessors
+        var order = reversePostOrder(blocks).reversed();
+
+        var worklist = new ArrayDeque<Block>(order);
+        var queued = new boolean[blocks.size()];
+        for (var block : order) {
+            queued[block.id] = true;
+        }
+
+        while (!worklist.isEmpty()) {
+            var block = worklist.poll();
+            queued[block.id] = false;
+
+            var out = new BitSet();
+            for (var successor : block.successors) {
+                out.or(successor.in);
+            }
+            block.out = out;
+
+            var in = (BitSet) out.clone();
+            in.andNot(block.def);
+            in.or(block.use);
+
+            if (!in.equals(block.in)) {
+                block.in = in;
+
+                for (var predecessor : block.predecessors) {
+                    if (!queued[predecessor.id]) {
+                        worklist.add(predecessor);
+                        queued[predecessor.id] = true;
+                    }
+                }
+            }
+        }
+
+        for (var block : blocks) {
+            block.computeInstructionSets();
+        }
+    }
+
+    /**
+     * Splits the instructions into basic blocks. A block starts at the first instruction, at the targets of branches
+     * and after instructions that do not simply fall through to the next one.
+     */
+    private List<Block> buildBlocks() {
+        List<Block> blocks = new ArrayList<>();
+        var blockOf = new Block[instructions.size()];
+
+        Block current = null;
+        for (int i = 0; i < instructions.size(); i++) {
+            if (current == null || startsBlock(i)) {
+                current = new Block(blocks.size(), i);
+                blocks.add(current);
+            }
+
+            current.end = i;
+            blockOf[i] = current;
+        }
+
+        for (var block : blocks) {
+            for (var successor : instructions.get(block.end).getSuccessors()) {
+                if (successor instanceof Instruction instruction) {
+                    var successorBlock = blockOf[instructionIndexes.get(instruction)];
+                    block.successors.add(successorBlock);
+                    successorBlock.predecessors.add(block);
+                }
+            }
+        }
+
+        return blocks;
+    }
+
+    private boolean startsBlock(int index) {
+        var previous = instructions.get(index - 1);
+        var successors = previous.getSuccessors();
+        if (successors.size() != 1 || successors.getFirst() != instructions.get(index)) {
+            return true;
+        }
+
+        return instructions.get(index).getPredecessors().size() != 1;
+    }
+
+    private List<Block> reversePostOrder(List<Block> blocks) {
+        List<Block> postOrder = new ArrayList<>();
+        var visited = new boolean[blocks.size()];
+
+        // Blocks that cannot be reached from the entry are still analysed
+        for (var root : blocks) {
+            if (visited[root.id]) {
+                continue;
+            }
+
+            var stack = new ArrayDeque<Map.Entry<Block, Integer>>();
+            visited[root.id] = true;
+            stack.push(Map.entry(root, 0));
+
+            while (!stack.isEmpty()) {
+                var top = stack.pop();
+                var block = top.getKey();
+                int next = top.getValue();
+
+                if (next < block.successors.size()) {
+                    stack.push(Map.entry(block, next + 1));
+
+                    var successor = block.successors.get(next);
+                    if (!visited[successor.id]) {
+                        visited[successor.id] = true;
+                        stack.push(Map.entry(successor, 0));
+                    }
+                } else {
+                    postOrder.add(block);
+                }
+            }
+        }
+
+        return postOrder.reversed();
+    }
+
+    private class Block {
+
+        private final int id;
+        private final int start;
+        private int end;
+
+        private final List<Block> successors;
+        private final List<Block> predecessors;
+
+        private final BitSet use;
+        private final BitSet def;
+        private BitSet in;
+        private BitSet out;
+
+        private Block(int id, int start) {
+            this.id = id;
+            this.start = start;
+            this.successors = new ArrayList<>(2);
+            this.predecessors = new ArrayList<>();
+            this.use = new BitSet();
+            this.def = new BitSet();
+            this.in = new BitSet();
+            this.out = new BitSet();
+        }
+
+        /**
+         * Variables read before being written in the block, and variables written in the block.
+         */
+        private void computeUseDef() {
+            for (int i = end; i >= start; i--) {
+                use.andNot(Liveness.this.def[i]);
+                use.or(Liveness.this.use[i]);
+                def.or(Liveness.this.def[i]);
+            }
+        }
+
+        private void computeInstructionSets() {
+            var live = (BitSet) out.clone();
+
+            for (int i = end; i >= start; i--) {
+                liveOut[i] = (BitSet) live.clone();
+
+                live.andNot(Liveness.this.def[i]);
+                live.or(Liveness.this.use[i]);
+
+                liveIn[i] = (BitSet) live.clone();
+            }
+        }
+    }
+}
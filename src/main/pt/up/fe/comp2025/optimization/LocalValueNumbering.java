@@ -0,0 +1,279 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.*;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local value numbering of the OLLIR code of each method, which removes the expressions computed more than once in the
+ * same basic block.
+ * <p>
+ * Every variable and every expression on the right-hand side of an assignment gets a number, such that two of them
+ * have the same number only if they are sure to hold the same value. An expression whose number is already held by a
+ * variable becomes a copy of that variable, and the uses of a variable are renamed to the first variable that holds
+ * its value, so the copies and the temporaries they replace are left dead for {@link DeadCodeElimination}.
+ * <p>
+ * Binary and unary operations, array lengths, array accesses and fields are numbered. Array accesses and fields read
+ * memory, so their numbers also depend on the number of stores and calls before them. Other calls always get a new
+ * number.
+ */
+public class LocalValueNumbering {
+
+    private static final Set<OperationType> COMMUTATIVE = Set.of(OperationType.ADD, OperationType.MUL,
+            OperationType.AND, OperationType.OR, OperationType.XOR, OperationType.EQ, OperationType.NEQ,
+            OperationType.ANDB, OperationType.ORB);
+
+    private final OllirResult ollirResult;
+
+    private int reusedExpressions;
+    private int renamedOperands;
+
+    // State of the current basic block
+    private Method method;
+    private final Map<String, Integer> variableValues = new HashMap<>();
+    private final Map<String, Integer> expressionValues = new HashMap<>();
+    private final Map<Integer, List<String>> holders = new HashMap<>();
+    private int nextValue;
+    private int memoryVersion;
+
+    public LocalValueNumbering(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+    }
+
+    public void optimize() {
+        for (var method : ollirResult.getOllirClass().getMethods()) {
+            this.method = method;
+            numberMethod();
+        }
+
+        if (reusedExpressions > 0 || renamedOperands > 0) {
+            var message = "Value numbering: " + reusedExpressions + " expressions reused, " + renamedOperands
+                    + " operands renamed";
+            ollirResult.getReports().add(Report.newLog(Stage.OPTIMIZATION, -1, -1, message, null));
+        }
+    }
+
+    private void numberMethod() {
+        var instructions = method.getInstructions();
+
+        Set<Instruction> labeled = Collections.newSetFromMap(new IdentityHashMap<>());
+        labeled.addAll(method.getLabels().values());
+
+        for (int i = 0; i < instructions.size(); i++) {
+            // A block starts at a label and after an instruction that does not fall through
+            if (i == 0 || labeled.contains(instructions.get(i)) || OptUtils.endsBlock(instructions.get(i - 1))) {
+                startBlock();
+            }
+
+            var instruction = instructions.get(i);
+            for (var operand : getUses(instruction)) {
+                rename(operand);
+            }
+
+            if (instruction instanceof AssignInstruction assign) {
+                if (!numberAssign(assign, i)) {
+                    // The variable already holds the value
+                    OptUtils.moveLabels(method, assign, instructions.get(i + 1));
+                    instructions.remove(i);
+                    i--;
+                }
+            } else if (instruction instanceof CallInstruction || instruction instanceof PutFieldInstruction) {
+                memoryVersion++;
+            }
+        }
+    }
+
+    private void startBlock() {
+        variableValues.clear();
+        expressionValues.clear();
+        holders.clear();
+        memoryVersion = 0;
+    }
+
+    /**
+     * Numbers the value of an assignment, and replaces it with a copy when a variable already holds that value.
+     *
+     * @return false if the assignment is redundant, because its variable already holds the value
+     */
+    private boolean numberAssign(AssignInstruction assign, int index) {
+        var rhs = assign.getRhs();
+        if (rhs instanceof CallInstruction && !(rhs instanceof ArrayLengthInstruction)) {
+            memoryVersion++;
+        }
+
+        if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand) {
+            // Storing into an array element
+            memoryVersion++;
+            return true;
+        }
+
+        int value;
+        if (rhs instanceof SingleOpInstruction singleOp && !(singleOp.getSingleOperand() instanceof ArrayOperand)) {
+            // Copies and constants are not replaced, they are not cheaper to copy from another variable
+            value = getValue(singleOp.getSingleOperand());
+        } else {
+            var key = getKey(rhs);
+            var known = key != null ? expressionValues.get(key) : null;
+
+            if (known != null && hasHolder(known)) {
+                var holder = holders.get(known).getFirst();
+                // The labels of a removed instruction move to the next one, so there must be one
+                if (holder.equals(dest.getName()) && index + 1 < method.getInstructions().size()) {
+                    reusedExpressions++;
+                    return false;
+                }
+
+                var type = method.getVarTable().get(holder).getVarType();
+                var copy = new AssignInstruction(dest, assign.getTypeOfAssign(),
+                        new SingleOpInstruction(new Operand(holder, type)));
+                OptUtils.moveLabels(method, assign, copy);
+                method.getInstructions().set(index, copy);
+                reusedExpressions++;
+                value = known;
+            } else {
+                value = nextValue++;
+                if (key != null) {
+                    expressionValues.put(key, value);
+                }
+            }
+        }
+
+        assignValue(dest.getName(), value);
+        return true;
+    }
+
+    /**
+     * @return a key that is equal for two expressions with the same value, or null if the expression is not numbered
+     */
+    private String getKey(Instruction rhs) {
+        return switch (rhs) {
+            case BinaryOpInstruction binaryOp -> {
+                var opType = binaryOp.getOperation().getOpType();
+                var left = getOperandKey(binaryOp.getLeftOperand());
+                var right = getOperandKey(binaryOp.getRightOperand());
+                if (COMMUTATIVE.contains(opType) && left.compareTo(right) > 0) {
+                    var swap = left;
+                    left = right;
+                    right = swap;
+                }
+                yield opType + " " + left + " " + right;
+            }
+            case UnaryOpInstruction unaryOp ->
+                    unaryOp.getOperation().getOpType() + " " + getOperandKey(unaryOp.getOperand());
+            case ArrayLengthInstruction arrayLength -> "length " + getOperandKey(arrayLength.getCaller());
+            case SingleOpInstruction singleOp when singleOp.getSingleOperand() instanceof ArrayOperand array ->
+                    "load " + getOperandKey(array) + "[" + getOperandKey(array.getIndexOperands().getFirst()) + "] @"
+                            + memoryVersion;
+            case GetFieldInstruction getField -> "getfield " + getField.getField().getName() + " @" + memoryVersion;
+            default -> null;
+        };
+    }
+
+    private String getOperandKey(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return "#" + literal.getLiteral();
+        }
+
+        return "v" + getValue(element);
+    }
+
+    private int getValue(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return expressionValues.computeIfAbsent("#" + literal.getLiteral(), key -> nextValue++);
+        }
+
+        var name = ((Operand) element).getName();
+        var value = variableValues.get(name);
+        if (value == null) {
+            // The value the variable had at the start of the block
+            value = nextValue++;
+            assignValue(name, value);
+        }
+
+        return value;
+    }
+
+    private void assignValue(String name, int value) {
+        var previous = variableValues.put(name, value);
+        if (previous != null) {
+            holders.get(previous).remove(name);
+        }
+
+        holders.computeIfAbsent(value, key -> new ArrayList<>()).add(name);
+    }
+
+    private boolean hasHolder(int value) {
+        var names = holders.get(value);
+        return names != null && !names.isEmpty();
+    }
+
+    /**
+     * Renames a variable to the first variable that holds the same value.
+     */
+    private void rename(Operand operand) {
+        if (!method.getVarTable().containsKey(operand.getName())) {
+            return;
+        }
+
+        var holder = holders.get(getValue(operand)).getFirst();
+        if (!holder.equals(operand.getName())) {
+            operand.setName(holder);
+            renamedOperands++;
+        }
+    }
+
+    /**
+     * @return the operands read by the instruction that can be variables, including arrays and their indexes
+     */
+    private static List<Operand> getUses(Instruction instruction) {
+        List<Operand> uses = new ArrayList<>();
+
+        switch (instruction) {
+            case AssignInstruction assign -> {
+                uses.addAll(getUses(assign.getRhs()));
+                if (assign.getDest() instanceof ArrayOperand array) {
+                    addUse(uses, array);
+                }
+            }
+            case SingleOpInstruction singleOp -> addUse(uses, singleOp.getSingleOperand());
+            case OpInstruction op -> op.getOperands().forEach(operand -> addUse(uses, operand));
+            case CallInstruction call -> {
+                addUse(uses, call.getCaller());
+                call.getArguments().forEach(argument -> addUse(uses, argument));
+            }
+            case PutFieldInstruction putField -> addUse(uses, putField.getValue());
+            case CondBranchInstruction branch -> branch.getOperands().forEach(operand -> addUse(uses, operand));
+            case ReturnInstruction ret -> ret.getOperand().ifPresent(operand -> addUse(uses, operand));
+            default -> {
+            }
+        }
+
+        return uses;
+    }
+
+    private static void addUse(List<Operand> uses, Element element) {
+        if (!(element instanceof Operand operand) || element.isLiteral()) {
+            return;
+        }
+
+        uses.add(operand);
+        if (operand instanceof ArrayOperand array) {
+            array.getIndexOperands().forEach(index -> addUse(uses, index));
+        }
+    }
+}
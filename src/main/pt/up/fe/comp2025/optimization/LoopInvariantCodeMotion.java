@@ -0,0 +1,246 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.*;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loop-invariant code motion over the OLLIR code of each method.
+ * <p>
+ * The invariant assignments of each {@link NaturalLoop} are moved to a preheader, right before its header, which the
+ * code outside the loop falls through to. The innermost loops are handled first, so an invariant can move out of several loops.
+ * <p>
+ * An assignment is invariant if its value has no side effects and only depends on constants and on variables not
+ * written in the loop, its variable is only written once in the loop and is not live when the loop starts. Unless
+ * it dominates every instruction the loop can leave from, so the loop always runs it before leaving, its variable
+ * must also be dead after the loop. Array lengths and divisions, which can throw, are only moved when the loop
+ * always runs them and no call, putfield or array store can run between the header and them, so an exception
+ * cannot be thrown before a side effect that comes first in the loop.
+ */
+public class LoopInvariantCodeMotion {
+
+    private final OllirResult ollirResult;
+
+    private int hoistedInstructions;
+
+    public LoopInvariantCodeMotion(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+    }
+
+    public void optimize() {
+        for (var method : ollirResult.getOllirClass().getMethods()) {
+            if (method.getInstructions().isEmpty()) {
+                continue;
+            }
+
+            // Moving the code of a loop changes the CFG, so the loops are found again
+            while (hoistFromLoop(method)) {
+            }
+
+            OptUtils.buildCFG(method);
+        }
+
+        if (hoistedInstructions > 0) {
+            var message = "Loop-invariant code motion: " + hoistedInstructions + " instructions hoisted";
+            ollirResult.getReports().add(Report.newLog(Stage.OPTIMIZATION, -1, -1, message, null));
+        }
+    }
+
+    /**
+     * Moves the invariant code of the first loop, from the innermost, that has any.
+     *
+     * @return true if any instruction was moved
+     */
+    private boolean hoistFromLoop(Method method) {
+        OptUtils.buildCFG(method);
+
+        var indexes = NaturalLoop.getIndexes(method);
+        var loops = NaturalLoop.findAll(method, indexes);
+        loops.sort(Comparator.comparingInt(loop -> loop.getBody().cardinality()));
+
+        var accesses = new VariableAccesses(method);
+        var liveness = new Liveness(method, accesses.getUsedVars(), accesses.getDefinedVars());
+
+        for (var loop : loops) {
+            if (loop.hasPreheader(method, indexes) && hoist(method, loop, indexes, liveness)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hoist(Method method, NaturalLoop loop, Map<Instruction, Integer> indexes, Liveness liveness) {
+        var instructions = method.getInstructions();
+        var header = instructions.get(loop.getHeader());
+
+        // Variables written in the loop, with the number of assignments to each
+        int[] writes = new int[liveness.getNumVariables()];
+        for (int i = loop.getBody().nextSetBit(0); i >= 0; i = loop.getBody().nextSetBit(i + 1)) {
+            var defined = liveness.getDefined(instructions.get(i));
+            for (int v = defined.nextSetBit(0); v >= 0; v = defined.nextSetBit(v + 1)) {
+                writes[v]++;
+            }
+        }
+
+        // Variables live when leaving the loop
+        var liveAtExits = new BitSet();
+        for (int i = loop.getBody().nextSetBit(0); i >= 0; i = loop.getBody().nextSetBit(i + 1)) {
+            for (var successor : instructions.get(i).getSuccessors()) {
+                if (successor instanceof Instruction instruction && !loop.getBody().get(indexes.get(instruction))) {
+                    liveAtExits.or(liveness.getLiveIn(instruction));
+                }
+            }
+        }
+
+        var afterSideEffects = getAfterSideEffects(instructions, loop, indexes);
+
+        List<Instruction> hoisted = new ArrayList<>();
+        var movedVariables = new BitSet();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = loop.getBody().nextSetBit(0); i >= 0; i = loop.getBody().nextSetBit(i + 1)) {
+                var instruction = instructions.get(i);
+                if (!(instruction instanceof AssignInstruction assign) || hoisted.contains(assign)) {
+                    continue;
+                }
+
+                if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand) {
+                    continue;
+                }
+
+                int variable = liveness.getIndex(dest.getName());
+                if (variable < 0 || writes[variable] != 1 || liveness.getLiveIn(header).get(variable)) {
+                    continue;
+                }
+
+                boolean alwaysRun = loop.getAlwaysRun().get(i);
+                if (!alwaysRun && liveAtExits.get(variable)) {
+                    continue;
+                }
+
+                boolean mayThrow = alwaysRun && !afterSideEffects.get(i);
+                if (!isInvariant(assign.getRhs(), mayThrow, liveness, writes, movedVariables)) {
+                    continue;
+                }
+
+                hoisted.add(assign);
+                movedVariables.set(variable);
+                changed = true;
+            }
+        }
+
+        if (hoisted.isEmpty()) {
+            return false;
+        }
+
+        // In their order in the loop, which respects the dependencies between them
+        hoisted.sort(Comparator.comparingInt(indexes::get));
+
+        int preheader = loop.getHeader();
+        for (var instruction : hoisted) {
+            int index = instructions.indexOf(instruction);
+            OptUtils.moveLabels(method, instruction, instructions.get(index + 1));
+            instructions.remove(index);
+
+            instructions.add(preheader++, instruction);
+            hoistedInstructions++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Instructions of the loop that can run after a call, a putfield or an array store of the same iteration, that is,
+     * that are reachable from one of them without going through the header.
+     */
+    private static BitSet getAfterSideEffects(List<Instruction> instructions, NaturalLoop loop,
+                                              Map<Instruction, Integer> indexes) {
+        var afterSideEffects = new BitSet();
+        var worklist = new ArrayDeque<Integer>();
+
+        for (int i = loop.getBody().nextSetBit(0); i >= 0; i = loop.getBody().nextSetBit(i + 1)) {
+            if (hasSideEffects(instructions.get(i))) {
+                worklist.push(i);
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            for (var successor : instructions.get(worklist.pop()).getSuccessors()) {
+                if (!(successor instanceof Instruction instruction)) {
+                    continue;
+                }
+
+                int index = indexes.get(instruction);
+                if (loop.getBody().get(index) && index != loop.getHeader() && !afterSideEffects.get(index)) {
+                    afterSideEffects.set(index);
+                    worklist.push(index);
+                }
+            }
+        }
+
+        return afterSideEffects;
+    }
+
+    private static boolean hasSideEffects(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign) {
+            return assign.getDest() instanceof ArrayOperand || isCall(assign.getRhs());
+        }
+
+        return isCall(instruction) || instruction instanceof PutFieldInstruction;
+    }
+
+    // Array lengths are calls in OLLIR, but they only read the array
+    private static boolean isCall(Instruction instruction) {
+        return instruction instanceof CallInstruction && !(instruction instanceof ArrayLengthInstruction);
+    }
+
+    /**
+     * @param mayThrow true if the loop always runs the instruction before leaving, and before any side effect of the
+     *                 same iteration, so it may throw
+     */
+    private static boolean isInvariant(Instruction rhs, boolean mayThrow, Liveness liveness, int[] writes,
+                                       BitSet movedVariables) {
+        List<Element> operands = switch (rhs) {
+            case SingleOpInstruction singleOp when !(singleOp.getSingleOperand() instanceof ArrayOperand) ->
+                    List.of(singleOp.getSingleOperand());
+            case BinaryOpInstruction binaryOp when mayThrow
+                    || binaryOp.getOperation().getOpType() != OperationType.DIV -> binaryOp.getOperands();
+            case UnaryOpInstruction unaryOp -> List.of(unaryOp.getOperand());
+            case ArrayLengthInstruction arrayLength when mayThrow -> List.of(arrayLength.getCaller());
+            default -> null;
+        };
+
+        if (operands == null) {
+            return false;
+        }
+
+        for (var operand : operands) {
+            if (operand.isLiteral() || !(operand instanceof Operand variable)) {
+                continue;
+            }
+
+            int index = liveness.getIndex(variable.getName());
+            if (index >= 0 && writes[index] > 0 && !movedVariables.get(index)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
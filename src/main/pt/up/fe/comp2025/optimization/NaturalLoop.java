@@ -0,0 +1,215 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Natural loop of the OLLIR code of a method, found from the back edges of its CFG, the edges to an instruction that
+ * dominates their source.
+ * <p>
+ * The header and the instructions of the loop are given by their index in the instruction list of the method, so a
+ * loop is only valid until the instructions are changed.
+ */
+public class NaturalLoop {
+
+    private final int header;
+    private final BitSet body;
+    private final BitSet alwaysRun;
+
+    private NaturalLoop(int header) {
+        this.header = header;
+        this.body = new BitSet();
+        this.body.set(header);
+        this.alwaysRun = new BitSet();
+    }
+
+    public int getHeader() {
+        return header;
+    }
+
+    public BitSet getBody() {
+        return body;
+    }
+
+    /**
+     * @return the instructions that dominate all the ones the loop can leave from, which the loop runs every time
+     * before leaving
+     */
+    public BitSet getAlwaysRun() {
+        return alwaysRun;
+    }
+
+    /**
+     * @return the index of each instruction of the method
+     */
+    public static Map<Instruction, Integer> getIndexes(Method method) {
+        var instructions = method.getInstructions();
+        var indexes = new IdentityHashMap<Instruction, Integer>();
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Finds the loops of a method whose CFG is built. Several back edges to the same header make a single loop.
+     */
+    public static List<NaturalLoop> findAll(Method method, Map<Instruction, Integer> indexes) {
+        var instructions = method.getInstructions();
+        var dominators = computeDominators(instructions, indexes);
+
+        List<NaturalLoop> loops = new ArrayList<>();
+        for (int source = 0; source < instructions.size(); source++) {
+            for (var successor : instructions.get(source).getSuccessors()) {
+                if (!(successor instanceof Instruction target)) {
+                    continue;
+                }
+
+                int header = indexes.get(target);
+                if (!dominators[source].get(header)) {
+                    continue;
+                }
+
+                var loop = loops.stream().filter(other -> other.header == header).findFirst().orElse(null);
+                if (loop == null) {
+                    loop = new NaturalLoop(header);
+                    loops.add(loop);
+                }
+
+                loop.addBody(source, instructions, indexes);
+            }
+        }
+
+        for (var loop : loops) {
+            loop.alwaysRun.or(loop.body);
+            for (int i = loop.body.nextSetBit(0); i >= 0; i = loop.body.nextSetBit(i + 1)) {
+                for (var successor : instructions.get(i).getSuccessors()) {
+                    if (!(successor instanceof Instruction instruction) || !loop.body.get(indexes.get(instruction))) {
+                        loop.alwaysRun.and(dominators[i]);
+                    }
+                }
+            }
+        }
+
+        return loops;
+    }
+
+    /**
+     * Dominators of each instruction, computed iteratively until no set changes. Unreachable instructions have none.
+     */
+    private static BitSet[] computeDominators(List<Instruction> instructions, Map<Instruction, Integer> indexes) {
+        int n = instructions.size();
+
+        var reachable = new BitSet();
+        var worklist = new ArrayDeque<Integer>();
+        reachable.set(0);
+        worklist.push(0);
+        while (!worklist.isEmpty()) {
+            for (var successor : instructions.get(worklist.pop()).getSuccessors()) {
+                if (successor instanceof Instruction instruction && !reachable.get(indexes.get(instruction))) {
+                    reachable.set(indexes.get(instruction));
+                    worklist.push(indexes.get(instruction));
+                }
+            }
+        }
+
+        var dominators = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            dominators[i] = new BitSet();
+            if (i == 0) {
+                dominators[i].set(0);
+            } else if (reachable.get(i)) {
+                dominators[i].set(0, n);
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = reachable.nextSetBit(1); i >= 0; i = reachable.nextSetBit(i + 1)) {
+                var dominated = new BitSet();
+                dominated.set(0, n);
+                for (var predecessor : instructions.get(i).getPredecessors()) {
+                    if (predecessor instanceof Instruction instruction && reachable.get(indexes.get(instruction))) {
+                        dominated.and(dominators[indexes.get(instruction)]);
+                    }
+                }
+                dominated.set(i);
+
+                if (!dominated.equals(dominators[i])) {
+                    dominators[i] = dominated;
+                    changed = true;
+                }
+            }
+        }
+
+        return dominators;
+    }
+
+    /**
+     * Adds to the loop the instructions that reach the source of a back edge without going through the header.
+     */
+    private void addBody(int source, List<Instruction> instructions, Map<Instruction, Integer> indexes) {
+        var worklist = new ArrayDeque<Integer>();
+        if (!body.get(source)) {
+            body.set(source);
+            worklist.push(source);
+        }
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            if (index == header) {
+                continue;
+            }
+
+            for (var predecessor : instructions.get(index).getPredecessors()) {
+                if (predecessor instanceof Instruction instruction) {
+                    int predecessorIndex = indexes.get(instruction);
+                    if (!body.get(predecessorIndex)) {
+                        body.set(predecessorIndex);
+                        worklist.push(predecessorIndex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Code can only be placed right before the header if the loop is only entered by falling through to it, as the
+     * loops generated with their condition at the start are, or past the branch that skips it, as rotated loops are.
+     */
+    public boolean hasPreheader(Method method, Map<Instruction, Integer> indexes) {
+        var instructions = method.getInstructions();
+        for (var predecessor : instructions.get(header).getPredecessors()) {
+            if (!(predecessor instanceof Instruction instruction)) {
+                // The start of the method
+                continue;
+            }
+
+            int index = indexes.get(instruction);
+            if (body.get(index)) {
+                continue;
+            }
+
+            // A branch right before the header can also fall through to it, but not when it jumps to the header
+            if (index != header - 1 || instruction instanceof GotoInstruction
+                    || instruction instanceof CondBranchInstruction branch
+                    && method.getLabels().get(branch.getLabel()) == instructions.get(header)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -6,6 +6,7 @@ import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2025.ast.Kind;
 import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
 
 import java.util.List;
 import java.util.Objects;
@@ -14,6 +15,9 @@ import static pt.up.fe.comp2025.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are expressions.
+ * <p>
+ * The instructions that compute an expression are written directly to the code of the compilation unit, shared with
+ * {@link OllirGeneratorVisitor}, and the result of each visit is only the operand that holds the value.
  */
 public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult> {
 
@@ -24,17 +28,21 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
     private final String COMMA = ", ";
 
 
-    private final SymbolTable table;
+    private final JmmSymbolTable table;
 
     private final TypeUtils types;
     private final OptUtils ollirTypes;
     private final List<String> operators = List.of("+", "-", "*", "/");
 
+    // Code of the whole compilation unit, the computations are appended as the expressions are visited
+    private final StringBuilder ollirCode;
 
-    public OllirExprGeneratorVisitor(SymbolTable table) {
-        this.table = table;
+
+    public OllirExprGeneratorVisitor(SymbolTable table, StringBuilder ollirCode) {
+        this.table = (JmmSymbolTable) table;
         this.types = new TypeUtils(table);
         this.ollirTypes = new OptUtils(types);
+        this.ollirCode = ollirCode;
     }
 
     public void setTypesCurrentMethod(String name) {
@@ -90,7 +98,6 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
     private OllirExprResult visitNewArray(JmmNode node, Void unused) {
         JmmNode arrayNew = node.getChildren().getFirst();
         StringBuilder code = new StringBuilder();
-        StringBuilder computation = new StringBuilder();
 
         Type typeArray = null;
         OllirExprResult expr = null;
@@ -102,7 +109,6 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                 typeArray = new Type(child.get("name"), true);
             } else if (types.getExprType(child) != null) {
                 expr = visit(child, null);
-                computation.append(expr.getComputation());
             }
         }
 
@@ -110,17 +116,15 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         String ollirType = ollirTypes.toOllirType(Objects.requireNonNull(typeArray));
         code.append(temp).append(ollirType);
 
-        computation.append(temp).append(ollirType)
+        ollirCode.append(temp).append(ollirType)
                 .append(SPACE).append(ASSIGN).append(ollirType).append(SPACE)
                 .append("new(array, ").append(Objects.requireNonNull(expr).getCode()).append(")")
                 .append(ollirType).append(END_STMT);
 
-        return new OllirExprResult(code.toString(), computation);
+        return new OllirExprResult(code.toString());
     }
 
     private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
-
         // code to compute self
         Type resType = types.getExprType(node);
         String resOllirType = ollirTypes.toOllirType(resType);
@@ -128,42 +132,40 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         if (node.get("op").equals("&&")) {
 
             var lhs = visit(node.getChild(0));
-            var rhs = visit(node.getChild(1));
 
-            computation.append(lhs.getComputation());
             String auxTrue = ollirTypes.nextTemp("true_path");
             String auxAndTmp = ollirTypes.nextTemp("andTmp");
-            computation.append("if (").append(lhs.getCode()).append(")").append(" goto ").append(auxTrue).append(END_STMT);
-            computation.append(auxAndTmp).append(resOllirType).append(SPACE).append(ASSIGN).append(resOllirType);
-            computation.append(SPACE).append("0").append(resOllirType).append(END_STMT);
+            ollirCode.append("if (").append(lhs.getCode()).append(")").append(" goto ").append(auxTrue).append(END_STMT);
+            ollirCode.append(auxAndTmp).append(resOllirType).append(SPACE).append(ASSIGN).append(resOllirType);
+            ollirCode.append(SPACE).append("0").append(resOllirType).append(END_STMT);
             String auxEnd = ollirTypes.nextTemp("end");
-            computation.append("goto ").append(auxEnd).append(END_STMT);
-            computation.append(auxTrue).append(":").append(NL);
-            computation.append(rhs.getComputation());
-            computation.append(auxAndTmp).append(resOllirType).append(SPACE).append(ASSIGN).append(resOllirType);
-            computation.append(SPACE).append(rhs.getCode()).append(END_STMT);
-            computation.append(auxEnd).append(":").append(NL);
+            ollirCode.append("goto ").append(auxEnd).append(END_STMT);
+            ollirCode.append(auxTrue).append(":").append(NL);
+
+            // The right operand is only computed when the left one is true
+            var rhs = visit(node.getChild(1));
+            ollirCode.append(auxAndTmp).append(resOllirType).append(SPACE).append(ASSIGN).append(resOllirType);
+            ollirCode.append(SPACE).append(rhs.getCode()).append(END_STMT);
+            ollirCode.append(auxEnd).append(":").append(NL);
             code = auxAndTmp + resOllirType;
-            return new OllirExprResult(code, computation);
+            return new OllirExprResult(code);
         }
 
         var lhs = visit(node.getChild(0));
         var rhs = visit(node.getChild(1));
-        computation.append(lhs.getComputation());
-        computation.append(rhs.getComputation());
 
         code = ollirTypes.nextTemp() + resOllirType;
 
 
-        computation.append(code).append(SPACE)
+        ollirCode.append(code).append(SPACE)
                 .append(ASSIGN).append(resOllirType).append(SPACE)
                 .append(lhs.getCode()).append(SPACE);
 
         Type type = types.getExprType(node);
-        computation.append(node.get("op")).append(ollirTypes.toOllirType(type)).append(SPACE)
+        ollirCode.append(node.get("op")).append(ollirTypes.toOllirType(type)).append(SPACE)
                 .append(rhs.getCode()).append(END_STMT);
 
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitParenthesesExpr(JmmNode node, Void unused) {
@@ -172,19 +174,17 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
     private OllirExprResult visitNegExpr(JmmNode node, Void unused) {
         var expr = visit(node.getChild(0));
-        StringBuilder computation = new StringBuilder();
-        computation.append(expr.getComputation());
 
         Type resType = types.getExprType(node);
         String resOllirType = ollirTypes.toOllirType(resType);
         String code = ollirTypes.nextTemp() + resOllirType;
 
-        computation.append(code).append(SPACE)
+        ollirCode.append(code).append(SPACE)
                 .append(ASSIGN).append(resOllirType).append(SPACE)
                 .append("!").append(ollirTypes.toOllirType(resType)).append(SPACE)
                 .append(expr.getCode()).append(END_STMT);
 
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitVarRef(JmmNode node, Void unused) {
@@ -199,32 +199,21 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         Type type = types.getExprType(node);
         String ollirType = ollirTypes.toOllirType(type);
 
-        boolean isField;
-
-        if (methodName != null) {
-            isField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(id)) && table.getParameters(methodName).stream().noneMatch(o -> o.getName().equals(id)) && table.getLocalVariables(methodName).stream().noneMatch(o -> o.getName().equals(id));
-        }
-        else {
-            isField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(id));
-        }
+        boolean isField = table.isField(methodName, id);
 
         String code;
-        StringBuilder computation = new StringBuilder();
 
 
         if (isField) {
             code = ollirTypes.nextTemp() + ollirType;
-            computation.append(code).append(SPACE)
+            ollirCode.append(code).append(SPACE)
                     .append(ASSIGN).append(ollirType).append(SPACE)
                     .append("getfield(this").append(COMMA).append(id).append(ollirType).append(")").append(ollirType).append(END_STMT);
         } else {
             code = id + ollirType;
-            computation = new StringBuilder("");
         }
 
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitArrayAccess(JmmNode node, Void unused) {
@@ -232,17 +221,14 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
             var arrayInit = visit(node.getChild(0));
             var index = visit(node.getChild(1));
             StringBuilder code = new StringBuilder();
-            StringBuilder computation = new StringBuilder();
 
-            computation.append(arrayInit.getComputation());
-            computation.append(index.getComputation());
             String typeLiteral = ollirTypes.toOllirType(types.getExprType(node.getChild(0).getChild(0).getChild(0)));
 
             code.append(ollirTypes.nextTemp()).append(typeLiteral);
-            computation.append(code).append(SPACE).append(ASSIGN).append(typeLiteral).append(SPACE).append(arrayInit.getCode())
+            ollirCode.append(code).append(SPACE).append(ASSIGN).append(typeLiteral).append(SPACE).append(arrayInit.getCode())
                        .append("[").append(index.getCode()).append("]").append(typeLiteral).append(END_STMT);
 
-            return new OllirExprResult(code.toString(), computation);
+            return new OllirExprResult(code.toString());
         }
 
         Type nodeType = types.getExprType(node);
@@ -251,7 +237,6 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         Type arrayType = types.getVarType(node.getChildren(Kind.VAR_REF_EXPR.toString()).getFirst().get("name"));
 
         StringBuilder code = new StringBuilder();
-        StringBuilder computation = new StringBuilder();
 
         String methodName;
         var methodNode = node.getAncestor("MethodDecl");
@@ -260,68 +245,53 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         } else {
             methodName = null;
         }
-        boolean isField;
-
-        if (methodName != null) {
-            isField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(name)) && table.getParameters(methodName).stream().noneMatch(o -> o.getName().equals(name)) && table.getLocalVariables(methodName).stream().noneMatch(o -> o.getName().equals(name));
-        }
-        else {
-            isField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(name));
-        }
+        boolean isField = table.isField(methodName, name);
 
         var indexNode = node.getChild(1);
         if (isField) {
             Type fieldType = types.getVarType(name);
             String fieldTypeString = ollirTypes.toOllirType(fieldType);
             String fieldTemp = ollirTypes.nextTemp();
-            StringBuilder lhsComputation = new StringBuilder();
-            lhsComputation.append(fieldTemp).append(fieldTypeString).append(SPACE)
+            ollirCode.append(fieldTemp).append(fieldTypeString).append(SPACE)
                     .append(ASSIGN).append(fieldTypeString).append(SPACE)
                     .append("getfield(this").append(COMMA).append(name)
                     .append(fieldTypeString).append(")").append(fieldTypeString)
                     .append(END_STMT);
 
             var leftIndex = visit(indexNode);
-            lhsComputation.append(leftIndex.getComputation());
-            computation.append(lhsComputation);
 
             if ((node.getParent().getKind().equals("AssignStmt") && node.getParent().getChild(1).getKind().equals("ArrayAccess")) || node.getParent().getKind().equals("ReturnStmt") || node.getParent().getKind().equals("ObjectMethod") || node.getParent().getKind().equals("ObjectNew")) {
                 code.append(ollirTypes.nextTemp()).append(typeString);
 
-                computation.append(code).append(SPACE).append(ASSIGN).append(typeString).append(SPACE).append(fieldTemp)
+                ollirCode.append(code).append(SPACE).append(ASSIGN).append(typeString).append(SPACE).append(fieldTemp)
                         .append(fieldTypeString).append("[").append(leftIndex.getCode())
                         .append("]").append(typeString).append(END_STMT);
             } else {
                 code.append(fieldTemp).append(fieldTypeString).append("[").append(leftIndex.getCode()).append("]").append(typeString);
             }
-            return new OllirExprResult(code.toString(), computation);
+            return new OllirExprResult(code.toString());
         }
 
         var expr = visit(node.getChild(1), unused);
 
         code.append(ollirTypes.nextTemp()).append(typeString);
 
-        computation.append(expr.getComputation());
-        computation.append(code);
-        computation.append(SPACE).append(ASSIGN).append(typeString);
-        computation.append(SPACE).append(name).append(ollirTypes.toOllirType(arrayType));
-        computation.append("[").append(expr.getCode()).append("]");
-        computation.append(typeString).append(END_STMT);
+        ollirCode.append(code);
+        ollirCode.append(SPACE).append(ASSIGN).append(typeString);
+        ollirCode.append(SPACE).append(name).append(ollirTypes.toOllirType(arrayType));
+        ollirCode.append("[").append(expr.getCode()).append("]");
+        ollirCode.append(typeString).append(END_STMT);
 
-        return new OllirExprResult(code.toString(), computation);
+        return new OllirExprResult(code.toString());
     }
 
     private OllirExprResult visitArrayInit(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
-
         String typeNode = ollirTypes.toOllirType(types.getExprType(node));
         String tempName = ollirTypes.nextTemp();
 
         String code = tempName + typeNode;
 
-        computation.append(code).append(SPACE).append(ASSIGN).append(typeNode).append(SPACE)
+        ollirCode.append(code).append(SPACE).append(ASSIGN).append(typeNode).append(SPACE)
                    .append("new(array, ").append(node.getChild(0).getNumChildren())
                    .append(ollirTypes.toOllirType(TypeUtils.newIntType())).append(")").append(typeNode).append(END_STMT);
 
@@ -329,13 +299,12 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
             if (types.getExprType(node.getChild(0).getChild(i)) != null) {
                 String typeLiteral = ollirTypes.toOllirType(types.getExprType(node.getChild(0).getChild(i)));
                 var expr = visit(node.getChild(0).getChild(i));
-                computation.append(expr.getComputation());
-                computation.append(tempName).append("[").append(i).append(typeLiteral).append("]").append(typeLiteral).append(SPACE)
+                ollirCode.append(tempName).append("[").append(i).append(typeLiteral).append("]").append(typeLiteral).append(SPACE)
                         .append(ASSIGN).append(typeLiteral).append(SPACE).append(expr.getCode()).append(END_STMT);
             }
         }
 
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitObjectNew(JmmNode node, Void unused) {
@@ -349,16 +318,15 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         StringBuilder code = new StringBuilder();
         code.append(temp).append(".").append(displayName);
 
-        StringBuilder computation = new StringBuilder();
-        computation.append(code).append(SPACE)
+        ollirCode.append(code).append(SPACE)
                 .append(ASSIGN).append(".").append(displayName).append(SPACE)
                 .append("new(").append(displayName).append(")")
                 .append(".").append(displayName).append(END_STMT);
 
-        computation.append("invokespecial(")
+        ollirCode.append("invokespecial(")
                 .append(code).append(", \"<init>\").V").append(END_STMT);
 
-        return new OllirExprResult(code.toString(), computation);
+        return new OllirExprResult(code.toString());
     }
 
     private OllirExprResult visitObjectAttribute(JmmNode node, Void unused) {
@@ -367,7 +335,6 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         String objectOllirTypeSimple = ollirTypes.toOllirType(new Type(objectType.getName(), false));
         String objectOllirType = ollirTypes.toOllirType(objectType);
 
-        StringBuilder computation = new StringBuilder();
         StringBuilder code = new StringBuilder();
 
         String methodName;
@@ -377,23 +344,14 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         } else {
             methodName = null;
         }
-        boolean isField;
-
-        if (methodName != null) {
-            isField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(objectName)) && table.getParameters(methodName).stream().noneMatch(o -> o.getName().equals(objectName)) && table.getLocalVariables(methodName).stream().noneMatch(o -> o.getName().equals(objectName));
-        }
-        else {
-            isField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(objectName));
-        }
+        boolean isField = table.isField(methodName, objectName);
 
         String arrayRef;
 
         if (isField) {
             String fieldTemp = ollirTypes.nextTemp();
 
-            computation.append(fieldTemp).append(objectOllirType).append(SPACE)
+            ollirCode.append(fieldTemp).append(objectOllirType).append(SPACE)
                     .append(ASSIGN).append(objectOllirType).append(SPACE)
                     .append("getfield(this").append(COMMA)
                     .append(objectName).append(objectOllirType).append(")")
@@ -406,17 +364,15 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         code.append(ollirTypes.nextTemp()).append(objectOllirTypeSimple);
 
-        computation.append(code).append(SPACE).append(ASSIGN).append(objectOllirTypeSimple).append(SPACE)
+        ollirCode.append(code).append(SPACE).append(ASSIGN).append(objectOllirTypeSimple).append(SPACE)
                 .append("arraylength(").append(arrayRef).append(")").append(objectOllirTypeSimple)
                 .append(END_STMT);
 
-        return new OllirExprResult(code.toString(), computation);
+        return new OllirExprResult(code.toString());
     }
 
     private OllirExprResult visitMethodCall(JmmNode jmmNode, Void unused) {
         var objectMethod = visit(jmmNode.getParent().getChild(0));
-        StringBuilder computation = new StringBuilder();
-        computation.append(objectMethod.getComputation());
 
         String methodName = jmmNode.get("name");
         Type type = types.getExprType(jmmNode.getParent());
@@ -436,26 +392,24 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         for (int i = 0; i < jmmNode.getChildren().size(); i++) {
             var expr = visit(jmmNode.getChild(i));
 
-            computation.append(expr.getComputation());
             invokeCode.append(COMMA).append(expr.getCode());
         }
         invokeCode.append(")").append(ollirTypes.toOllirType(type)).append(END_STMT);
 
         String code = ollirTypes.nextTemp() + ollirTypes.toOllirType(type);
-        computation.append(code).append(SPACE).append(ASSIGN).append(ollirTypes.toOllirType(type)).append(SPACE);
-        computation.append(invokeCode);
+        ollirCode.append(code).append(SPACE).append(ASSIGN).append(ollirTypes.toOllirType(type)).append(SPACE);
+        ollirCode.append(invokeCode);
 
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitCallMethod(JmmNode jmmNode, Void unused) {
         if (jmmNode.getParent().getKind().equals("ExprStmt")) {
             String type = "." + jmmNode.getChild(0).getChild(0).get("name");
             String tempName = ollirTypes.nextTemp() + type;
-            StringBuilder computation = new StringBuilder();
 
-            computation.append(tempName).append(SPACE).append(ASSIGN).append(type).append(SPACE).append("new(").append(jmmNode.getChild(0).getChild(0).get("name")).append(")").append(type).append(END_STMT);
-            computation.append("invokespecial(").append(tempName).append(", \"<init>\").V").append(END_STMT);
+            ollirCode.append(tempName).append(SPACE).append(ASSIGN).append(type).append(SPACE).append("new(").append(jmmNode.getChild(0).getChild(0).get("name")).append(")").append(type).append(END_STMT);
+            ollirCode.append("invokespecial(").append(tempName).append(", \"<init>\").V").append(END_STMT);
 
             StringBuilder invokeComputation = new StringBuilder();
             invokeComputation.append("invokevirtual(").append(tempName).append(COMMA).append("\"").append(jmmNode.getChild(1).get("name")).append("\"");
@@ -464,24 +418,21 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                 var exprResult = visit(child);
                 invokeComputation.append(COMMA);
                 invokeComputation.append(exprResult.getCode());
-                computation.append(exprResult.getComputation());
             }
 
             boolean isClass = table.getClassName().equals(jmmNode.getChild(0).getChild(0).get("name"));
             String aux = isClass ? ollirTypes.toOllirType(table.getReturnType(jmmNode.getChild(1).get("name"))) : ".V";
             invokeComputation.append(")").append(aux).append(END_STMT);
-            computation.append(invokeComputation);
+            ollirCode.append(invokeComputation);
 
-            return new OllirExprResult("", computation);
+            return new OllirExprResult("");
         }
 
         var method = visit(jmmNode.getChild(1));
 
         String code = method.getCode();
-        StringBuilder computation = new StringBuilder();
-        computation.append(method.getComputation());
 
-        return new OllirExprResult(code, computation);
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitObjectMethod(JmmNode node, Void unused) {
@@ -522,26 +473,16 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         } else {
             principalMethodName = null;
         }
-        boolean isField;
-
-        if (principalMethodName != null) {
-            isField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(varName)) && table.getParameters(principalMethodName).stream().noneMatch(o -> o.getName().equals(varName)) && table.getLocalVariables(principalMethodName).stream().noneMatch(o -> o.getName().equals(varName));
-        }
-        else {
-            isField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(varName));
-        }
+        boolean isField = table.isField(principalMethodName, varName);
 
         StringBuilder code = new StringBuilder();
-        StringBuilder computation = new StringBuilder();
 
         String caller = "";
 
         if (isField) {
             String fieldTypeString = ollirTypes.toOllirType(types.getVarType(varName));
             String fieldTemp = ollirTypes.nextTemp();
-            computation.append(fieldTemp).append(fieldTypeString).append(SPACE).append(ASSIGN).append(fieldTypeString)
+            ollirCode.append(fieldTemp).append(fieldTypeString).append(SPACE).append(ASSIGN).append(fieldTypeString)
                     .append(SPACE).append("getfield(this").append(COMMA).append(varName)
                     .append(fieldTypeString).append(")").append(fieldTypeString).append(END_STMT);
             if(varName.equals("this")){
@@ -566,7 +507,6 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         for (int i = 0; i < node.getChildren().size(); i++) {
             var expr = visit(node.getChild(i));
-            computation.append(expr.getComputation());
 
             invoke.append(COMMA).append(expr.getCode());
         }
@@ -575,10 +515,10 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         invoke.append(")").append(ollirType).append(END_STMT);
 
-        computation.append(code).append(SPACE).append(ASSIGN).append(ollirType).append(SPACE);
-        computation.append(invoke);
+        ollirCode.append(code).append(SPACE).append(ASSIGN).append(ollirType).append(SPACE);
+        ollirCode.append(invoke);
 
-        return new OllirExprResult(code.toString(), computation);
+        return new OllirExprResult(code.toString());
     }
 
     private OllirExprResult visitVarDecl(JmmNode node, Void unused) {
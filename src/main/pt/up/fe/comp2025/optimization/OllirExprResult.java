@@ -1,27 +1,19 @@
 package pt.up.fe.comp2025.optimization;
 
+/**
+ * Result of generating the OLLIR code of an expression: the operand that holds its value, such as 'tmp0.i32' or 'a.i32'.
+ * <p>
+ * The instructions that compute the value are not part of the result, they are written directly to the code of the
+ * compilation unit while the expression is visited.
+ */
 public class OllirExprResult {
 
-    public static final OllirExprResult EMPTY = new OllirExprResult("", "");
+    public static final OllirExprResult EMPTY = new OllirExprResult("");
 
-    private final String computation;
     private final String code;
 
-    public OllirExprResult(String code, String computation) {
-        this.code = code;
-        this.computation = computation;
-    }
-
     public OllirExprResult(String code) {
-        this(code, "");
-    }
-
-    public OllirExprResult(String code, StringBuilder computation) {
-        this(code, computation.toString());
-    }
-
-    public String getComputation() {
-        return computation;
+        this.code = code;
     }
 
     public String getCode() {
@@ -31,8 +23,7 @@ public class OllirExprResult {
     @Override
     public String toString() {
         return "OllirNodeResult{" +
-                "computation='" + computation + '\'' +
-                ", code='" + code + '\'' +
+                "code='" + code + '\'' +
                 '}';
     }
 }
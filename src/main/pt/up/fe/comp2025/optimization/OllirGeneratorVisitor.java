@@ -5,15 +5,18 @@ import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static pt.up.fe.comp2025.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are not expressions.
+ * <p>
+ * The code of the whole compilation unit is written to a single buffer, shared with the
+ * {@link OllirExprGeneratorVisitor}, in the order it appears in the output. Visiting the program returns its contents.
  */
 public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
@@ -25,19 +28,34 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     private final String R_BRACKET = "}\n";
     private final String COMMA = ", ";
 
-    private final SymbolTable table;
+    private final JmmSymbolTable table;
 
     private final TypeUtils types;
     private final OptUtils ollirTypes;
 
+    // Code of the whole compilation unit
+    private final StringBuilder ollirCode;
 
     private final OllirExprGeneratorVisitor exprVisitor;
 
+    // Conditions of if and while jump directly on comparisons instead of computing a boolean
+    private final boolean fuseBranches;
+
+    // While loops test their condition at the end of the body
+    private final boolean rotateLoops;
+
     public OllirGeneratorVisitor(SymbolTable table) {
-        this.table = table;
+        this(table, false, false);
+    }
+
+    public OllirGeneratorVisitor(SymbolTable table, boolean fuseBranches, boolean rotateLoops) {
+        this.table = (JmmSymbolTable) table;
         this.types = new TypeUtils(table);
         this.ollirTypes = new OptUtils(types);
-        exprVisitor = new OllirExprGeneratorVisitor(table);
+        this.fuseBranches = fuseBranches;
+        this.rotateLoops = rotateLoops;
+        this.ollirCode = new StringBuilder();
+        exprVisitor = new OllirExprGeneratorVisitor(table, ollirCode);
     }
 
 
@@ -65,70 +83,169 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
     private String visitWhileStmt(JmmNode jmmNode, Void unused) {
-        StringBuilder code = new StringBuilder();
+        if (rotateLoops) {
+            return visitRotatedWhileStmt(jmmNode);
+        }
 
         String auxWhile = ollirTypes.nextTemp("while");
 
-        code.append(auxWhile).append(":");
-        code.append(NL);
+        ollirCode.append(auxWhile).append(":");
+        ollirCode.append(NL);
+
+        String auxEndif;
+        if (fuseBranches) {
+            auxEndif = ollirTypes.nextTemp("endif");
+            generateConditionJump(jmmNode.getChild(0).getChild(0), false, auxEndif);
+        } else {
+            OllirExprResult exprResult = exprVisitor.visit(jmmNode.getChild(0).getChild(0), unused);
+            ollirCode.append(NL);
+
+            ollirCode.append("if").append(SPACE).append("(");
+            ollirCode.append("!.bool ").append(exprResult.getCode());
+            ollirCode.append(")");
+            ollirCode.append(" goto ");
+            auxEndif = ollirTypes.nextTemp("endif");
+
+            ollirCode.append(auxEndif).append(END_STMT);
+        }
+        ollirCode.append(NL);
 
-        OllirExprResult exprResult = exprVisitor.visit(jmmNode.getChild(0).getChild(0), unused);
-        code.append(exprResult.getComputation());
-        code.append(NL);
+        visit(jmmNode.getChild(0).getChildren().getLast(), unused);
 
-        code.append("if").append(SPACE).append("(");
-        code.append("!.bool ").append(exprResult.getCode());
-        code.append(")");
-        code.append(" goto ");
+        ollirCode.append(NL);
+        ollirCode.append("goto ").append(auxWhile).append(END_STMT);
+        ollirCode.append(NL);
+        ollirCode.append(auxEndif).append(":");
+
+        return "";
+    }
+
+    /**
+     * Generates a while loop that tests its condition once before the loop, to skip it, and then at the end of the
+     * body, to jump back to its start. Each iteration only runs one branch, instead of a branch and a goto.
+     */
+    private String visitRotatedWhileStmt(JmmNode jmmNode) {
+        JmmNode cond = jmmNode.getChild(0).getChild(0);
+        String auxWhile = ollirTypes.nextTemp("while");
         String auxEndif = ollirTypes.nextTemp("endif");
 
-        code.append(auxEndif).append(END_STMT);
-        code.append(NL);
+        generateBranch(cond, false, auxEndif);
+        ollirCode.append(NL);
 
-        var whileResult = visit(jmmNode.getChild(0).getChildren().getLast(), unused);
-        code.append(whileResult);
+        ollirCode.append(auxWhile).append(":").append(NL);
+        visit(jmmNode.getChild(0).getChildren().getLast());
+        ollirCode.append(NL);
 
-        code.append(NL);
-        code.append("goto ").append(auxWhile).append(END_STMT);
-        code.append(NL);
-        code.append(auxEndif).append(":");
+        generateBranch(cond, true, auxWhile);
+        ollirCode.append(auxEndif).append(":");
 
-        return code.toString();
+        return "";
+    }
+
+    /**
+     * Jumps to the label when the condition evaluates to jumpIf, with {@link #generateConditionJump} when branches are
+     * fused and on the boolean value of the condition otherwise.
+     */
+    private void generateBranch(JmmNode cond, boolean jumpIf, String label) {
+        if (fuseBranches) {
+            generateConditionJump(cond, jumpIf, label);
+            return;
+        }
+
+        OllirExprResult exprResult = exprVisitor.visit(cond);
+        ollirCode.append("if (").append(jumpIf ? "" : "!.bool ").append(exprResult.getCode()).append(") goto ")
+                .append(label).append(END_STMT);
     }
 
     private String visitIfStmt(JmmNode jmmNode, Void unused) {
-        StringBuilder code = new StringBuilder();
-        OllirExprResult exprResult = exprVisitor.visit(jmmNode.getChild(0).getChild(0), unused);
-        code.append(exprResult.getComputation().toString());
-        code.append("if");
-        code.append(SPACE);
-        code.append("(");
-        code.append(exprResult.getCode());
-        code.append(")");
-        code.append(" goto ");
-        String auxThen = ollirTypes.nextTemp("then");
-        code.append(auxThen);
-        code.append(END_STMT);
-        code.append(NL);
+        String auxThen;
+        if (fuseBranches) {
+            auxThen = ollirTypes.nextTemp("then");
+            generateConditionJump(jmmNode.getChild(0).getChild(0), true, auxThen);
+        } else {
+            OllirExprResult exprResult = exprVisitor.visit(jmmNode.getChild(0).getChild(0), unused);
+            ollirCode.append("if");
+            ollirCode.append(SPACE);
+            ollirCode.append("(");
+            ollirCode.append(exprResult.getCode());
+            ollirCode.append(")");
+            ollirCode.append(" goto ");
+            auxThen = ollirTypes.nextTemp("then");
+            ollirCode.append(auxThen);
+            ollirCode.append(END_STMT);
+        }
+        ollirCode.append(NL);
 
         String auxEndif = ollirTypes.nextTemp("endif");
 
         JmmNode elseNode = jmmNode.getChild(0).getChildren().getLast();
-        var elseResult = visit(elseNode, unused);
-        code.append(elseResult);
+        visit(elseNode, unused);
+
+        ollirCode.append("goto ").append(auxEndif).append(END_STMT);
+        ollirCode.append(auxThen).append(":").append(NL);
 
         JmmNode ifNode = jmmNode.getChild(0).getChildren().get(1);
-        var ifResult = visit(ifNode, unused);
+        visit(ifNode, unused);
+
+        ollirCode.append(auxEndif).append(":").append(NL);
 
-        code.append("goto ").append(auxEndif).append(END_STMT);
-        code.append(auxThen).append(":").append(NL);
-        code.append(ifResult);
 
-        code.append(auxEndif).append(":").append(NL);
+        ollirCode.append(NL);
+        return "";
+    }
 
+    /**
+     * Generates code that jumps to the label when the condition evaluates to jumpIf, and falls through otherwise.
+     * Comparisons become a single conditional branch, and '&&' and '!' are turned into jumps, so the boolean value of
+     * the condition is only computed for the other expressions.
+     */
+    private void generateConditionJump(JmmNode cond, boolean jumpIf, String label) {
+        switch (cond.getKind()) {
+            case "ParenthesesExpr" -> {
+                generateConditionJump(cond.getChild(0), jumpIf, label);
+                return;
+            }
+            case "NegExpr" -> {
+                generateConditionJump(cond.getChild(0), !jumpIf, label);
+                return;
+            }
+        }
 
-        code.append(NL);
-        return code.toString();
+        String op = BINARY_EXPR.check(cond) ? cond.get("op") : "";
+
+        if (op.equals("&&")) {
+            if (!jumpIf) {
+                // Either operand being false is enough
+                generateConditionJump(cond.getChild(0), false, label);
+                generateConditionJump(cond.getChild(1), false, label);
+            } else {
+                String auxFalse = ollirTypes.nextTemp("and_false");
+                generateConditionJump(cond.getChild(0), false, auxFalse);
+                generateConditionJump(cond.getChild(1), true, label);
+                ollirCode.append(auxFalse).append(":").append(NL);
+            }
+            return;
+        }
+
+        if (List.of("<", ">", "<=", ">=").contains(op)) {
+            var lhs = exprVisitor.visit(cond.getChild(0));
+            var rhs = exprVisitor.visit(cond.getChild(1));
+
+            String branchOp = jumpIf ? op : switch (op) {
+                case "<" -> ">=";
+                case ">" -> "<=";
+                case "<=" -> ">";
+                default -> "<";
+            };
+
+            ollirCode.append("if (").append(lhs.getCode()).append(SPACE).append(branchOp).append(".bool").append(SPACE)
+                    .append(rhs.getCode()).append(") goto ").append(label).append(END_STMT);
+            return;
+        }
+
+        OllirExprResult exprResult = exprVisitor.visit(cond);
+        ollirCode.append("if (").append(jumpIf ? "" : "!.bool ").append(exprResult.getCode()).append(") goto ")
+                .append(label).append(END_STMT);
     }
 
     private String visitImportStmt(JmmNode jmmNode, Void unused) {
@@ -138,12 +255,11 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
                 .replace("]", "")
                 .replace(", ", ".");
 
-        return "import " + pck + ";\n";
+        ollirCode.append("import ").append(pck).append(";\n");
+        return "";
     }
 
     private String visitAssignStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
         var left = node.getChild(0);
         var right = node.getChild(1);
 
@@ -161,21 +277,9 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         } else {
             methodName = null;
         }
-        boolean isLeftField;
-        String tempLeftName = leftName;
+        boolean isLeftField = table.isField(methodName, leftName);
 
-        if (methodName != null) {
 
-            isLeftField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(tempLeftName)) && table.getParameters(methodName).stream().noneMatch(o -> o.getName().equals(tempLeftName)) && table.getLocalVariables(methodName).stream().noneMatch(o -> o.getName().equals(tempLeftName));
-        }
-        else {
-            isLeftField = table.getFields().stream()
-                    .anyMatch(f -> f.getName().equals(tempLeftName));
-        }
-
-
-        StringBuilder lhsComputation = new StringBuilder();
         String varCode = "";
 
         if (leftName.equals("String")) {
@@ -187,11 +291,9 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
             if (isLeftField) {
                 var lhs = exprVisitor.visit(left);
-                lhsComputation.append(lhs.getComputation());
                 varCode = lhs.getCode();
             } else {
                 var leftIndex = exprVisitor.visit(indexNode);
-                lhsComputation.append(leftIndex.getComputation());
 
                 varCode = leftName + "[" + leftIndex.getCode() + "]" + typeString;
             }
@@ -202,43 +304,34 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         var rhs = exprVisitor.visit(right);
         String rhsCode = rhs.getCode();
 
-        code.append(lhsComputation);
-        code.append(rhs.getComputation());
-
         if (isLeftField && !left.getKind().equals("ArrayAccess")) {
-            code.append("putfield(this").append(COMMA)
+            ollirCode.append("putfield(this").append(COMMA)
                     .append(leftName).append(typeString).append(COMMA)
                     .append(rhsCode).append(").V;\n");
         } else {
-            code.append(varCode).append(SPACE)
+            ollirCode.append(varCode).append(SPACE)
                     .append(ASSIGN).append(typeString).append(SPACE)
-                    .append(rhsCode).append(END_STMT);;
+                    .append(rhsCode).append(END_STMT);
         }
 
-        return code.toString();
+        return "";
     }
 
     private String visitExpr(JmmNode jmmNode, Void unused) {
-        String code = "";
         for (JmmNode child : jmmNode.getChildren()) {
-            code = visit(child, unused);
+            visit(child, unused);
         }
-        return code;
+        return "";
     }
 
     private String visitCallMethod(JmmNode jmmNode, Void unused) {
-        var exprResult = exprVisitor.visit(jmmNode);
-
-        StringBuilder code = new StringBuilder();
-        code.append(exprResult.getComputation());
-
-        return code.toString();
+        exprVisitor.visit(jmmNode);
+        return "";
     }
 
     private String visitObjectMethod(JmmNode jmmNode, Void unused) {
         String methodName = jmmNode.get("suffix");
         String varName = jmmNode.get("var");
-        StringBuilder code = new StringBuilder();
 
         List<OllirExprResult> argResults = new ArrayList<>();
 
@@ -246,29 +339,28 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             for (JmmNode child : jmmNode.getChildren()) {
                 OllirExprResult result = exprVisitor.visit(child);
                 argResults.add(result);
-                code.append(result.getComputation());
             }
         }
 
         if(varName.equals("this")) {
             varName += ".";
             varName += table.getClassName();
-            code.append("invokevirtual(").append(varName);
+            ollirCode.append("invokevirtual(").append(varName);
         } else {
             Type varType = types.getVarType(varName);
             if (varType != null) {
-                code.append("invokevirtual(").append(varName).append(".").append(varType.getName());
+                ollirCode.append("invokevirtual(").append(varName).append(".").append(varType.getName());
             } else {
-                code.append("invokestatic(").append(varName);
+                ollirCode.append("invokestatic(").append(varName);
             }
         }
 
-        code.append(COMMA).append("\"").append(methodName).append("\"");
+        ollirCode.append(COMMA).append("\"").append(methodName).append("\"");
 
         if(!argResults.isEmpty()) {
             for (OllirExprResult result : argResults) {
-                code.append(COMMA);
-                code.append(result.getCode());
+                ollirCode.append(COMMA);
+                ollirCode.append(result.getCode());
             }
         }
 
@@ -283,40 +375,36 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             ollirReturnType = ".V";
         }
 
-        code.append(")").append(ollirReturnType).append(END_STMT);
-        code.append(NL);
+        ollirCode.append(")").append(ollirReturnType).append(END_STMT);
+        ollirCode.append(NL);
 
-        return code.toString();
+        return "";
     }
 
     private String visitReturn(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
         var expr = node.getNumChildren() > 0 ? exprVisitor.visit(node.getChild(0)) : OllirExprResult.EMPTY;
 
-        code.append(expr.getComputation());
-        code.append("ret");
-        code.append(ollirTypes.toOllirType(new Type(node.getParent().getChild(0).get("name"), false)));
-        code.append(SPACE);
+        ollirCode.append("ret");
+        ollirCode.append(ollirTypes.toOllirType(new Type(node.getParent().getChild(0).get("name"), false)));
+        ollirCode.append(SPACE);
 
-        code.append(expr.getCode());
+        ollirCode.append(expr.getCode());
 
-        code.append(END_STMT);
+        ollirCode.append(END_STMT);
 
-        return code.toString();
+        return "";
     }
 
     private String visitParams(JmmNode node, Void unused) {
         if(node.getChildren().isEmpty()) {
             return "";
         }
-        StringBuilder code = new StringBuilder();
         for (JmmNode child : node.getChild(0).getChildren()) {
-            code.append(visitParam(child, unused));
+            ollirCode.append(visitParam(child, unused));
             if(node.getChild(0).getChildren().getLast().equals(child)) break;
-            code.append(COMMA);
+            ollirCode.append(COMMA);
         }
-        return code.toString();
+        return "";
     }
 
     private String visitParam(JmmNode node, Void unused) {
@@ -340,97 +428,93 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     private String visitMethodDecl(JmmNode node, Void unused) {
 
-        StringBuilder code = new StringBuilder(".method ");
+        ollirCode.append(".method ");
         boolean isPublic = node.getBoolean("isPublic", false);
         boolean isMain = node.get("name").equals("main");
 
         if (isPublic) {
-            code.append("public ");
+            ollirCode.append("public ");
         }
 
         if (isMain) {
-            code.append("static ");
+            ollirCode.append("static ");
         }
 
         if(hasVarArgs(node.getChild(1))) {
-            code.append("varargs ");
+            ollirCode.append("varargs ");
         }
 
         // name
         var name = node.get("name");
-        code.append(name);
+        ollirCode.append(name);
         this.types.setCurrentMethod(name);
         this.exprVisitor.setTypesCurrentMethod(name);
 
         // params
-        var paramsCode = visit(node.getChild(1), unused);
-
-        code.append("(" + paramsCode + ")");
+        ollirCode.append("(");
+        visit(node.getChild(1), unused);
+        ollirCode.append(")");
 
         // type
         Type type = TypeUtils.convertType(node.getChild(0));
 
         var retType = ollirTypes.toOllirType(type);
-        code.append(retType);
-        code.append(L_BRACKET);
+        ollirCode.append(retType);
+        ollirCode.append(L_BRACKET);
 
 
         // rest of its children stmts
-        var stmtsCode = node.getChildren(STMT).stream()
-                .map(this::visit)
-                .collect(Collectors.joining("\n   ", "   ", ""));
+        var stmts = node.getChildren(STMT);
+        for (int i = 0; i < stmts.size(); i++) {
+            ollirCode.append(i == 0 ? "   " : "\n   ");
+            visit(stmts.get(i));
+        }
 
-        code.append(stmtsCode);
         if (retType.equals(".V")) {
-            code.append("ret.V;");
+            ollirCode.append("ret.V;");
         }
-        code.append(R_BRACKET);
-        code.append(NL);
+        ollirCode.append(R_BRACKET);
+        ollirCode.append(NL);
 
-        return code.toString();
+        return "";
     }
 
 
     private String visitClass(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
-        code.append(NL);
-        code.append(table.getClassName());
+        ollirCode.append(NL);
+        ollirCode.append(table.getClassName());
         if(!node.getChildren("ExtendsClause").isEmpty()) {
             JmmNode extendsClause = node.getChildren("ExtendsClause").getFirst();
             String superClassName = extendsClause.getChildren().getFirst().get("superclass");
-            code.append(SPACE).append("extends ").append(superClassName);
+            ollirCode.append(SPACE).append("extends ").append(superClassName);
         }
-        code.append(L_BRACKET);
-        code.append(NL);
-        code.append(NL);
+        ollirCode.append(L_BRACKET);
+        ollirCode.append(NL);
+        ollirCode.append(NL);
 
 
         for (var child : node.getChildren(VAR_DECL)) {
-            var result = visit(child, unused);
-            code.append(result);
+            visit(child, unused);
         }
 
-        code.append(buildConstructor());
-        code.append(NL);
+        ollirCode.append(buildConstructor());
+        ollirCode.append(NL);
 
         for (var child : node.getChildren(METHOD_DECL)) {
-            var result = visit(child);
-            code.append(result);
+            visit(child);
         }
 
-        code.append(R_BRACKET);
+        ollirCode.append(R_BRACKET);
 
-        return code.toString();
+        return "";
     }
 
     private String visitVarDecl(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-        code.append(".field public " );
-        code.append(node.get("name"));
-        code.append(ollirTypes.toOllirType(node.getChild(0)));
-        code.append(END_STMT);
-        return code.toString();
+        ollirCode.append(".field public " );
+        ollirCode.append(node.get("name"));
+        ollirCode.append(ollirTypes.toOllirType(node.getChild(0)));
+        ollirCode.append(END_STMT);
+        return "";
     }
 
     private String buildConstructor() {
@@ -444,26 +528,25 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
 
     private String visitProgram(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-        node.getChildren().stream()
-                .map(this::visit)
-                .forEach(code::append);
+        ollirCode.setLength(0);
 
-        return code.toString();
+        for (var child : node.getChildren()) {
+            visit(child);
+        }
+
+        return ollirCode.toString();
     }
 
     private String visitStmtScope(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-        code.append(visit(node.getChild(0)));
-        return code.toString();
+        visit(node.getChild(0));
+        return "";
     }
 
     private String visitScope(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
         for(JmmNode child : node.getChildren()) {
-            code.append(visit(child, unused));
+            visit(child, unused);
         }
-        return code.toString();
+        return "";
     }
 
     /**
@@ -1,5 +1,10 @@
 package pt.up.fe.comp2025.optimization;
 
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2025.ast.TypeUtils;
@@ -65,5 +70,48 @@ public class OptUtils {
         return type;
     }
 
+    /**
+     * Builds the CFG of the method, discarding the edges of a previous build. {@link Method#buildCFG()} only adds
+     * edges, so passes that change the instructions call this instead.
+     */
+    public static void buildCFG(Method method) {
+        for (var instruction : method.getInstructions()) {
+            // The begin and end nodes are only reachable through the edges of the instructions
+            for (var node : instruction.getPredecessors()) {
+                if (!(node instanceof Instruction)) {
+                    node.getSuccessors().clear();
+                }
+            }
+            for (var node : instruction.getSuccessors()) {
+                if (!(node instanceof Instruction)) {
+                    node.getPredecessors().clear();
+                }
+            }
+
+            instruction.getSuccessors().clear();
+            instruction.getPredecessors().clear();
+        }
+
+        method.buildCFG();
+    }
+
+    /**
+     * Makes the labels of an instruction point to another one, before the first is removed or replaced.
+     */
+    public static void moveLabels(Method method, Instruction from, Instruction to) {
+        for (var entry : method.getLabels().entrySet()) {
+            if (entry.getValue() == from) {
+                entry.setValue(to);
+            }
+        }
+    }
+
+    /**
+     * @return true if the instruction jumps or returns, so the next one starts a basic block
+     */
+    public static boolean endsBlock(Instruction instruction) {
+        return instruction instanceof GotoInstruction || instruction instanceof CondBranchInstruction
+                || instruction instanceof ReturnInstruction;
+    }
 
 }
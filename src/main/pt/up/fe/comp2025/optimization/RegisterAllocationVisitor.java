@@ -3,482 +3,395 @@ package pt.up.fe.comp2025.optimization;
 import org.specs.comp.ollir.*;
 import org.specs.comp.ollir.inst.*;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.ConfigOptions;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 
 
 public class RegisterAllocationVisitor {
     OllirResult ollirResult;
     Integer numRegisters;
-    Map<Instruction, Set<Element>> usedVars = new HashMap<>();
-    Map<Instruction, Set<Element>> definedVars = new HashMap<>();
-    Map<Instruction, Set<Element>> liveIn = new HashMap<>();
-    Map<Instruction, Set<Element>> liveOut = new HashMap<>();
+    boolean linearScan;
+    Liveness liveness;
 
     public RegisterAllocationVisitor(OllirResult ollirResult, String registerAllocation) {
         this.ollirResult = ollirResult;
         this.numRegisters = Integer.parseInt(registerAllocation);
+        this.linearScan = ConfigOptions.getLinearScan(ollirResult.getConfig());
     }
 
     public void optimizeRegisterAllocation() {
         for (var method: ollirResult.getOllirClass().getMethods()) {
-            method.buildCFG();
+            OptUtils.buildCFG(method);
             if (method.getInstructions().getFirst().getSuccessors() != null) {
-                initializeVariables(method);
-                livenessAnalysis(method);
-                Map<Element, Integer> colorMap = buildInferenceGraph(method);
-                if(colorMap != null) {
-                    // iterate over varTable
-                    for(Map.Entry<String, Descriptor> var : method.getVarTable().entrySet()) {
-                        // iterate over colorMap and check if var is in it
-                        for (Map.Entry<Element, Integer> entry : colorMap.entrySet()) {
-                            Operand varElement = (Operand) entry.getKey();
-                            int register = entry.getValue();
-
-                            if (varElement.getName().equals(var.getKey())) {
-                                Descriptor newDescriptor = var.getValue();
-                                newDescriptor.setVirtualReg(register);
-
-                                if(checkIfIsField(ollirResult.getOllirClass(), varElement)) {
-                                    newDescriptor.setScope(VarScope.FIELD);
-                                }
-                                else if(checkIfIsParam(method, varElement)) {
-                                    newDescriptor.setScope(VarScope.PARAMETER);
-                                }
-                                else {
-                                    newDescriptor.setScope(VarScope.LOCAL);
-                                }
-                                method.getVarTable().put(varElement.getName(), newDescriptor);
-                            }
-
-                        }
-                    }
+                var accesses = new VariableAccesses(method);
+                liveness = new Liveness(method, accesses.getUsedVars(), accesses.getDefinedVars());
+
+                boolean[] allocatable = getAllocatable(method);
+                // Registers of 'this' and the parameters
+                int firstLocal = (method.isStaticMethod() ? 0 : 1) + method.getParams().size();
+                // With '-r=0' there is no limit, and the lowest registers are always chosen
+                int k = numRegisters > 0 ? numRegisters : liveness.getNumVariables();
+
+                int[] colors;
+                if (linearScan) {
+                    colors = new LinearScanAllocator(liveness, method.getInstructions())
+                            .allocate(allocatable, firstLocal, k);
+                } else {
+                    InterferenceGraph graph = InterferenceGraph.build(method, liveness);
+                    colors = coalesceAndColor(graph, k, allocatable, firstLocal, getSpillCosts(method));
                 }
-            }
-        }
-    }
 
-    public boolean checkIfIsParam(Method method, Operand operand) {
-        for(Element element : method.getParams()) {
-            Operand param = (Operand) element;
-            if(param.getName().equals(operand.getName())) {
-                return true;
+                assignRegisters(method, colors);
+                reportRegisters(method, colors, firstLocal);
             }
         }
-        return false;
     }
 
-    public boolean checkIfIsField(ClassUnit classUnit, Operand operand) {
-        for(Field field : classUnit.getFields()) {
-            field.getFieldName();
-            if(field.getFieldName().equals(operand.getName())) {
-                return true;
+    private void assignRegisters(Method method, int[] colors) {
+        for (int i = 0; i < colors.length; i++) {
+            if (colors[i] >= 0) {
+                method.getVarTable().get(liveness.getVariable(i)).setVirtualReg(colors[i]);
             }
         }
-        return false;
     }
 
-    private void initializeVariables(Method method) {
-        for (Instruction instruction : method.getInstructions()) {
-            usedVars.put(instruction, new HashSet<>());
-            definedVars.put(instruction, new HashSet<>());
-            liveIn.put(instruction, new HashSet<>());
-            liveOut.put(instruction, new HashSet<>());
-            trackDefinedVariables(instruction);
-            trackUsedVariables(instruction, null);
+    /**
+     * Reports the number of JVM locals used by the method, against the number of registers requested with '-r'.
+     * A warning is added when the variables did not fit in the requested registers.
+     */
+    private void reportRegisters(Method method, int[] colors, int firstLocal) {
+        int locals = firstLocal;
+        for (int color : colors) {
+            locals = Math.max(locals, color + 1);
         }
-    }
-
-    private void livenessAnalysis(Method method) {
-
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            for (Instruction instruction : method.getInstructions().reversed()) {
-                Set<Element> auxIn = new HashSet<>(liveIn.get(instruction));
-                Set<Element> auxOut = new HashSet<>(liveOut.get(instruction));
-
-                for (Node successor : instruction.getSuccessors()) {
-                    if (!successor.getClass().equals(Node.class)) {
-                        liveOut.get(instruction).addAll(liveIn.get(successor.toInstruction()));
-                    }
-                }
-
-                Set<Element> tempOut = new HashSet<>(liveOut.get(instruction));
-
-                for (Element defined : definedVars.get(instruction)) {
-                    tempOut.removeIf(elemTempOut -> defined.toString().equals(elemTempOut.toString()));
-                }
-
-                liveIn.get(instruction).addAll(tempOut);
-                liveIn.get(instruction).addAll(usedVars.get(instruction));
-
-                if (!((auxIn.equals(liveIn.get(instruction))) && auxOut.equals(liveOut.get(instruction)))) {
-                    changed = true;
-                }
-            }
-        }
-    }
 
-    private void trackDefinedVariables(Instruction instruction) {
-        if (instruction.getInstType().equals(InstructionType.ASSIGN)) {
-            AssignInstruction assign = (AssignInstruction) instruction;
-            definedVars.get(instruction).add(assign.getDest());
+        int used = locals - firstLocal;
+        var message = "Register allocation of " + method.getMethodName() + ": " + locals + " locals, " + used
+                + " for variables";
+        int spilled = numRegisters > 0 ? used - numRegisters : 0;
+        if (numRegisters > 0) {
+            message += " (k = " + numRegisters + (spilled > 0 ? ", " + spilled + " spilled)" : ")");
         }
-        else if (instruction.getInstType().equals(InstructionType.PUTFIELD)) {
-            PutFieldInstruction putField = (PutFieldInstruction) instruction;
-            definedVars.get(instruction).add(putField.getField());
-        }
-    }
-
-    private void trackUsedVariables(Instruction instruction, AssignInstruction assignInstruction) {
-        switch (instruction.getInstType()) {
-            case RETURN:
-                usedInReturns((ReturnInstruction) instruction, assignInstruction);
-                break;
-
-            case ASSIGN:
-                usedInAssigns((AssignInstruction) instruction);
-                break;
-
-            case NOPER:
-                usedInNopers((SingleOpInstruction) instruction, assignInstruction);
-                break;
-
-            case BINARYOPER:
-                usedInBinaryOpers((BinaryOpInstruction) instruction, assignInstruction);
-                break;
-
-            case UNARYOPER:
-                usedInUnaryOpers((UnaryOpInstruction) instruction, assignInstruction);
-                break;
-
-            case PUTFIELD:
-                usedInPutFields((PutFieldInstruction) instruction, assignInstruction);
-                break;
 
-            case GETFIELD:
-                usedInGetFields((GetFieldInstruction) instruction, assignInstruction);
-                break;
-
-            case CALL:
-                usedInCalls((CallInstruction) instruction, assignInstruction);
-                break;
-
-            case BRANCH:
-                usedInBranches((CondBranchInstruction) instruction, assignInstruction);
-                break;
+        ollirResult.getReports().add(Report.newLog(Stage.OPTIMIZATION, -1, -1, message, null));
 
+        if (spilled > 0) {
+            var warning = "Method " + method.getMethodName() + " needs " + used + " registers for its variables, "
+                    + numRegisters + " were requested with '-r'";
+            ollirResult.getReports().add(Report.newWarn(Stage.OPTIMIZATION, -1, -1, warning, null));
         }
     }
 
-    private void usedInReturns(ReturnInstruction instruction, AssignInstruction assignInstruction) {
-        if (assignInstruction != null) {
-            if (instruction.hasReturnValue() && instruction.getOperand().isPresent()) {
-                usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getOperand().get());
-            }
-        } else {
-            if (instruction.hasReturnValue() && instruction.getOperand().isPresent()) {
-                usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getOperand().get());
+    public boolean checkIfIsParam(Method method, String name) {
+        for(Element element : method.getParams()) {
+            Operand param = (Operand) element;
+            if(param.getName().equals(name)) {
+                return true;
             }
         }
+        return false;
     }
 
-    private void usedInAssigns(AssignInstruction instruction) {
-        trackUsedVariables(instruction.getRhs(), instruction);
+    /**
+     * 'this' and the parameters keep the registers where they are passed, only the other variables are colored.
+     */
+    private boolean isAllocatable(Method method, String name) {
+        return !name.equals("this") && !checkIfIsParam(method, name);
     }
 
-    private void usedInNopers(SingleOpInstruction instruction, AssignInstruction assignInstruction) {
-
-        if (assignInstruction != null) {
-            if (!instruction.getSingleOperand().isLiteral()) {
-                usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getSingleOperand());
-            }
-        } else {
-            if (!instruction.getSingleOperand().isLiteral()) {
-                usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getSingleOperand());
-            }
+    private boolean[] getAllocatable(Method method) {
+        boolean[] allocatable = new boolean[liveness.getNumVariables()];
+        for (int i = 0; i < allocatable.length; i++) {
+            allocatable[i] = isAllocatable(method, liveness.getVariable(i));
         }
+        return allocatable;
     }
 
-    private void usedInBinaryOpers(BinaryOpInstruction instruction, AssignInstruction assignInstruction) {
+    /**
+     * Estimates the cost of moving each variable out of the first k registers: each read or write counts 10 to the
+     * power of the loop depth of the instruction.
+     * <p>
+     * Loops are found from the branches back to an earlier instruction, which is how while loops are generated.
+     */
+    private double[] getSpillCosts(Method method) {
+        var instructions = method.getInstructions();
+        var indexes = new IdentityHashMap<Instruction, Integer>();
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+        }
 
-        if (assignInstruction != null) {
-            if (!instruction.getOperands().isEmpty()) {
-                for (Element operand : instruction.getOperands()) {
-                    if (operand.isLiteral()) {
-                        continue;
-                    }
-                    usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(operand);
-                }
-            }
-        } else {
-            if (!instruction.getOperands().isEmpty()) {
-                for (Element operand : instruction.getOperands()) {
-                    if (operand.isLiteral()) {
-                        continue;
-                    }
-                    usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(operand);
+        // Each back edge from i to j increases the depth of the instructions between j and i
+        int[] depthChanges = new int[instructions.size() + 1];
+        for (int i = 0; i < instructions.size(); i++) {
+            for (var successor : instructions.get(i).getSuccessors()) {
+                Integer j = successor instanceof Instruction instruction ? indexes.get(instruction) : null;
+                if (j != null && j <= i) {
+                    depthChanges[j]++;
+                    depthChanges[i + 1]--;
                 }
             }
         }
-    }
 
-    private void usedInUnaryOpers(UnaryOpInstruction instruction, AssignInstruction assignInstruction) {
-
-        if (assignInstruction != null) {
-            if (!instruction.getOperand().isLiteral()) {
-                usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getOperand());
-            }
-        } else {
-            if (!instruction.getOperand().isLiteral()) {
-                usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getOperand());
+        double[] costs = new double[liveness.getNumVariables()];
+        int depth = 0;
+        for (int i = 0; i < instructions.size(); i++) {
+            depth += depthChanges[i];
+            double weight = Math.pow(10, Math.min(depth, 8));
+
+            var instruction = instructions.get(i);
+            var accessed = (BitSet) liveness.getUsed(instruction).clone();
+            accessed.or(liveness.getDefined(instruction));
+            for (int v = accessed.nextSetBit(0); v >= 0; v = accessed.nextSetBit(v + 1)) {
+                costs[v] += weight;
             }
         }
-    }
-
-    private void usedInPutFields(PutFieldInstruction instruction, AssignInstruction assignInstruction) {
 
-        if (assignInstruction != null) {
-            if (!instruction.getValue().isLiteral()) {
-                usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getValue());
-            }
-        } else {
-            if (!instruction.getValue().isLiteral()) {
-                usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getValue());
-            }
-        }
+        return costs;
     }
 
-    private void usedInGetFields(GetFieldInstruction instruction, AssignInstruction assignInstruction) {
-
-        if (assignInstruction != null) {
-            usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getField());
-        } else {
-            usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getField());
-        }
-    }
+    /**
+     * Coalesces the variables related by copies and colors the resulting graph. Coalesced variables share a register,
+     * so their copies become moves from a register to itself, which the backend does not generate.
+     */
+    private int[] coalesceAndColor(InterferenceGraph graph, int k, boolean[] allocatable, int firstLocal,
+                                   double[] costs) {
+        int size = graph.size();
+        int[] aliases = coalesce(graph, k, allocatable);
+
+        // Graph of the representatives, with the edges and costs of every variable merged into them
+        var merged = new InterferenceGraph(size);
+        boolean[] representatives = new boolean[size];
+        double[] mergedCosts = new double[size];
+        for (int i = 0; i < size; i++) {
+            if (!allocatable[i]) {
+                continue;
+            }
 
-    private void usedInCalls(CallInstruction instruction, AssignInstruction assignInstruction) {
+            representatives[i] = aliases[i] == i;
+            mergedCosts[aliases[i]] += costs[i];
 
-        if (assignInstruction != null) {
-            if (!instruction.getArguments().isEmpty()) {
-                for (Element argument : instruction.getArguments()) {
-                    if (argument.isLiteral()) {
-                        continue;
-                    }
-                    usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(argument);
+            int[] neighbors = graph.getNeighbors(i);
+            for (int j = 0; j < graph.getDegree(i); j++) {
+                if (allocatable[neighbors[j]]) {
+                    merged.addEdge(aliases[i], aliases[neighbors[j]]);
                 }
             }
-        } else {
-            if (!instruction.getArguments().isEmpty()) {
-                for (Element argument : instruction.getArguments()) {
-                    if (argument.isLiteral()) {
-                        continue;
-                    }
-                    usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(argument);
-                }
+        }
+
+        int[] colors = colorGraph(merged, k, representatives, firstLocal, mergedCosts);
+        for (int i = 0; i < size; i++) {
+            if (allocatable[i]) {
+                colors[i] = colors[aliases[i]];
             }
         }
+
+        return colors;
     }
 
-    private void usedInBranches(CondBranchInstruction instruction, AssignInstruction assignInstruction) {
-        if (assignInstruction != null) {
-            if (!instruction.getOperands().isEmpty()) {
-                for (Element operand : instruction.getOperands()) {
-                    if (operand.isLiteral()) {
-                        continue;
-                    }
-                    usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(operand);
-                }
+    /**
+     * Conservative coalescing of the copies between allocatable variables that do not interfere. Two variables are
+     * merged only if the merged node has less than k neighbours with k or more neighbours (Briggs), or if every
+     * neighbour of one of them already interferes with the other or has less than k neighbours (George). Either way,
+     * a graph that could be colored with k colors still can.
+     *
+     * @return the representative of each variable, which is the variable itself if it was not coalesced
+     */
+    private int[] coalesce(InterferenceGraph graph, int k, boolean[] allocatable) {
+        int size = graph.size();
+
+        int[] aliases = new int[size];
+        BitSet[] adjacent = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            aliases[i] = i;
+            adjacent[i] = new BitSet();
+
+            if (!allocatable[i]) {
+                continue;
             }
-        }
-        else {
-            if (!instruction.getOperands().isEmpty()) {
-                for (Element operand : instruction.getOperands()) {
-                    if (operand.isLiteral()) {
-                        continue;
-                    }
-                    usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(operand);
+
+            int[] neighbors = graph.getNeighbors(i);
+            for (int j = 0; j < graph.getDegree(i); j++) {
+                if (allocatable[neighbors[j]]) {
+                    adjacent[i].set(neighbors[j]);
                 }
             }
         }
-    }
 
-    private void addToInterferenceGraph(Map<Element, Set<Element>> interferenceGraph, Element element, Element element2) {
-        boolean found = false;
+        // Merging two nodes can make other copies safe to coalesce, so repeat until nothing changes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
 
-        for (Map.Entry<Element, Set<Element>> entry : interferenceGraph.entrySet()) {
-            Element existingElement = entry.getKey();
+            for (int[] move : graph.getMoves()) {
+                if (!allocatable[move[0]] || !allocatable[move[1]]) {
+                    continue;
+                }
 
-            if (existingElement.toString().equals(element.toString())) {
-                found = true;
+                int a = findAlias(aliases, move[0]);
+                int b = findAlias(aliases, move[1]);
+                if (a == b || adjacent[a].get(b)) {
+                    continue;
+                }
 
-                boolean isDuplicate = false;
-                for (Element existingInSet : entry.getValue()) {
-                    if (existingInSet.toString().equals(element2.toString())) {
-                        isDuplicate = true;
-                        break;
+                if (briggs(adjacent, a, b, k) || george(adjacent, a, b, k) || george(adjacent, b, a, k)) {
+                    aliases[b] = a;
+                    for (int t = adjacent[b].nextSetBit(0); t >= 0; t = adjacent[b].nextSetBit(t + 1)) {
+                        adjacent[t].clear(b);
+                        adjacent[t].set(a);
                     }
-                }
+                    adjacent[a].or(adjacent[b]);
+                    adjacent[b].clear();
 
-                if (!isDuplicate) {
-                    entry.getValue().add(element2);
+                    changed = true;
                 }
-                break;
             }
         }
 
-        if (!found) {
-            Set<Element> newSet = new HashSet<>();
-            newSet.add(element2);
-            interferenceGraph.put(element, newSet);
+        for (int i = 0; i < size; i++) {
+            aliases[i] = findAlias(aliases, i);
         }
+
+        return aliases;
     }
 
-    public boolean checkIfContainsElement(Set<Element> elements, Element element) {
-        for (Element elem : elements) {
-            if (elem.toString().equals(element.toString())) {
-                return true;
-            }
+    private static int findAlias(int[] aliases, int node) {
+        while (aliases[node] != node) {
+            node = aliases[node];
         }
-        return false;
+
+        return node;
     }
 
-    private Map<Element, Integer> buildInferenceGraph(Method method) {
-        // represents the node and the set of nodes that interfere with it aka its edges
-        Map<Element, Set<Element>> interferenceGraph = new HashMap<>();
-
-        for (Instruction instruction : method.getInstructions()) {
-            Set<Element> liveInSet = liveIn.get(instruction);
-            Set<Element> liveOutSet = liveOut.get(instruction);
-            Set<Element> definedVarsSet = definedVars.get(instruction);
-            Set<Element> combinedSet = new HashSet<>();
-            combinedSet.addAll(liveInSet);
-            combinedSet.addAll(liveOutSet);
-            combinedSet.addAll(definedVarsSet);
-
-            for (Element var : combinedSet) {
-                boolean exists = false;
-
-                for (Element existingKey : interferenceGraph.keySet()) {
-                    if (existingKey.toString().equals(var.toString())) {
-                        exists = true;
-                        break;
-                    }
-                }
+    private static boolean briggs(BitSet[] adjacent, int a, int b, int k) {
+        var neighbors = (BitSet) adjacent[a].clone();
+        neighbors.or(adjacent[b]);
 
-                if (!exists) {
-                    interferenceGraph.put(var, new HashSet<>());
-                }
+        int significant = 0;
+        for (int t = neighbors.nextSetBit(0); t >= 0; t = neighbors.nextSetBit(t + 1)) {
+            // A neighbour of both loses one neighbour when they are merged
+            int degree = adjacent[t].cardinality() - (adjacent[a].get(t) && adjacent[b].get(t) ? 1 : 0);
+            if (degree >= k) {
+                significant++;
             }
+        }
 
+        return significant < k;
+    }
 
-            for (Element element : combinedSet) {
-                for (Element element2 : combinedSet) {
-                    if (!element.toString().equals(element2.toString())) {
-                        if(!checkIfContainsElement(liveOutSet, element2) && checkIfContainsElement(liveInSet, element2) && !liveOutSet.isEmpty()) {
-                            continue;
-                        }
-                        if(!checkIfContainsElement(liveOutSet, element) && checkIfContainsElement(liveInSet, element) && !liveOutSet.isEmpty()) {
-                            continue;
-                        }
-
-                        addToInterferenceGraph(interferenceGraph, element, element2);
-                    }
-                }
+    /**
+     * @return true if every neighbour of a interferes with b or has less than k neighbours
+     */
+    private static boolean george(BitSet[] adjacent, int a, int b, int k) {
+        for (int t = adjacent[a].nextSetBit(0); t >= 0; t = adjacent[a].nextSetBit(t + 1)) {
+            if (!adjacent[t].get(b) && adjacent[t].cardinality() >= k) {
+                return false;
             }
-
         }
-        /*
-        System.out.println("-------------------------");
-
-        for (Map.Entry<Element, Set<Element>> entry : interferenceGraph.entrySet()) {
-            System.out.println("Node: " + entry.getKey() + " -> Interfering Nodes: " + entry.getValue());
-        }
-        System.out.println("-------------------------");
-        */
-        return colorGraph(interferenceGraph, numRegisters, method);
 
+        return true;
     }
 
-    private Map<Element, Integer> colorGraph(Map<Element, Set<Element>> interferenceGraph, int k, Method method) {
-        Map<Element, Set<Element>> workGraph = new HashMap<>();
-        for (Element element : interferenceGraph.keySet()) {
-            workGraph.put(element, new HashSet<>(interferenceGraph.get(element)));
+    /**
+     * Colors the graph with k colors, by repeatedly removing a node with less than k neighbours and then giving each
+     * node, in reverse order, the lowest register not used by its neighbours.
+     * <p>
+     * When every remaining node has k or more neighbours, the one with the lowest cost per neighbour is removed
+     * anyway, since its neighbours may still end up sharing colors. If no color is left for it, it is spilled to an
+     * extra register after the first k, so the allocation never fails.
+     *
+     * @return the register of each variable, or -1 for 'this' and the parameters
+     */
+    private int[] colorGraph(InterferenceGraph graph, int k, boolean[] allocatable, int firstLocal, double[] costs) {
+        int size = graph.size();
+
+        int numAllocatable = 0;
+        for (boolean isAllocatable : allocatable) {
+            if (isAllocatable) {
+                numAllocatable++;
+            }
         }
 
-        Stack<Element> stack = new Stack<>();
-        Map<Element, Integer> colorMap = new HashMap<>();
+        // Degrees only count the neighbours that still have to be colored
+        int[] degrees = new int[size];
+        Deque<Integer> lowDegree = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            if (!allocatable[i]) {
+                continue;
+            }
 
-        Set<Integer> reservedRegisters = new HashSet<>();
+            int[] neighbors = graph.getNeighbors(i);
+            for (int j = 0; j < graph.getDegree(i); j++) {
+                if (allocatable[neighbors[j]]) {
+                    degrees[i]++;
+                }
+            }
 
-        if (!method.isStaticMethod()) {
-            reservedRegisters.add(0);
+            if (degrees[i] < k) {
+                lowDegree.add(i);
+            }
         }
 
-        int paramRegisters = method.getParams().size();
-        int startReg = method.isStaticMethod() ? 0 : 1;
-        for (int i = 0; i < paramRegisters; i++) {
-            reservedRegisters.add(startReg + i);
+        boolean[] removed = new boolean[size];
+        Deque<Integer> stack = new ArrayDeque<>();
+
+        while (stack.size() < numAllocatable) {
+            int node = !lowDegree.isEmpty()
+                    ? lowDegree.poll()
+                    : selectSpillCandidate(allocatable, removed, degrees, costs);
+            removed[node] = true;
+            stack.push(node);
+
+            int[] neighbors = graph.getNeighbors(node);
+            for (int j = 0; j < graph.getDegree(node); j++) {
+                int neighbor = neighbors[j];
+                if (allocatable[neighbor] && !removed[neighbor] && degrees[neighbor]-- == k) {
+                    lowDegree.add(neighbor);
+                }
+            }
         }
 
-        while (!workGraph.isEmpty()) {
-            boolean foundNode = false;
-
-            for (Element node : workGraph.keySet()) {
-                if (workGraph.get(node).size() < k) {
-                    foundNode = true;
+        int[] colors = new int[size];
+        Arrays.fill(colors, -1);
 
-                    stack.push(node);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
 
-                    for (Element neighbor : interferenceGraph.get(node)) {
-                        if (workGraph.containsKey(neighbor)) {
-                            workGraph.get(neighbor).remove(node);
-                        }
-                    }
-                    workGraph.remove(node);
-                    break;
+            BitSet usedColors = new BitSet();
+            int[] neighbors = graph.getNeighbors(node);
+            for (int j = 0; j < graph.getDegree(node); j++) {
+                if (colors[neighbors[j]] >= 0) {
+                    usedColors.set(colors[neighbors[j]]);
                 }
             }
 
-            if (!foundNode) {
-                System.err.println("Cannot apply register allocation with " + k + " registers.");
-                return null;
-            }
+            // Past the first k registers when the node is spilled
+            colors[node] = usedColors.nextClearBit(firstLocal);
         }
 
-        while (!stack.isEmpty()) {
-            Element node = stack.pop();
+        return colors;
+    }
 
-            Set<Integer> usedColors = new HashSet<>(reservedRegisters);
+    private int selectSpillCandidate(boolean[] allocatable, boolean[] removed, int[] degrees, double[] costs) {
+        int candidate = -1;
 
-            for (Element neighbor : interferenceGraph.get(node)) {
-                if (colorMap.containsKey(neighbor)) {
-                    usedColors.add(colorMap.get(neighbor));
-                }
+        for (int i = 0; i < allocatable.length; i++) {
+            if (!allocatable[i] || removed[i]) {
+                continue;
             }
 
-            int color = 0;
-            while (usedColors.contains(color)) {
-                color++;
+            if (candidate < 0 || costs[i] * degrees[candidate] < costs[candidate] * degrees[i]) {
+                candidate = i;
             }
-
-            colorMap.put(node, color);
         }
 
-        /*
-        System.out.println("COLOR MAP: ");
-        for (Element var : colorMap.keySet()) {
-            int register = colorMap.get(var);
-            System.out.println("Variable " + var + " assigned to register " + register);
-        }
-        */
-        return colorMap;
+        return candidate;
     }
 
 }
@@ -0,0 +1,227 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.inst.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Variables read and written by each instruction of a method, with the operands of the right-hand side of an
+ * assignment counted as reads of the assignment itself.
+ */
+public class VariableAccesses {
+    private final Map<Instruction, Set<Element>> usedVars = new HashMap<>();
+    private final Map<Instruction, Set<Element>> definedVars = new HashMap<>();
+
+    public VariableAccesses(Method method) {
+        for (Instruction instruction : method.getInstructions()) {
+            usedVars.put(instruction, new HashSet<>());
+            definedVars.put(instruction, new HashSet<>());
+            trackDefinedVariables(instruction);
+            trackUsedVariables(instruction, null);
+        }
+    }
+
+    private void trackDefinedVariables(Instruction instruction) {
+        if (instruction.getInstType().equals(InstructionType.ASSIGN)) {
+            AssignInstruction assign = (AssignInstruction) instruction;
+            definedVars.get(instruction).add(assign.getDest());
+        }
+        else if (instruction.getInstType().equals(InstructionType.PUTFIELD)) {
+            PutFieldInstruction putField = (PutFieldInstruction) instruction;
+            definedVars.get(instruction).add(putField.getField());
+        }
+    }
+
+    private void trackUsedVariables(Instruction instruction, AssignInstruction assignInstruction) {
+        switch (instruction.getInstType()) {
+            case RETURN:
+                usedInReturns((ReturnInstruction) instruction, assignInstruction);
+                break;
+
+            case ASSIGN:
+                usedInAssigns((AssignInstruction) instruction);
+                break;
+
+            case NOPER:
+                usedInNopers((SingleOpInstruction) instruction, assignInstruction);
+                break;
+
+            case BINARYOPER:
+                usedInBinaryOpers((BinaryOpInstruction) instruction, assignInstruction);
+                break;
+
+            case UNARYOPER:
+                usedInUnaryOpers((UnaryOpInstruction) instruction, assignInstruction);
+                break;
+
+            case PUTFIELD:
+                usedInPutFields((PutFieldInstruction) instruction, assignInstruction);
+                break;
+
+            case GETFIELD:
+                usedInGetFields((GetFieldInstruction) instruction, assignInstruction);
+                break;
+
+            case CALL:
+                usedInCalls((CallInstruction) instruction, assignInstruction);
+                break;
+
+            case BRANCH:
+                usedInBranches((CondBranchInstruction) instruction, assignInstruction);
+                break;
+
+        }
+    }
+
+    private void usedInReturns(ReturnInstruction instruction, AssignInstruction assignInstruction) {
+        if (assignInstruction != null) {
+            if (instruction.hasReturnValue() && instruction.getOperand().isPresent()) {
+                usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getOperand().get());
+            }
+        } else {
+            if (instruction.hasReturnValue() && instruction.getOperand().isPresent()) {
+                usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getOperand().get());
+            }
+        }
+    }
+
+    private void usedInAssigns(AssignInstruction instruction) {
+        trackUsedVariables(instruction.getRhs(), instruction);
+    }
+
+    private void usedInNopers(SingleOpInstruction instruction, AssignInstruction assignInstruction) {
+
+        if (assignInstruction != null) {
+            if (!instruction.getSingleOperand().isLiteral()) {
+                usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getSingleOperand());
+            }
+        } else {
+            if (!instruction.getSingleOperand().isLiteral()) {
+                usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getSingleOperand());
+            }
+        }
+    }
+
+    private void usedInBinaryOpers(BinaryOpInstruction instruction, AssignInstruction assignInstruction) {
+
+        if (assignInstruction != null) {
+            if (!instruction.getOperands().isEmpty()) {
+                for (Element operand : instruction.getOperands()) {
+                    if (operand.isLiteral()) {
+                        continue;
+                    }
+                    usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(operand);
+                }
+            }
+        } else {
+            if (!instruction.getOperands().isEmpty()) {
+                for (Element operand : instruction.getOperands()) {
+                    if (operand.isLiteral()) {
+                        continue;
+                    }
+                    usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(operand);
+                }
+            }
+        }
+    }
+
+    private void usedInUnaryOpers(UnaryOpInstruction instruction, AssignInstruction assignInstruction) {
+
+        if (assignInstruction != null) {
+            if (!instruction.getOperand().isLiteral()) {
+                usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getOperand());
+            }
+        } else {
+            if (!instruction.getOperand().isLiteral()) {
+                usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getOperand());
+            }
+        }
+    }
+
+    private void usedInPutFields(PutFieldInstruction instruction, AssignInstruction assignInstruction) {
+
+        if (assignInstruction != null) {
+            if (!instruction.getValue().isLiteral()) {
+                usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getValue());
+            }
+        } else {
+            if (!instruction.getValue().isLiteral()) {
+                usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getValue());
+            }
+        }
+    }
+
+    private void usedInGetFields(GetFieldInstruction instruction, AssignInstruction assignInstruction) {
+
+        if (assignInstruction != null) {
+            usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(instruction.getField());
+        } else {
+            usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(instruction.getField());
+        }
+    }
+
+    private void usedInCalls(CallInstruction instruction, AssignInstruction assignInstruction) {
+
+        // The object of invokevirtual and invokespecial and the array of arraylength are read as well
+        Element caller = instruction.getCaller();
+        if (caller != null && !caller.isLiteral()) {
+            Instruction user = assignInstruction != null ? assignInstruction : instruction;
+            usedVars.computeIfAbsent(user, k -> new HashSet<>()).add(caller);
+        }
+
+        if (assignInstruction != null) {
+            if (!instruction.getArguments().isEmpty()) {
+                for (Element argument : instruction.getArguments()) {
+                    if (argument.isLiteral()) {
+                        continue;
+                    }
+                    usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(argument);
+                }
+            }
+        } else {
+            if (!instruction.getArguments().isEmpty()) {
+                for (Element argument : instruction.getArguments()) {
+                    if (argument.isLiteral()) {
+                        continue;
+                    }
+                    usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(argument);
+                }
+            }
+        }
+    }
+
+    private void usedInBranches(CondBranchInstruction instruction, AssignInstruction assignInstruction) {
+        if (assignInstruction != null) {
+            if (!instruction.getOperands().isEmpty()) {
+                for (Element operand : instruction.getOperands()) {
+                    if (operand.isLiteral()) {
+                        continue;
+                    }
+                    usedVars.computeIfAbsent(assignInstruction, k -> new HashSet<>()).add(operand);
+                }
+            }
+        }
+        else {
+            if (!instruction.getOperands().isEmpty()) {
+                for (Element operand : instruction.getOperands()) {
+                    if (operand.isLiteral()) {
+                        continue;
+                    }
+                    usedVars.computeIfAbsent(instruction, k -> new HashSet<>()).add(operand);
+                }
+            }
+        }
+    }
+
+    public Map<Instruction, Set<Element>> getUsedVars() {
+        return usedVars;
+    }
+
+    public Map<Instruction, Set<Element>> getDefinedVars() {
+        return definedVars;
+    }
+}
@@ -1,7 +1,10 @@
 package pt.up.fe.comp2025.parser;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
@@ -9,8 +12,10 @@ import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2025.JavammLexer;
 import pt.up.fe.comp2025.JavammParser;
+import pt.up.fe.comp2025.utils.PhaseProfiler;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Copyright 2022 SPeCS.
@@ -25,8 +30,31 @@ import java.util.Map;
  * specific language governing permissions and limitations under the License. under the License.
  */
 
+/**
+ * Parses in two stages: first with SLL prediction, which is much faster on the left-recursive 'expr' rule, and bails out
+ * at the first syntax error. Only when that fails is the input parsed again with full LL prediction and the default
+ * error recovery, so the reports are the same as with a single LL parse.
+ */
 public class JmmParserImpl implements JmmParser {
 
+    // Shared by every instance, so the totals cover a whole batch compilation or the lifetime of the daemon
+    private static final AtomicLong PARSES = new AtomicLong();
+    private static final AtomicLong LL_FALLBACKS = new AtomicLong();
+
+    /**
+     * @return the number of inputs parsed since the compiler started
+     */
+    public static long getParseCount() {
+        return PARSES.get();
+    }
+
+    /**
+     * @return the number of inputs that SLL could not parse and had to be parsed again with full LL
+     */
+    public static long getLlFallbackCount() {
+        return LL_FALLBACKS.get();
+    }
+
     @Override
     public String getDefaultRule() {
         return "program";
@@ -36,29 +64,75 @@ public class JmmParserImpl implements JmmParser {
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
 
         try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
-            // Transform characters into tokens using the lexer
-            var lex = new JavammLexer(input);
-            // Wrap lexer around a token stream
-            var tokens = new CommonTokenStream(lex);
-            // Transforms tokens into a parse tree
-            var parser = new JavammParser(tokens);
-
+            PARSES.incrementAndGet();
 
-            // Convert ANTLR CST to JmmNode AST
-            /*
-            var r = AntlrParser.parse(lex, parser, startingRule, config);
+            var sllResult = PhaseProfiler.measure("sllParse", () -> parseSll(jmmCode, startingRule, config));
+            if (sllResult != null) {
+                return sllResult;
+            }
 
-            if (r.getRootNode() != null) {
-                System.out.println("AST:\n" + r.getRootNode().toTree());
-            }*/
+            LL_FALLBACKS.incrementAndGet();
 
-            return AntlrParser.parse(lex, parser, startingRule, config);
+            return PhaseProfiler.measure("llParse", () -> parseLl(jmmCode, startingRule, config));
 
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
         }
     }
+
+    /**
+     * Parses with SLL prediction, stopping at the first syntax error.
+     *
+     * @return the result of the parse, or null if SLL could not parse the input without errors
+     */
+    private JmmParserResult parseSll(String jmmCode, String startingRule, Map<String, String> config) {
+        var lex = new JavammLexer(new ANTLRInputStream(jmmCode));
+        var parser = new JavammParser(new CommonTokenStream(lex));
+
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+
+        try {
+            var result = AntlrParser.parse(lex, parser, startingRule, config);
+
+            // Let the LL parse produce the reports, so they are the same as without this stage
+            return result.getRootNode() != null ? result : null;
+        } catch (RuntimeException e) {
+            if (isParseCancellation(e)) {
+                return null;
+            }
+
+            throw e;
+        }
+    }
+
+    private JmmParserResult parseLl(String jmmCode, String startingRule, Map<String, String> config) {
+        // Convert code string into a character stream
+        var input = new ANTLRInputStream(jmmCode);
+        // Transform characters into tokens using the lexer
+        var lex = new JavammLexer(input);
+        // Wrap lexer around a token stream
+        var tokens = new CommonTokenStream(lex);
+        // Transforms tokens into a parse tree
+        var parser = new JavammParser(tokens);
+
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+        // Convert ANTLR CST to JmmNode AST
+        return AntlrParser.parse(lex, parser, startingRule, config);
+    }
+
+    /**
+     * The rule is invoked through reflection, so the exception thrown by the bail-out strategy may come wrapped.
+     */
+    private boolean isParseCancellation(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ParseCancellationException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
@@ -2,6 +2,7 @@ package pt.up.fe.comp2025.symboltable;
 
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2025.ast.ExprTypeCache;
 import pt.up.fe.comp2025.ast.TypeUtils;
 import pt.up.fe.specs.util.SpecsCheck;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
@@ -21,6 +22,12 @@ public class JmmSymbolTable extends AJmmSymbolTable {
 
     private final List<String> imports;
 
+    // Names visible in each method, already following the resolution order locals -> params -> fields
+    private final Map<String, Map<String, ResolvedSymbol>> scopes;
+    private final Map<String, ResolvedSymbol> fieldScope;
+
+    // Types of the expressions of this compilation, computed once and shared by every pass
+    private final ExprTypeCache exprTypes;
 
     public JmmSymbolTable(String className,
                           List<String> methods,
@@ -39,6 +46,55 @@ public class JmmSymbolTable extends AJmmSymbolTable {
         this.imports = imports;
         this.fields = fields;
         this.superClassName = superClassName;
+
+        this.exprTypes = new ExprTypeCache();
+
+        this.fieldScope = new HashMap<>();
+        addToScope(fieldScope, fields, ResolvedSymbol.Scope.FIELD);
+
+        this.scopes = new HashMap<>();
+        for (var method : methods) {
+            Map<String, ResolvedSymbol> scope = new HashMap<>();
+            addToScope(scope, locals.getOrDefault(method, List.of()), ResolvedSymbol.Scope.LOCAL);
+            addToScope(scope, params.getOrDefault(method, List.of()), ResolvedSymbol.Scope.PARAMETER);
+            addToScope(scope, fields, ResolvedSymbol.Scope.FIELD);
+            scopes.put(method, scope);
+        }
+    }
+
+    /**
+     * Adds the symbols that are not shadowed by the ones already in the scope. With repeated names, the first one wins.
+     */
+    private static void addToScope(Map<String, ResolvedSymbol> scope, List<Symbol> symbols, ResolvedSymbol.Scope kind) {
+        for (var symbol : symbols) {
+            scope.putIfAbsent(symbol.getName(), new ResolvedSymbol(symbol, kind));
+        }
+    }
+
+    public ExprTypeCache getExprTypes() {
+        return exprTypes;
+    }
+
+    /**
+     * Finds the declaration of a variable used inside a method, looking at the locals, then the parameters and then the
+     * fields of the class.
+     *
+     * @param methodSignature the method where the variable is used, or null outside methods (only fields are visible)
+     * @param name            the name of the variable
+     * @return the symbol and its scope, or an empty Optional if there is no variable with that name
+     */
+    public Optional<ResolvedSymbol> resolve(String methodSignature, String name) {
+        var scope = methodSignature != null ? scopes.getOrDefault(methodSignature, fieldScope) : fieldScope;
+
+        return Optional.ofNullable(scope.get(name));
+    }
+
+    /**
+     * @return true if the given name refers to a field inside the given method, i.e. it is not shadowed by a
+     * local variable or a parameter
+     */
+    public boolean isField(String methodSignature, String name) {
+        return resolve(methodSignature, name).map(ResolvedSymbol::isField).orElse(false);
     }
 
     @Override
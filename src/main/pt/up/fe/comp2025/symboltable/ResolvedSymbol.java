@@ -0,0 +1,40 @@
+package pt.up.fe.comp2025.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+
+/**
+ * A symbol found by {@link JmmSymbolTable#resolve(String, String)}, together with the scope where it was declared.
+ */
+public class ResolvedSymbol {
+
+    public enum Scope {
+        LOCAL,
+        PARAMETER,
+        FIELD
+    }
+
+    private final Symbol symbol;
+    private final Scope scope;
+
+    public ResolvedSymbol(Symbol symbol, Scope scope) {
+        this.symbol = symbol;
+        this.scope = scope;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public boolean isField() {
+        return scope == Scope.FIELD;
+    }
+
+    @Override
+    public String toString() {
+        return scope.name().toLowerCase() + " " + symbol.getName();
+    }
+}
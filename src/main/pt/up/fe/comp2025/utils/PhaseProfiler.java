@@ -0,0 +1,216 @@
+package pt.up.fe.comp2025.utils;
+
+import com.google.gson.GsonBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records wall time, CPU time and allocated bytes of the compiler stages and their sub-passes.
+ * <p>
+ * A profiler is installed for the current thread, so the stages do not need to receive it as a parameter.
+ * When no profiler is installed, {@link #measure(String, Supplier)} just runs the given work.
+ */
+public class PhaseProfiler {
+
+    private static final ThreadLocal<PhaseProfiler> CURRENT = new ThreadLocal<>();
+
+    private final ThreadMXBean threadBean;
+    private final List<Phase> phases;
+    private final Deque<Phase> open;
+
+    public PhaseProfiler() {
+        this.threadBean = ManagementFactory.getThreadMXBean();
+        this.phases = new ArrayList<>();
+        this.open = new ArrayDeque<>();
+    }
+
+    /**
+     * Creates a new profiler and makes it the active one for the current thread.
+     *
+     * @return the installed profiler
+     */
+    public static PhaseProfiler install() {
+        var profiler = new PhaseProfiler();
+        CURRENT.set(profiler);
+        return profiler;
+    }
+
+    /**
+     * Removes the active profiler of the current thread, if any.
+     */
+    public static void uninstall() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return true if a profiler is active for the current thread
+     */
+    public static boolean isInstalled() {
+        return CURRENT.get() != null;
+    }
+
+    public static <T> T measure(String name, Supplier<T> work) {
+        var profiler = CURRENT.get();
+
+        if (profiler == null) {
+            return work.get();
+        }
+
+        profiler.begin(name);
+        try {
+            return work.get();
+        } finally {
+            profiler.end();
+        }
+    }
+
+    public static void measure(String name, Runnable work) {
+        measure(name, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Sums the phases of several profilers, matching phases by name and depth.
+     * Phases keep the order in which they were first seen.
+     *
+     * @param profilers the profilers to merge
+     * @return a new profiler with the aggregated totals
+     */
+    public static PhaseProfiler merge(Collection<PhaseProfiler> profilers) {
+        var merged = new PhaseProfiler();
+        Map<String, Phase> byKey = new LinkedHashMap<>();
+
+        for (var profiler : profilers) {
+            for (var phase : profiler.getPhases()) {
+                var total = byKey.computeIfAbsent(phase.depth + ":" + phase.name, key -> {
+                    var newPhase = new Phase(phase.name, phase.depth);
+                    merged.phases.add(newPhase);
+                    return newPhase;
+                });
+
+                total.wallNanos += phase.wallNanos;
+                total.cpuNanos += phase.cpuNanos;
+                total.allocatedBytes += phase.allocatedBytes;
+            }
+        }
+
+        return merged;
+    }
+
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    private void begin(String name) {
+        var phase = new Phase(name, open.size());
+        phase.wallStart = System.nanoTime();
+        phase.cpuStart = cpuTime();
+        phase.allocStart = allocatedBytes();
+
+        phases.add(phase);
+        open.push(phase);
+    }
+
+    private void end() {
+        var phase = open.pop();
+        phase.wallNanos = System.nanoTime() - phase.wallStart;
+        phase.cpuNanos = cpuTime() - phase.cpuStart;
+        phase.allocatedBytes = allocatedBytes() - phase.allocStart;
+    }
+
+    private long cpuTime() {
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    private long allocatedBytes() {
+        if (threadBean instanceof com.sun.management.ThreadMXBean sunBean && sunBean.isThreadAllocatedMemorySupported()) {
+            return sunBean.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    public String toTable() {
+        var code = new StringBuilder();
+        code.append(String.format("%-48s %12s %12s %14s%n", "Phase", "Wall (ms)", "CPU (ms)", "Alloc (KiB)"));
+
+        for (var phase : phases) {
+            var name = "  ".repeat(phase.depth) + phase.name;
+            code.append(String.format("%-48s %12.3f %12.3f %14.1f%n",
+                    name,
+                    phase.wallNanos / 1e6,
+                    phase.cpuNanos / 1e6,
+                    phase.allocatedBytes / 1024.0));
+        }
+
+        return code.toString();
+    }
+
+    public String toJson() {
+        List<Map<String, Object>> entries = new ArrayList<>();
+
+        for (var phase : phases) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("phase", phase.name);
+            entry.put("depth", phase.depth);
+            entry.put("wallNanos", phase.wallNanos);
+            entry.put("cpuNanos", phase.cpuNanos);
+            entry.put("allocatedBytes", phase.allocatedBytes);
+            entries.add(entry);
+        }
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(entries);
+    }
+
+    /**
+     * A single measured phase. Phases are stored in the order they started, with their nesting depth.
+     */
+    public static class Phase {
+
+        private final String name;
+        private final int depth;
+
+        private long wallStart;
+        private long cpuStart;
+        private long allocStart;
+
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+
+        private Phase(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
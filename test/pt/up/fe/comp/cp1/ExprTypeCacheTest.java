@@ -0,0 +1,127 @@
+package pt.up.fe.comp.cp1;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2025.ast.ExprTypeCache;
+import pt.up.fe.comp2025.ast.Kind;
+import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ExprTypeCacheTest {
+
+    private static JmmNode newNode() {
+        return new JmmNodeImpl(List.of("IntegerLiteral", "Expr"));
+    }
+
+    /**
+     * The analysis types every expression once, so the other passes and the OLLIR generator find them in the cache.
+     */
+    @Test
+    public void analysisFillsCache() {
+        var semantics = TestUtils.analyse(SpecsIo.getResource("pt/up/fe/comp/cp1/semanticanalysis/ArrayInit.jmm"));
+        TestUtils.noErrors(semantics);
+
+        var cache = ((JmmSymbolTable) semantics.getSymbolTable()).getExprTypes();
+
+        List<JmmNode> exprs = new ArrayList<>();
+        collectExprs(semantics.getRootNode(), exprs);
+        assertFalse(exprs.isEmpty());
+
+        for (var expr : exprs) {
+            var method = expr.getAncestor(Kind.METHOD_DECL.getNodeName()).map(m -> m.get("name")).orElse(null);
+            cache.get(expr, method, () -> {
+                fail("Expression not typed by the analysis: " + expr);
+                return null;
+            });
+        }
+    }
+
+    private static void collectExprs(JmmNode node, List<JmmNode> exprs) {
+        if (Kind.EXPR.check(node)) {
+            exprs.add(node);
+        }
+
+        for (var child : node.getChildren()) {
+            collectExprs(child, exprs);
+        }
+    }
+
+    @Test
+    public void computedOncePerMethod() {
+        var cache = new ExprTypeCache();
+        var node = newNode();
+        var computations = new AtomicInteger();
+
+        var type = cache.get(node, "foo", () -> {
+            computations.incrementAndGet();
+            return new Type("int", false);
+        });
+
+        assertSame(type, cache.get(node, "foo", () -> new Type("int", false)));
+        assertEquals(1, computations.get());
+
+        // The type of a variable depends on the method where it is used
+        cache.get(node, "bar", () -> {
+            computations.incrementAndGet();
+            return new Type("boolean", false);
+        });
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    public void failuresNotCached() {
+        var cache = new ExprTypeCache();
+        var node = newNode();
+
+        try {
+            cache.get(node, "foo", () -> {
+                throw new RuntimeException("Cannot type");
+            });
+            fail("Expected the exception of the computation");
+        } catch (RuntimeException e) {
+            assertEquals("Cannot type", e.getMessage());
+        }
+
+        assertEquals(0, cache.size());
+        assertEquals("int", cache.get(node, "foo", () -> new Type("int", false)).getName());
+    }
+
+    @Test
+    public void invalidateRemovesSubtreeAndAncestors() {
+        var cache = new ExprTypeCache();
+        var parent = newNode();
+        var node = newNode();
+        var child = newNode();
+        var sibling = newNode();
+        parent.add(node);
+        parent.add(sibling);
+        node.add(child);
+
+        for (var expr : List.of(parent, node, child, sibling)) {
+            cache.get(expr, "foo", () -> new Type("int", false));
+        }
+
+        cache.invalidate(node);
+
+        // Only the type of the sibling does not depend on the node
+        assertEquals(1, cache.size());
+        var recomputed = new AtomicInteger();
+        cache.get(sibling, "foo", () -> {
+            recomputed.incrementAndGet();
+            return new Type("int", false);
+        });
+        assertEquals(0, recomputed.get());
+    }
+}
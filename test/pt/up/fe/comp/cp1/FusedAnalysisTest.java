@@ -0,0 +1,162 @@
+package pt.up.fe.comp.cp1;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2025.analysis.AnalysisVisitor;
+import pt.up.fe.comp2025.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2025.analysis.passes.*;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class FusedAnalysisTest {
+
+    private static final String FIXTURES = "test/pt/up/fe/comp/cp1/semanticanalysis";
+
+    static List<File> getFixtures() {
+        var fixtures = SpecsIo.getFilesRecursive(new File(FIXTURES), "jmm");
+        assertFalse("No fixtures found in " + FIXTURES, fixtures.isEmpty());
+        return fixtures;
+    }
+
+    static List<String> analyse(String code, Map<String, String> config) {
+        var parserResult = TestUtils.parse(code, config);
+        return toStrings(new JmmAnalysisImpl().semanticAnalysis(parserResult).getReports());
+    }
+
+    /**
+     * Runs each pass with its own traversal of the AST, one after the other, stopping at the first pass with errors.
+     */
+    static List<String> analyseSeparately(String code) {
+        var parserResult = TestUtils.parse(code, new HashMap<>());
+        JmmSemanticsResult semanticsResult = new JmmAnalysisImpl().buildSymbolTable(parserResult);
+
+        List<Report> reports = new ArrayList<>(semanticsResult.getReports());
+        if (TestUtils.getNumErrors(reports) > 0) {
+            return toStrings(reports);
+        }
+
+        List<AnalysisVisitor> passes = List.of(new ExprTyping(), new UndeclaredVariable(),
+                new IncompatibleOperandType(), new ArrayAccess(), new IncompatibleAssignedType(),
+                new NonBooleanConditions(), new VarArgs(), new CallToMethod(), new ThisExpression(), new ArrayInit(),
+                new IncompatibleReturnType());
+
+        for (var pass : passes) {
+            List<Report> passReports;
+            try {
+                passReports = pass.analyze(semanticsResult.getRootNode(), semanticsResult.getSymbolTable());
+            } catch (Exception e) {
+                // Compared by message, the exception is wrapped by the analysis
+                passReports = List.of(Report.newError(null, -1, -1,
+                        "Problem while executing analysis pass '" + pass.getClass() + "'", e));
+            }
+
+            reports.addAll(passReports);
+            if (passReports.stream().anyMatch(report -> report.getType() == ReportType.ERROR)) {
+                break;
+            }
+        }
+
+        return toStrings(reports);
+    }
+
+    private static List<String> toStrings(List<Report> reports) {
+        return reports.stream()
+                .map(report -> report.getType() + "@" + report.getLine() + ":" + report.getColumn() + " "
+                        + report.getMessage())
+                .toList();
+    }
+
+    /**
+     * The single traversal gives the same reports, in the same order, as a traversal per pass.
+     */
+    @Test
+    public void sameReportsAsSeparatePasses() {
+        for (var fixture : getFixtures()) {
+            var code = SpecsIo.read(fixture);
+
+            // Some fixtures are only meant for the parser
+            if (TestUtils.parse(code).getRootNode() == null) {
+                continue;
+            }
+
+            assertEquals(fixture.getName(), analyseSeparately(code), analyse(code, new HashMap<>()));
+        }
+    }
+
+    /**
+     * Only the reports of the first pass with errors are kept, even when a later pass would report others.
+     */
+    @Test
+    public void stopsAtFirstPassWithErrors() {
+        var code = """
+                class Foo {
+                    public int foo() {
+                        int a;
+                        a = b;
+                        return true;
+                    }
+                }
+                """;
+
+        var reports = analyse(code, new HashMap<>());
+
+        assertEquals(reports.toString(), 1, reports.size());
+        assertEquals(analyseSeparately(code), reports);
+    }
+
+    /**
+     * With '-a' the methods are analysed in parallel, but the reports keep the order of a sequential analysis.
+     */
+    @Test
+    public void parallelSameReportsAsSequential() {
+        Map<String, String> parallel = new HashMap<>();
+        parallel.put("parallelAnalysis", "true");
+
+        for (var fixture : getFixtures()) {
+            var code = SpecsIo.read(fixture);
+
+            if (TestUtils.parse(code).getRootNode() == null) {
+                continue;
+            }
+
+            assertEquals(fixture.getName(), analyse(code, new HashMap<>()), analyse(code, parallel));
+        }
+    }
+
+    /**
+     * Errors in several methods are reported in the order of the methods, whichever task finishes first.
+     */
+    @Test
+    public void parallelKeepsMethodOrder() {
+        var code = new StringBuilder("class Foo {\n");
+        for (int i = 0; i < 16; i++) {
+            code.append("    public int foo").append(i).append("() {\n")
+                    .append("        int a;\n")
+                    .append("        a = b").append(i).append(";\n")
+                    .append("        return a;\n")
+                    .append("    }\n");
+        }
+        code.append("}\n");
+
+        Map<String, String> parallel = new HashMap<>();
+        parallel.put("parallelAnalysis", "true");
+
+        var sequentialReports = analyse(code.toString(), new HashMap<>());
+        assertEquals(sequentialReports.toString(), 16, sequentialReports.size());
+
+        for (int run = 0; run < 10; run++) {
+            assertEquals(sequentialReports, analyse(code.toString(), parallel));
+        }
+    }
+}
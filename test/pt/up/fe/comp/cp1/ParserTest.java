@@ -0,0 +1,63 @@
+package pt.up.fe.comp.cp1;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.parser.JmmParserImpl;
+import pt.up.fe.comp2025.utils.PhaseProfiler;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParserTest {
+
+    @Test
+    public void validCodeParsedWithSll() {
+        long parses = JmmParserImpl.getParseCount();
+        long fallbacks = JmmParserImpl.getLlFallbackCount();
+
+        var result = new JmmParserImpl().parse("class Foo { int a; public int foo(int b) { return a + b * 2; } }",
+                new HashMap<>());
+
+        TestUtils.noErrors(result);
+        assertNotNull(result.getRootNode());
+        assertEquals(parses + 1, JmmParserImpl.getParseCount());
+        assertEquals(fallbacks, JmmParserImpl.getLlFallbackCount());
+    }
+
+    @Test
+    public void syntaxErrorFallsBackToLl() {
+        long fallbacks = JmmParserImpl.getLlFallbackCount();
+
+        var result = new JmmParserImpl().parse("class Foo {\n int a\n }", new HashMap<>());
+
+        assertEquals(fallbacks + 1, JmmParserImpl.getLlFallbackCount());
+        assertNull(result.getRootNode());
+
+        // The report comes from the LL parse, with the position of the error, not from the bail-out of SLL
+        TestUtils.mustFail(result);
+        var error = result.getReports().get(0);
+        assertEquals(Stage.SYNTATIC, error.getStage());
+        assertTrue("Expected the line of the error, got " + error, error.getLine() > 0);
+    }
+
+    @Test
+    public void fallbackIsProfiled() {
+        var profiler = PhaseProfiler.install();
+
+        try {
+            new JmmParserImpl().parse("class Foo { int a; }", new HashMap<>());
+            new JmmParserImpl().parse("class Foo { int a }", new HashMap<>());
+        } finally {
+            PhaseProfiler.uninstall();
+        }
+
+        var phases = profiler.getPhases().stream().map(PhaseProfiler.Phase::getName).toList();
+        assertEquals(List.of("sllParse", "sllParse", "llParse"), phases);
+    }
+}
@@ -3,9 +3,13 @@ package pt.up.fe.comp.cp1;
 import org.junit.Test;
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2025.symboltable.ResolvedSymbol.Scope;
 import pt.up.fe.specs.util.SpecsIo;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test variable lookup.
@@ -172,4 +176,25 @@ public class SymbolTableTest {
         var fields = semantics.getSymbolTable().getFields();
         assertEquals(3, fields.size());
     }
+
+    @Test
+    public void ResolveShadowing() {
+        var semantics = test("symboltable/Shadowing.jmm", false);
+        var table = (JmmSymbolTable) semantics.getSymbolTable();
+
+        // Locals shadow parameters, which shadow fields
+        assertEquals(Scope.PARAMETER, table.resolve("byParam", "a").orElseThrow().getScope());
+        assertEquals(Scope.FIELD, table.resolve("byParam", "b").orElseThrow().getScope());
+        assertEquals(Scope.LOCAL, table.resolve("byLocal", "a").orElseThrow().getScope());
+        assertEquals("boolean", table.resolve("byLocal", "a").orElseThrow().getSymbol().getType().getName());
+        assertEquals(Scope.PARAMETER, table.resolve("byLocal", "b").orElseThrow().getScope());
+
+        assertFalse(table.isField("byParam", "a"));
+        assertTrue(table.isField("byLocal", "c"));
+        assertTrue(table.resolve("byLocal", "d").isEmpty());
+
+        // Outside methods, only the fields are visible
+        assertEquals(Scope.FIELD, table.resolve(null, "a").orElseThrow().getScope());
+        assertEquals(Scope.FIELD, table.resolve("main", "a").orElseThrow().getScope());
+    }
 }
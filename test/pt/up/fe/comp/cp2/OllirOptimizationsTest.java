@@ -0,0 +1,342 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.ArrayLengthInstruction;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.BinaryOpInstruction;
+import org.specs.comp.ollir.inst.CallInstruction;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import org.specs.comp.ollir.inst.InvokeStaticInstruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OllirOptimizationsTest {
+
+    private static final String BASE_PATH = "pt/up/fe/comp/cp2/optimizations/extra/";
+
+    static Map<String, String> getConfig(boolean extra) {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getExtra(), String.valueOf(extra));
+        return config;
+    }
+
+    static OllirResult getOllirResult(String filename, boolean extra) {
+        return CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename), getConfig(extra), true);
+    }
+
+    static void run(String filename, String expected) {
+        var jasminResult = TestUtils.backend(SpecsIo.getResource(BASE_PATH + filename), getConfig(true));
+        CpUtils.runJasmin(jasminResult, expected);
+    }
+
+    static List<String> getLogs(OllirResult ollirResult, String prefix) {
+        return ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.LOG)
+                .map(report -> report.getMessage())
+                .filter(message -> message.startsWith(prefix))
+                .toList();
+    }
+
+    static List<AssignInstruction> getAssigns(Method method, Class<?> rhsClass) {
+        return CpUtils.getInstructions(AssignInstruction.class, method).stream()
+                .filter(assign -> rhsClass.isInstance(assign.getRhs()))
+                .toList();
+    }
+
+    @Test
+    public void deadCodeRemovesDeadTemps() {
+        var method = CpUtils.getMethod(getOllirResult("DeadCode.jmm", true), "deadTemps");
+
+        assertTrue("Expected 'a * 2 + 1' to be removed:\n" + method.getInstructions(),
+                getAssigns(method, BinaryOpInstruction.class).isEmpty());
+        assertFalse(method.getVarTable().containsKey("b"));
+        assertFalse(method.getVarTable().containsKey("c"));
+    }
+
+    @Test
+    public void deadCodeKeepsCalls() {
+        var method = CpUtils.getMethod(getOllirResult("DeadCode.jmm", true), "deadTemps");
+
+        // The result of the call is dead, but the call may have side effects
+        assertEquals(1, getAssigns(method, CallInstruction.class).size());
+        run("DeadCode.jmm", "4\n4\n7");
+    }
+
+    @Test
+    public void deadCodeFoldsConstantBranches() {
+        var method = CpUtils.getMethod(getOllirResult("DeadCode.jmm", true), "constantBranch");
+
+        assertTrue(CpUtils.getInstructions(CondBranchInstruction.class, method).isEmpty());
+        assertTrue("Expected the else branch to be removed:\n" + method.getInstructions(),
+                getAssigns(method, BinaryOpInstruction.class).isEmpty());
+    }
+
+    @Test
+    public void deadCodeReported() {
+        var logs = getLogs(getOllirResult("DeadCode.jmm", true), "Dead code elimination:");
+        assertEquals(1, logs.size());
+
+        assertTrue(getLogs(getOllirResult("DeadCode.jmm", false), "Dead code elimination:").isEmpty());
+    }
+
+    @Test
+    public void deadCodeOnlyWithExtra() {
+        var method = CpUtils.getMethod(getOllirResult("DeadCode.jmm", false), "deadTemps");
+
+        assertFalse(getAssigns(method, BinaryOpInstruction.class).isEmpty());
+        assertTrue(method.getVarTable().containsKey("b"));
+    }
+
+    @Test
+    public void valueNumberingReusesExpressions() {
+        var method = CpUtils.getMethod(getOllirResult("ValueNumbering.jmm", true), "reuse");
+
+        var multiplications = getAssigns(method, BinaryOpInstruction.class).stream()
+                .filter(assign -> ((BinaryOpInstruction) assign.getRhs()).getOperation().getOpType() == OperationType.MUL)
+                .toList();
+        assertEquals("Expected 'a * b' to be computed once:\n" + method.getInstructions(), 1, multiplications.size());
+    }
+
+    @Test
+    public void valueNumberingReloadsAfterStore() {
+        var method = CpUtils.getMethod(getOllirResult("ValueNumbering.jmm", true), "afterStore");
+
+        // 'arr[0]' may change with the store between both reads
+        var arrayReads = getAssigns(method, SingleOpInstruction.class).stream()
+                .filter(assign -> ((SingleOpInstruction) assign.getRhs()).getSingleOperand() instanceof ArrayOperand)
+                .toList();
+        assertEquals(2, arrayReads.size());
+
+        run("ValueNumbering.jmm", "24\n7");
+    }
+
+    @Test
+    public void valueNumberingReported() {
+        assertEquals(1, getLogs(getOllirResult("ValueNumbering.jmm", true), "Value numbering:").size());
+    }
+
+    /**
+     * Index of the instruction after the label of the loop.
+     */
+    static int getHeader(Method method, String label) {
+        int header = method.getInstructions().indexOf(method.getLabels().get(label));
+        assertTrue("Could not find label " + label, header >= 0);
+        return header;
+    }
+
+    static List<Integer> getIndexes(Method method, List<AssignInstruction> assigns) {
+        return assigns.stream().map(method.getInstructions()::indexOf).toList();
+    }
+
+    static List<AssignInstruction> getOperations(Method method, OperationType opType) {
+        return getAssigns(method, BinaryOpInstruction.class).stream()
+                .filter(assign -> ((BinaryOpInstruction) assign.getRhs()).getOperation().getOpType() == opType)
+                .toList();
+    }
+
+    @Test
+    public void codeMotionHoistsInvariants() {
+        var method = CpUtils.getMethod(getOllirResult("LoopInvariant.jmm", true), "sum");
+        int header = getHeader(method, "while0");
+
+        // 'k * 3' and the 'L.length' of the condition are computed once, before the loop
+        for (var index : getIndexes(method, getOperations(method, OperationType.MUL))) {
+            assertTrue("Expected 'k * 3' before the loop:\n" + method.getInstructions(), index < header);
+        }
+        for (var index : getIndexes(method, getAssigns(method, ArrayLengthInstruction.class))) {
+            assertTrue("Expected 'L.length' before the loop:\n" + method.getInstructions(), index < header);
+        }
+
+        run("LoopInvariant.jmm", "24\n0\n1\n2\n0\n5");
+    }
+
+    @Test
+    public void codeMotionKeepsVariantInstructions() {
+        var method = CpUtils.getMethod(getOllirResult("LoopInvariant.jmm", true), "sum");
+        int header = getHeader(method, "while0");
+
+        var arrayReads = getAssigns(method, SingleOpInstruction.class).stream()
+                .filter(assign -> ((SingleOpInstruction) assign.getRhs()).getSingleOperand() instanceof ArrayOperand)
+                .toList();
+        assertEquals(1, arrayReads.size());
+        for (var index : getIndexes(method, arrayReads)) {
+            assertTrue("Expected 'L[i]' to stay in the loop:\n" + method.getInstructions(), index >= header);
+        }
+        for (var index : getIndexes(method, getOperations(method, OperationType.ADD))) {
+            assertTrue("Expected the additions to stay in the loop:\n" + method.getInstructions(), index >= header);
+        }
+    }
+
+    @Test
+    public void codeMotionOnlyWithExtra() {
+        var method = CpUtils.getMethod(getOllirResult("LoopInvariant.jmm", false), "sum");
+        int header = getHeader(method, "while0");
+
+        for (var index : getIndexes(method, getOperations(method, OperationType.MUL))) {
+            assertTrue(index > header);
+        }
+    }
+
+    @Test
+    public void codeMotionKeepsDivisionAfterCall() {
+        var method = CpUtils.getMethod(getOllirResult("LoopInvariant.jmm", true), "divideAfterPrint");
+        int call = method.getInstructions().indexOf(
+                CpUtils.getInstructions(InvokeStaticInstruction.class, method).getFirst());
+
+        // Moving '10 / b' before the loop would throw before the first value is printed
+        var divisions = getIndexes(method, getOperations(method, OperationType.DIV));
+        assertEquals(1, divisions.size());
+        assertTrue("Expected '10 / b' to stay after the call:\n" + method.getInstructions(),
+                divisions.getFirst() > call && call >= getHeader(method, "while1"));
+    }
+
+    @Test
+    public void codeMotionHoistsDivisionBeforeCall() {
+        var method = CpUtils.getMethod(getOllirResult("LoopInvariant.jmm", true), "divideBeforePrint");
+        int header = getHeader(method, "while2");
+
+        for (var index : getIndexes(method, getOperations(method, OperationType.DIV))) {
+            assertTrue("Expected '10 / b' before the loop:\n" + method.getInstructions(), index < header);
+        }
+    }
+
+    @Test
+    public void codeMotionKeepsOutputBeforeException() throws Exception {
+        var jasminResult = TestUtils.backend(SpecsIo.getResource(BASE_PATH + "DivideAfterPrint.jmm"), getConfig(true));
+        var output = SpecsStrings.normalizeFileContents(jasminResult.run(), true);
+
+        // The first iteration prints 0 and then divides by zero
+        assertTrue(output, output.startsWith("0\n"));
+        assertTrue(output, output.contains("java.lang.ArithmeticException"));
+    }
+
+    @Test
+    public void codeMotionReported() {
+        var logs = getLogs(getOllirResult("LoopInvariant.jmm", true), "Loop-invariant code motion:");
+        assertEquals(List.of("Loop-invariant code motion: 5 instructions hoisted"), logs);
+    }
+
+    /**
+     * Branch instructions of the Jasmin code between the loop label and the label that follows the loop.
+     */
+    static List<String> getLoopBranches(String methodCode, String loopLabel, String endLabel) {
+        var loop = methodCode.substring(methodCode.indexOf(loopLabel + ":"), methodCode.indexOf(endLabel + ":"));
+
+        return loop.lines()
+                .map(String::strip)
+                .filter(line -> line.startsWith("if") || line.startsWith("goto"))
+                .toList();
+    }
+
+    @Test
+    public void rotatedLoopHasOneBranch() {
+        var config = getConfig(true);
+        config.put(ConfigOptions.getOptimize(), "true");
+        var jasminResult = TestUtils.backend(SpecsIo.getResource(BASE_PATH + "Rotation.jmm"), config);
+
+        var methodCode = CpUtils.getJasminMethod(jasminResult, "count");
+        assertEquals("Expected a single conditional back edge:\n" + methodCode,
+                List.of("if_icmplt while0"), getLoopBranches(methodCode, "while0", "endif0"));
+
+        CpUtils.runJasmin(jasminResult, "10\n0");
+    }
+
+    @Test
+    public void rotatedLoopTestsConditionBeforeLoop() {
+        var method = CpUtils.getMethod(getOllirResult("Rotation.jmm", true), "count");
+        int header = getHeader(method, "while0");
+
+        var branches = CpUtils.getInstructions(CondBranchInstruction.class, method);
+        assertEquals(2, branches.size());
+        assertTrue(method.getInstructions().indexOf(branches.get(0)) < header);
+        assertEquals("while0", branches.get(1).getLabel());
+        assertTrue(CpUtils.getInstructions(GotoInstruction.class, method).isEmpty());
+    }
+
+    @Test
+    public void loopNotRotatedWithoutExtra() {
+        var config = getConfig(false);
+        config.put(ConfigOptions.getOptimize(), "true");
+        var jasminResult = TestUtils.backend(SpecsIo.getResource(BASE_PATH + "Rotation.jmm"), config);
+
+        var methodCode = CpUtils.getJasminMethod(jasminResult, "count");
+        assertEquals(List.of("if_icmpge endif0", "goto while0"), getLoopBranches(methodCode, "while0", "endif0"));
+    }
+
+    @Test
+    public void algebraicShiftsPowerOfTwo() {
+        var method = CpUtils.getMethod(getOllirResult("Algebraic.jmm", true), "timesEight");
+
+        assertTrue(getOperations(method, OperationType.MUL).isEmpty());
+        var shifts = getOperations(method, OperationType.SHL);
+        assertEquals(1, shifts.size());
+        assertEquals("3", ((LiteralElement) ((BinaryOpInstruction) shifts.getFirst().getRhs()).getRightOperand())
+                .getLiteral());
+
+        var jasminResult = TestUtils.backend(SpecsIo.getResource(BASE_PATH + "Algebraic.jmm"), getConfig(true));
+        CpUtils.matches(CpUtils.getJasminMethod(jasminResult, "timesEight"), "ishl");
+    }
+
+    @Test
+    public void algebraicRemovesAddZero() {
+        var method = CpUtils.getMethod(getOllirResult("Algebraic.jmm", true), "plusZero");
+
+        assertTrue(getAssigns(method, BinaryOpInstruction.class).isEmpty());
+        var ret = CpUtils.getInstructions(ReturnInstruction.class, method).getFirst();
+        assertEquals("x", ((Operand) ret.getOperand().orElseThrow()).getName());
+    }
+
+    @Test
+    public void algebraicKeepsDivisions() {
+        var result = getOllirResult("Algebraic.jmm", true);
+
+        // Dividing by zero must still throw at runtime
+        var byZero = CpUtils.getMethod(result, "divideByZero");
+        assertEquals(1, getOperations(byZero, OperationType.DIV).size());
+
+        // A shift would round negative numbers down
+        var byFour = CpUtils.getMethod(result, "divideByFour");
+        assertEquals(1, getOperations(byFour, OperationType.DIV).size());
+        assertTrue(getOperations(byFour, OperationType.SHR).isEmpty());
+    }
+
+    @Test
+    public void algebraicReducesInductionVariables() {
+        var method = CpUtils.getMethod(getOllirResult("Algebraic.jmm", true), "induction");
+        int header = getHeader(method, "while0");
+
+        // 'i * 3' is only computed before the loop, and increased by 3 with 'i'
+        for (var index : getIndexes(method, getOperations(method, OperationType.MUL))) {
+            assertTrue("Expected 'i * 3' before the loop:\n" + method.getInstructions(), index < header);
+        }
+
+        run("Algebraic.jmm", "40\n7\n-2\n18");
+    }
+
+    @Test
+    public void algebraicReported() {
+        var logs = getLogs(getOllirResult("Algebraic.jmm", true), "Algebraic simplification:");
+        assertEquals(List.of("Algebraic simplification: 2 expressions simplified, 2 multiplications reduced"), logs);
+    }
+}
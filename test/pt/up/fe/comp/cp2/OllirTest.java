@@ -3,18 +3,22 @@ package pt.up.fe.comp.cp2;
 import org.junit.Test;
 import org.specs.comp.ollir.ArrayOperand;
 import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.LiteralElement;
 import org.specs.comp.ollir.Method;
 import org.specs.comp.ollir.OperationType;
 import org.specs.comp.ollir.inst.*;
 import org.specs.comp.ollir.type.BuiltinKind;
 import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.specs.util.SpecsIo;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.junit.Assert.*;
@@ -343,4 +347,47 @@ public class OllirTest {
         var result = getOllirResult("Test.jmm");
     }
 
+    static List<String> getCalledMethods(Method method) {
+        return method.getInstructions().stream()
+                .flatMap(inst -> inst instanceof AssignInstruction assign ? Stream.of(assign.getRhs()) : Stream.of(inst))
+                .filter(inst -> inst instanceof CallInstruction)
+                .map(inst -> ((LiteralElement) ((CallInstruction) inst).getMethodName()).getLiteral().replace("\"", ""))
+                .toList();
+    }
+
+    @Test
+    public void basicEvaluationOrder() {
+        var result = getOllirResult("basic/EvaluationOrder.jmm");
+        var method = CpUtils.getMethod(result, "order");
+
+        // Arguments are computed left to right, before the call that uses them
+        assertEquals(List.of("g", "h", "f"), getCalledMethods(method));
+
+        var instructions = method.getInstructions();
+        var firstBinOp = instructions.indexOf(CpUtils.getInstructions(AssignInstruction.class, method).stream()
+                .filter(assign -> assign.getRhs() instanceof BinaryOpInstruction)
+                .findFirst()
+                .orElseThrow());
+        assertEquals("Expected 'x + 1' to be the first instruction", 0, firstBinOp);
+    }
+
+    @Test
+    public void arithmeticShortCircuitAnd() {
+        var result = getOllirResult("arithmetic/ShortCircuitAnd.jmm");
+        var method = CpUtils.getMethod(result, "and");
+
+        // The right operand is only evaluated after branching on the left one
+        var instructions = method.getInstructions();
+        int branch = instructions.indexOf(CpUtils.getInstructions(CondBranchInstruction.class, method).getFirst());
+        int call = -1;
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction) {
+                call = i;
+            }
+        }
+        assertTrue("Expected the call to come after the branch on 'x'", branch >= 0 && call > branch);
+
+        var jasminResult = TestUtils.backend(SpecsIo.getResource(BASE_PATH + "arithmetic/ShortCircuitAnd.jmm"));
+        CpUtils.runJasmin(jasminResult, "3\n1\n2");
+    }
 }
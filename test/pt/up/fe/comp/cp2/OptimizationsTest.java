@@ -14,6 +14,9 @@
 package pt.up.fe.comp.cp2;
 
 import org.junit.Test;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.ReturnInstruction;
 import pt.up.fe.comp.CpUtils;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp2025.ConfigOptions;
@@ -180,4 +183,38 @@ public class OptimizationsTest {
         CpUtils.assertFindLiteral("15", method, optimized);
     }
 
+    @Test
+    public void constPropBranches() {
+
+        String filename = "const_prop_fold/PropBranches.jmm";
+
+        var optimized = getOllirResultOpt(filename);
+
+        // Both branches assign the same constant
+        CpUtils.assertLiteralReturn("5", CpUtils.getMethod(optimized, "same"), optimized);
+
+        // The branches assign different constants, so 'a' is not a constant after the if
+        var different = CpUtils.getMethod(optimized, "different");
+        CpUtils.assertTrue("Expected 'a' to not be propagated in 'different'\n" + optimized.getOllirCode(),
+                CpUtils.getInstructions(ReturnInstruction.class, different).stream()
+                        .noneMatch(ret -> ret.getOperand().map(Element::isLiteral).orElse(false)),
+                optimized);
+
+        // Only the branch that is taken reaches the return
+        CpUtils.assertLiteralReturn("7", CpUtils.getMethod(optimized, "constantCondition"), optimized);
+    }
+
+    @Test
+    public void constFoldOperators() {
+
+        String filename = "const_prop_fold/FoldOperators.jmm";
+
+        var optimized = getOllirResultOpt(filename);
+
+        CpUtils.assertLiteralReturn("1", CpUtils.getMethod(optimized, "logic"), optimized);
+
+        // Divisions by zero must still throw at run time
+        var divByZero = CpUtils.getMethod(optimized, "divByZero");
+        CpUtils.assertNumberOfOperations(OperationType.DIV, 1, divByZero, optimized);
+    }
 }
@@ -0,0 +1,252 @@
+package pt.up.fe.comp.cp2;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2025.CompilerConfig;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.optimization.InterferenceGraph;
+import pt.up.fe.comp2025.optimization.Liveness;
+import pt.up.fe.comp2025.optimization.OptUtils;
+import pt.up.fe.comp2025.optimization.VariableAccesses;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RegisterAllocationTest {
+
+    private static final String BASE_PATH = "pt/up/fe/comp/cp2/optimizations/reg_alloc/";
+
+    static OllirResult getOllirResult(String filename) {
+        return CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename), Collections.emptyMap(), false);
+    }
+
+    static OllirResult getOllirResult(String filename, int maxRegs, String allocator) {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getRegister(), Integer.toString(maxRegs));
+        config.put(ConfigOptions.getAllocator(), allocator);
+
+        return CpUtils.getOllirResult(SpecsIo.getResource(BASE_PATH + filename), config, true);
+    }
+
+    static List<Report> getReports(OllirResult ollirResult, ReportType type, String methodName) {
+        return ollirResult.getReports().stream()
+                .filter(report -> report.getType() == type)
+                .filter(report -> report.getMessage().contains(" " + methodName + " ")
+                        || report.getMessage().contains(" " + methodName + ":"))
+                .toList();
+    }
+
+    static Liveness getLiveness(Method method) {
+        OptUtils.buildCFG(method);
+        var accesses = new VariableAccesses(method);
+        return new Liveness(method, accesses.getUsedVars(), accesses.getDefinedVars());
+    }
+
+    static Set<String> toNames(Liveness liveness, BitSet variables) {
+        var names = new TreeSet<String>();
+        variables.stream().forEach(variable -> names.add(liveness.getVariable(variable)));
+        return names;
+    }
+
+    static AssignInstruction getAssign(Method method, String dest) {
+        return CpUtils.getInstructions(AssignInstruction.class, method).stream()
+                .filter(assign -> ((Operand) assign.getDest()).getName().equals(dest))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    static <T extends Instruction> T getFirst(Class<T> instructionClass, Method method) {
+        return CpUtils.getInstructions(instructionClass, method).get(0);
+    }
+
+    @Test
+    public void livenessInLoop() {
+        var ollirResult = getOllirResult("LiveInLoop.jmm");
+        var method = CpUtils.getMethod(ollirResult, "loop");
+        var liveness = getLiveness(method);
+
+        // 'i' and 's' are read again by the next iteration, 't' is never read
+        var condition = getFirst(CondBranchInstruction.class, method);
+        CpUtils.assertEquals("Live at the loop exit test", Set.of("i", "n", "s"),
+                toNames(liveness, liveness.getLiveOut(condition)), ollirResult);
+
+        CpUtils.assertEquals("Live after the dead store", Set.of("i", "n", "s"),
+                toNames(liveness, liveness.getLiveOut(getAssign(method, "t"))), ollirResult);
+
+        CpUtils.assertEquals("Live before the return", Set.of("s"),
+                toNames(liveness, liveness.getLiveIn(getFirst(ReturnInstruction.class, method))), ollirResult);
+
+        // Only the parameter is live when the method starts
+        CpUtils.assertEquals("Live at the method entry", Set.of("n"),
+                toNames(liveness, liveness.getLiveIn(method.getInstructions().get(0))), ollirResult);
+
+        assertEquals(Set.of("t"), toNames(liveness, liveness.getDefined(getAssign(method, "t"))));
+        assertEquals(Set.of("i", "s"), toNames(liveness, liveness.getUsed(getAssign(method, "tmp1"))));
+    }
+
+    @Test
+    public void interferenceGraphEdges() {
+        var graph = new InterferenceGraph(300);
+
+        assertTrue(graph.addEdge(0, 1));
+        assertFalse("Edges are not added twice", graph.addEdge(1, 0));
+        assertFalse("Nodes do not interfere with themselves", graph.addEdge(5, 5));
+        assertTrue(graph.addEdge(299, 298));
+        assertTrue(graph.addEdge(0, 299));
+
+        assertTrue(graph.interferes(1, 0));
+        assertTrue(graph.interferes(298, 299));
+        assertFalse(graph.interferes(1, 299));
+
+        assertEquals(2, graph.getDegree(299));
+        var neighbors = Arrays.copyOf(graph.getNeighbors(299), graph.getDegree(299));
+        Arrays.sort(neighbors);
+        assertEquals("[0, 298]", Arrays.toString(neighbors));
+    }
+
+    @Test
+    public void interferenceGraphFromLiveness() {
+        var ollirResult = getOllirResult("LiveInLoop.jmm");
+        var method = CpUtils.getMethod(ollirResult, "loop");
+        var liveness = getLiveness(method);
+        var graph = InterferenceGraph.build(method, liveness);
+
+        int i = liveness.getIndex("i");
+        int s = liveness.getIndex("s");
+        int t = liveness.getIndex("t");
+        int n = liveness.getIndex("n");
+        int tmp1 = liveness.getIndex("tmp1");
+
+        assertTrue(graph.interferes(i, s));
+        assertTrue(graph.interferes(i, n));
+
+        // A dead variable still interferes with the variables live where it is written
+        assertTrue(graph.interferes(t, s));
+
+        // The copy 's := tmp1' does not make them interfere, and is recorded as a move
+        assertFalse(graph.interferes(s, tmp1));
+        assertTrue(graph.getMoves().stream().anyMatch(move -> move[0] == s && move[1] == tmp1));
+    }
+
+    @Test
+    public void linearScanSequence() {
+        var optimized = getOllirResult("regalloc.jmm", 1, "linear");
+        var method = CpUtils.getMethod(optimized, "soManyRegisters");
+
+        // 'this', 'arg' and the chain of copies, which never overlap
+        CpUtils.assertEquals("Registers of 'soManyRegisters'", 3, CpUtils.countRegisters(method), optimized);
+
+        var varTable = method.getVarTable();
+        CpUtils.assertEquals("Expected 'a' and 'd' to share a register", varTable.get("a").getVirtualReg(),
+                varTable.get("d").getVirtualReg(), optimized);
+    }
+
+    @Test
+    public void linearScanSpillsInsteadOfFailing() {
+        var optimized = getOllirResult("LiveInLoop.jmm", 1, "linear");
+        var method = CpUtils.getMethod(optimized, "loop");
+
+        // 'i', 'n' and 's' are live at the same time, so one register is not enough
+        var varTable = method.getVarTable();
+        CpUtils.assertNotEquals("Expected 'i' and 's' in different registers", varTable.get("i").getVirtualReg(),
+                varTable.get("s").getVirtualReg(), optimized);
+        CpUtils.assertTrue("Expected spilled variables after the requested register",
+                CpUtils.countRegisters(method) > 3, optimized);
+    }
+
+    @Test
+    public void unknownAllocatorRejected() {
+        try {
+            CompilerConfig.parseArgs(new String[]{"-b=inputs", "-s=greedy"});
+            fail("Expected '-s=greedy' to be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("greedy"));
+        }
+
+        // A config that does not come from the command line is validated the same way
+        try {
+            getOllirResult("regalloc.jmm", 1, "greedy");
+            fail("Expected the allocator 'greedy' to be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("greedy"));
+        }
+    }
+
+    @Test
+    public void spillBelowVariableCount() {
+        var optimized = getOllirResult("LiveInLoop.jmm", 1, "graph");
+        var method = CpUtils.getMethod(optimized, "loop");
+        int locals = CpUtils.countRegisters(method);
+
+        // The allocation does not fail, and the reported number of locals is the one achieved
+        var logs = getReports(optimized, ReportType.LOG, "loop");
+        CpUtils.assertEquals("Register allocation log of 'loop'", 1, logs.size(), optimized);
+        CpUtils.assertTrue("Expected " + locals + " locals in '" + logs.get(0).getMessage() + "'",
+                logs.get(0).getMessage().contains(": " + locals + " locals"), optimized);
+
+        CpUtils.assertEquals("Spill warnings of 'loop'", 1, getReports(optimized, ReportType.WARNING, "loop").size(),
+                optimized);
+    }
+
+    @Test
+    public void noSpillWarningWhenRegistersAreEnough() {
+        var optimized = getOllirResult("LiveInLoop.jmm", 10, "graph");
+
+        CpUtils.assertEquals("Register allocation log of 'loop'", 1,
+                getReports(optimized, ReportType.LOG, "loop").size(), optimized);
+        CpUtils.assertTrue("Expected no warnings", getReports(optimized, ReportType.WARNING, "loop").isEmpty(),
+                optimized);
+    }
+
+    @Test
+    public void coalesceCopies() {
+        var optimized = getOllirResult("Coalesce.jmm", 2, "graph");
+        var varTable = CpUtils.getMethod(optimized, "copies").getVarTable();
+
+        // The chain of copies does not interfere, so every variable ends up in the same register
+        int register = varTable.get("a").getVirtualReg();
+        for (var name : List.of("tmp0", "b", "c")) {
+            CpUtils.assertEquals("Expected '" + name + "' coalesced with 'a'", register,
+                    varTable.get(name).getVirtualReg(), optimized);
+        }
+
+        // 'a' changes while 'b' still holds its old value
+        var interfering = CpUtils.getMethod(optimized, "interfering").getVarTable();
+        CpUtils.assertNotEquals("Expected 'a' and 'b' in different registers", interfering.get("a").getVirtualReg(),
+                interfering.get("b").getVirtualReg(), optimized);
+    }
+
+    @Test
+    public void coalescedCopiesNotGenerated() {
+        Map<String, String> config = new HashMap<>();
+        config.put(ConfigOptions.getRegister(), "2");
+        var jasminResult = TestUtils.backend(SpecsIo.getResource(BASE_PATH + "Coalesce.jmm"), config);
+
+        // Only the two additions are stored, the copies became moves to the same register
+        var method = CpUtils.getJasminMethod(jasminResult, "copies");
+        CpUtils.assertEquals("Stores in 'copies'", 2, method.split("istore").length - 1, jasminResult);
+        CpUtils.runJasmin(jasminResult, "");
+    }
+}
@@ -0,0 +1,81 @@
+package pt.up.fe.comp.cp3;
+
+import org.junit.Test;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.UnaryOpInstruction;
+import org.specs.comp.ollir.type.BuiltinKind;
+import org.specs.comp.ollir.type.BuiltinType;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BranchFusionTest {
+
+    private static final String FIXTURE = "pt/up/fe/comp/cp3/optimizations/branch_fusion/CompareBranch.jmm";
+
+    static JasminResult getJasminResult(boolean optimize) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", String.valueOf(optimize));
+        return TestUtils.backend(SpecsIo.getResource(FIXTURE), config);
+    }
+
+    static OllirResult getOllirResult() {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        return TestUtils.optimize(SpecsIo.getResource(FIXTURE), config);
+    }
+
+    @Test
+    public void compareBranchesDirectly() {
+        var method = CpUtils.getJasminMethod(getJasminResult(true), "compare");
+
+        CpUtils.matches(method, "if_icmplt\\s+then0");
+        assertFalse("Expected no isub before the branch:\n" + method, method.contains("isub"));
+        assertFalse("Expected no boolean to be computed:\n" + method, method.contains("iconst_0"));
+    }
+
+    @Test
+    public void compareAgainstZero() {
+        var method = CpUtils.getJasminMethod(getJasminResult(true), "compareZero");
+
+        CpUtils.matches(method, "iload_1\\s+ifle\\s+endif1");
+        assertFalse("Expected the literal 0 not to be pushed:\n" + method, method.contains("if_icmp"));
+    }
+
+    @Test
+    public void conjunctionAsJumps() {
+        var method = CpUtils.getJasminMethod(getJasminResult(true), "conjunction");
+
+        assertEquals(2, method.split("if_icmpge").length - 1);
+        assertFalse("Expected no boolean operations:\n" + method, method.contains("iand") || method.contains("ixor"));
+
+        // The conditions are single conditional gotos in OLLIR, without boolean temporaries
+        var ollirMethod = CpUtils.getMethod(getOllirResult(), "conjunction");
+        assertEquals(2, CpUtils.getInstructions(CondBranchInstruction.class, ollirMethod).size());
+        assertTrue(CpUtils.getInstructions(UnaryOpInstruction.class, ollirMethod).isEmpty());
+        for (var assign : CpUtils.getInstructions(AssignInstruction.class, ollirMethod)) {
+            assertFalse("Expected no boolean assignments: " + assign.toString(),
+                    BuiltinType.is(assign.getTypeOfAssign(), BuiltinKind.BOOLEAN));
+        }
+    }
+
+    @Test
+    public void fusedBranchesRun() {
+        CpUtils.runJasmin(getJasminResult(true), "1\n2\n6\n1\n2");
+    }
+
+    @Test
+    public void unfusedBranchesRun() {
+        CpUtils.runJasmin(getJasminResult(false), "1\n2\n6\n1\n2");
+    }
+}
@@ -0,0 +1,300 @@
+package pt.up.fe.comp.cp3;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2025.CompilerConfig;
+import pt.up.fe.comp2025.CompilerDaemon;
+import pt.up.fe.comp2025.Launcher;
+import pt.up.fe.comp2025.backend.BytecodeBuffer;
+import pt.up.fe.comp2025.utils.PhaseProfiler;
+import pt.up.fe.specs.util.SpecsIo;
+import utils.ProjectTestUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompilerDriverTest {
+
+    /**
+     * Copies a fixture to the given folder, since the compiler writes its outputs next to the input file.
+     */
+    static File copyResource(String filename, File folder) {
+        var file = new File(folder, filename);
+        SpecsIo.write(file, SpecsIo.getResource("pt/up/fe/comp/cp3/driver/" + filename));
+        return file;
+    }
+
+    @Test
+    public void profileWrittenAsJson() {
+        var folder = ProjectTestUtils.getRandomFolder();
+        var input = copyResource("Simple.jmm", folder);
+        var profile = new File(folder, "profile.json");
+
+        Launcher.main(new String[]{"-i=" + input.getAbsolutePath(), "-p=" + profile.getAbsolutePath()});
+
+        var json = SpecsIo.read(profile);
+        for (var phase : new String[]{"parse", "semanticAnalysis", "toOllir", "toJasmin"}) {
+            assertTrue("Expected phase '" + phase + "' in profile:\n" + json, json.contains("\"" + phase + "\""));
+        }
+        assertFalse(PhaseProfiler.isInstalled());
+    }
+
+    @Test
+    public void profilerUninstalledWhenStageFails() {
+        var folder = ProjectTestUtils.getRandomFolder();
+        var input = copyResource("SemanticError.jmm", folder);
+        var profile = new File(folder, "profile.json");
+
+        try {
+            Launcher.main(new String[]{"-i=" + input.getAbsolutePath(), "-p=" + profile.getAbsolutePath()});
+            fail("Expected the semantic error to stop the compilation");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+
+        assertFalse("Profiler still installed after a failed compilation", PhaseProfiler.isInstalled());
+        assertFalse("Profile written for a failed compilation", profile.exists());
+    }
+
+    @Test
+    public void batchCompilesFolder() {
+        var folder = ProjectTestUtils.getRandomFolder();
+        copyResource("Simple.jmm", folder);
+        copyResource("Fields.jmm", folder);
+
+        Launcher.main(new String[]{"-b=" + folder.getAbsolutePath()});
+
+        assertTrue(new File(folder, "Simple.j").isFile());
+        assertTrue(new File(folder, "Fields.j").isFile());
+    }
+
+    @Test
+    public void batchReadsManifest() {
+        var folder = ProjectTestUtils.getRandomFolder();
+        copyResource("Simple.jmm", folder);
+        copyResource("Fields.jmm", folder);
+        var manifest = new File(folder, "inputs.txt");
+        SpecsIo.write(manifest, "# Only one of the classes\nSimple.jmm\n\n");
+
+        Launcher.main(new String[]{"-b=" + manifest.getAbsolutePath()});
+
+        assertTrue(new File(folder, "Simple.j").isFile());
+        assertFalse(new File(folder, "Fields.j").exists());
+    }
+
+    @Test
+    public void batchReportsFailures() {
+        var folder = ProjectTestUtils.getRandomFolder();
+        copyResource("Simple.jmm", folder);
+        copyResource("SemanticError.jmm", folder);
+
+        try {
+            Launcher.main(new String[]{"-b=" + folder.getAbsolutePath() + File.separator + "*.jmm"});
+            fail("Expected the batch compilation to fail");
+        } catch (RuntimeException e) {
+            assertEquals("Batch compilation failed for 1 of 2 files", e.getMessage());
+        }
+
+        // The other files are still compiled
+        assertTrue(new File(folder, "Simple.j").isFile());
+        assertFalse(new File(folder, "SemanticError.j").exists());
+    }
+
+    @Test
+    public void batchProfilesEveryCompilation() {
+        var folder = ProjectTestUtils.getRandomFolder();
+        copyResource("Simple.jmm", folder);
+        copyResource("Fields.jmm", folder);
+        var profile = new File(folder, "profile.json");
+
+        Launcher.main(new String[]{"-b=" + folder.getAbsolutePath(), "-p=" + profile.getAbsolutePath()});
+
+        // The phases of both compilations are summed into a single entry each
+        var json = SpecsIo.read(profile);
+        assertEquals(json, json.indexOf("\"toJasmin\""), json.lastIndexOf("\"toJasmin\""));
+        assertTrue(json, json.contains("\"toJasmin\""));
+    }
+
+    @Test
+    public void classFileFields() throws Exception {
+        var folder = ProjectTestUtils.getRandomFolder();
+        var input = copyResource("ClassFileFields.jmm", folder);
+
+        Launcher.main(new String[]{"-i=" + input.getAbsolutePath(), "-e=class"});
+        assertTrue(new File(folder, "ClassFileFields.class").isFile());
+
+        // Loads and runs the class, so the verifier checks the descriptors of every field and method
+        try (var loader = new URLClassLoader(new java.net.URL[]{folder.toURI().toURL()}, null)) {
+            var fieldsClass = loader.loadClass("ClassFileFields");
+            var constructor = fieldsClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            var instance = constructor.newInstance();
+
+            assertEquals(100, invoke(instance, "setSmall"));
+            assertEquals(300, invoke(instance, "setShort"));
+            assertEquals(70000, invoke(instance, "setLarge"));
+            assertEquals(70000, getField(instance, "a"));
+
+            assertEquals(false, invoke(instance, "setB", true));
+            assertEquals(true, getField(instance, "b"));
+            assertEquals(true, invoke(instance, "setB", false));
+        }
+    }
+
+    @Test
+    public void jasminFields() {
+        var jasminResult = TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cp3/driver/ClassFileFields.jmm"));
+
+        // The same instructions as the class file, with its literals and descriptors
+        CpUtils.matches(CpUtils.getJasminMethod(jasminResult, "setShort"), "sipush\\s+300\\s+putfield");
+        CpUtils.matches(CpUtils.getJasminMethod(jasminResult, "setLarge"), "ldc\\s+70000\\s+putfield");
+        CpUtils.matches(CpUtils.getJasminMethod(jasminResult, "setB"), "invokevirtual\\s+ClassFileFields/negate\\(Z\\)Z");
+
+        jasminResult.compile();
+    }
+
+    @Test
+    public void classFileLargeIncrement() throws Exception {
+        var folder = ProjectTestUtils.getRandomFolder();
+        var input = copyResource("LargeIncrement.jmm", folder);
+
+        Launcher.main(new String[]{"-i=" + input.getAbsolutePath(), "-e=class"});
+        assertTrue(new File(folder, "LargeIncrement.class").isFile());
+
+        try (var loader = new URLClassLoader(new java.net.URL[]{folder.toURI().toURL()}, null)) {
+            var incrementClass = loader.loadClass("LargeIncrement");
+            var constructor = incrementClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            var instance = constructor.newInstance();
+
+            assertEquals(10, invoke(instance, "addSmall", 5));
+            assertEquals(32772, invoke(instance, "addShortMax", 5));
+            assertEquals(32773, invoke(instance, "addAboveShort", 5));
+            assertEquals(100005, invoke(instance, "addLarge", 5));
+        }
+    }
+
+    @Test
+    public void jasminLargeIncrement() {
+        var jasminResult = TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cp3/driver/LargeIncrement.jmm"));
+
+        // Only the literals that fit in a signed short become an iinc
+        CpUtils.matches(CpUtils.getJasminMethod(jasminResult, "addShortMax"), "iinc\\s+1\\s+32767");
+        assertFalse(CpUtils.getJasminMethod(jasminResult, "addLarge").contains("iinc"));
+
+        CpUtils.runJasmin(jasminResult, "10\n32772\n32773\n100005");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void iincRejectsValuesOutOfRange() {
+        new BytecodeBuffer().iinc(1, 100000);
+    }
+
+    private static Object invoke(Object instance, String methodName, Object... args) throws Exception {
+        var method = Arrays.stream(instance.getClass().getDeclaredMethods())
+                .filter(m -> m.getName().equals(methodName))
+                .findFirst()
+                .orElseThrow();
+        method.setAccessible(true);
+        return method.invoke(instance, args);
+    }
+
+    private static Object getField(Object instance, String fieldName) throws Exception {
+        var field = instance.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return field.get(instance);
+    }
+
+    @Test
+    public void daemonRequiresToken() throws Exception {
+        var home = ProjectTestUtils.getRandomFolder();
+        var portFile = startDaemon(home);
+
+        var lines = Files.readAllLines(portFile.toPath());
+        int port = Integer.parseInt(lines.get(0));
+        var token = lines.get(1);
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(portFile.toPath())));
+
+        var folder = ProjectTestUtils.getRandomFolder();
+        copyResource("Simple.jmm", folder);
+        copyResource("SemanticError.jmm", folder);
+
+        // Without the token, the connection is closed before compiling anything
+        assertTrue(request(port, "wrong-token", folder, "-i=Simple.jmm").isEmpty());
+        assertTrue(request(port, "", folder, "-i=Simple.jmm").isEmpty());
+
+        var accepted = request(port, token, folder, "-i=Simple.jmm");
+        assertEquals(CompilerDaemon.ACCEPTED, accepted.get(0));
+        assertEquals(CompilerDaemon.EXIT_PREFIX + "0", accepted.get(accepted.size() - 1));
+
+        // The daemon keeps running after a failed compilation
+        var failed = request(port, token, folder, "-i=SemanticError.jmm");
+        assertEquals(CompilerDaemon.EXIT_PREFIX + "1", failed.get(failed.size() - 1));
+    }
+
+    /**
+     * Starts a daemon on any free port, with the given folder as the user home, and waits for its port file.
+     */
+    private static File startDaemon(File home) throws InterruptedException {
+        var oldHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.getAbsolutePath());
+
+        try {
+            var portFile = CompilerDaemon.getPortFile();
+            var daemon = new Thread(() -> new CompilerDaemon(CompilerConfig.parseArgs(new String[]{"-d"})).run());
+            daemon.setDaemon(true);
+            daemon.start();
+
+            for (int i = 0; i < 600 && !(portFile.isFile() && portFile.length() > 0); i++) {
+                Thread.sleep(50);
+            }
+            assertTrue("Daemon did not write its port file", portFile.isFile());
+
+            return portFile;
+        } finally {
+            System.setProperty("user.home", oldHome);
+        }
+    }
+
+    /**
+     * Sends a request to the daemon and returns every line of its answer.
+     */
+    private static List<String> request(int port, String token, File workingDir, String... args) throws IOException {
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            var out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            out.println(token);
+            out.println(workingDir.getAbsolutePath());
+            for (var arg : args) {
+                out.println(arg);
+            }
+            out.println();
+
+            var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+
+            return lines;
+        }
+    }
+}
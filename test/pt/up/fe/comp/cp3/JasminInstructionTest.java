@@ -0,0 +1,104 @@
+package pt.up.fe.comp.cp3;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.backend.JasminInstruction;
+import pt.up.fe.comp2025.backend.JasminWriter;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JasminInstructionTest {
+
+    private static final String FIXTURES = "test/pt/up/fe/comp/cp3/jasmin";
+
+    @Test
+    public void loadsAndStores() {
+        var load = JasminInstruction.of("iload_2");
+        assertTrue(load.isLoad());
+        assertFalse(load.isStore());
+        assertEquals(2, load.getLocal());
+        assertTrue(load.reads(2));
+
+        var store = JasminInstruction.of("astore", "5");
+        assertTrue(store.isStore());
+        assertEquals(5, store.getLocal());
+        assertFalse(store.reads(5));
+
+        var increment = JasminInstruction.of("iinc", "3", "1");
+        assertEquals(3, increment.getLocal());
+        assertTrue(increment.reads(3));
+
+        assertEquals(-1, JasminInstruction.of("iadd").getLocal());
+    }
+
+    @Test
+    public void branchesAndLabels() {
+        var branch = JasminInstruction.of("if_icmplt", "then0");
+        assertTrue(branch.isBranch());
+        assertEquals("then0", branch.getTarget());
+        assertEquals("if_icmplt then0", branch.toString());
+
+        var label = JasminInstruction.label("then0");
+        assertTrue(label.isLabel());
+        assertNull(label.getOpcode());
+        assertFalse(label.isBranch());
+        assertEquals("then0:", label.toString());
+
+        assertTrue(JasminInstruction.of("ireturn").isReturn());
+        assertNull(JasminInstruction.of("ireturn").getTarget());
+    }
+
+    @Test
+    public void writerIndentsInstructionsOnly() {
+        var code = List.of(
+                JasminInstruction.of("iload_1"),
+                JasminInstruction.of("ifeq", "end"),
+                JasminInstruction.of("iinc", "1", "-1"),
+                JasminInstruction.label("end"),
+                JasminInstruction.of("return"));
+
+        var text = new JasminWriter()
+                .line(".method public f(I)V")
+                .instructions(code)
+                .directive(".limit stack 1")
+                .line(".end method")
+                .toString();
+
+        assertEquals(".method public f(I)V\n"
+                + "   iload_1\n"
+                + "   ifeq end\n"
+                + "   iinc 1 -1\n"
+                + "end:\n"
+                + "   return\n"
+                + "   .limit stack 1\n"
+                + ".end method\n", text);
+    }
+
+    /**
+     * The code written from the instruction lists must be accepted by Jasmin, with and without the peephole pass.
+     */
+    @Test
+    public void everyOllirFixtureAssembles() {
+        var fixtures = SpecsIo.getFilesRecursive(new File(FIXTURES), "ollir");
+        assertFalse("No fixtures found in " + FIXTURES, fixtures.isEmpty());
+
+        for (var optimize : List.of("false", "true")) {
+            for (var fixture : fixtures) {
+                var ollirResult = new OllirResult(SpecsIo.read(fixture), Map.of("optimize", optimize));
+                var jasminResult = TestUtils.backend(ollirResult);
+
+                TestUtils.noErrors(jasminResult);
+                jasminResult.compile();
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package pt.up.fe.comp.cp3;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2025.backend.ClassFileGenerator;
+import pt.up.fe.comp2025.backend.JasminInstruction;
+import pt.up.fe.comp2025.backend.JasminPeephole;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PeepholeTest {
+
+    private static final String RULES_REPORT = "Peephole rules applied: ";
+
+    static JasminResult getJasminResult(String filename, boolean optimize) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", String.valueOf(optimize));
+        return TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/peephole/" + filename), config);
+    }
+
+    static String getRulesReport(JasminResult jasminResult) {
+        return getRulesReport(jasminResult.getReports());
+    }
+
+    static String getRulesReport(List<Report> reports) {
+        return reports.stream()
+                .filter(report -> report.getType() == ReportType.LOG)
+                .map(report -> report.getMessage())
+                .filter(message -> message.startsWith(RULES_REPORT))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Parses the counters of the report, written as '{rule=count, ...}'.
+     */
+    static Map<String, Integer> getHits(String report) {
+        Map<String, Integer> hits = new HashMap<>();
+        var counters = report.substring(RULES_REPORT.length() + 1, report.length() - 1);
+
+        for (var counter : counters.split(", ")) {
+            var parts = counter.split("=");
+            hits.put(parts[0], Integer.parseInt(parts[1]));
+        }
+
+        return hits;
+    }
+
+    static List<String> optimize(JasminPeephole peephole, JasminInstruction... instructions) {
+        List<JasminInstruction> code = new ArrayList<>(List.of(instructions));
+        peephole.optimize(code);
+
+        return code.stream().map(JasminInstruction::toString).toList();
+    }
+
+    @Test
+    public void everyRuleReported() {
+        var jasminResult = getJasminResult("PeepholeRules.jmm", true);
+        TestUtils.noErrors(jasminResult);
+
+        var report = getRulesReport(jasminResult);
+        assertNotNull("Expected a log report with the peephole counters", report);
+
+        var hits = getHits(report);
+        for (var rule : List.of("dead store-load", "goto next", "boolean branch", "constant branch",
+                "double negation", "negated branch")) {
+            assertTrue("Expected rule '" + rule + "' to be applied, got " + report,
+                    hits.getOrDefault(rule, 0) >= 1);
+        }
+
+        // The optimized code must still pass the verifier
+        CpUtils.runJasmin(jasminResult, "");
+    }
+
+    @Test
+    public void optimizedCodeShape() {
+        var jasminResult = getJasminResult("PeepholeRules.jmm", true);
+
+        var doubleNegation = CpUtils.getJasminMethod(jasminResult, "doubleNegation");
+        assertFalse("Expected double negation to be removed:\n" + doubleNegation, doubleNegation.contains("ixor"));
+
+        var negatedBranch = CpUtils.getJasminMethod(jasminResult, "negatedBranch");
+        assertFalse("Expected negation to be folded into the branch:\n" + negatedBranch, negatedBranch.contains("ixor"));
+
+        var constantBranch = CpUtils.getJasminMethod(jasminResult, "constantBranch");
+        assertFalse("Expected the constant condition to be removed:\n" + constantBranch,
+                constantBranch.contains("ifne") || constantBranch.contains("ifeq"));
+    }
+
+    /**
+     * With '-o -e=class', the class file is written from the same optimized instructions as the Jasmin code.
+     */
+    @Test
+    public void classFileAppliesRules() throws Exception {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        var ollirResult = TestUtils.optimize(
+                SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/peephole/PeepholeRules.jmm"), config);
+
+        var classFileGen = new ClassFileGenerator(ollirResult);
+        var bytes = classFileGen.build();
+
+        var report = getRulesReport(classFileGen.getReports());
+        assertNotNull(report);
+        assertEquals(getRulesReport(getJasminResult("PeepholeRules.jmm", true)), report);
+
+        // Creating an instance links the class, so the verifier checks the optimized code
+        var rulesClass = new BytesClassLoader().define("PeepholeRules", bytes);
+        var constructor = rulesClass.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        var instance = constructor.newInstance();
+
+        assertEquals(5, invoke(instance, "storeLoad", int.class, 4));
+        assertEquals(true, invoke(instance, "doubleNegation", boolean.class, true));
+        assertEquals(1, invoke(instance, "negatedBranch", boolean.class, false));
+        assertEquals(2, invoke(instance, "booleanBranch", int.class, 3));
+    }
+
+    private static Object invoke(Object instance, String methodName, Class<?> paramType, Object arg)
+            throws Exception {
+        var method = instance.getClass().getDeclaredMethod(methodName, paramType);
+        method.setAccessible(true);
+        return method.invoke(instance, arg);
+    }
+
+    private static class BytesClassLoader extends ClassLoader {
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    @Test
+    public void noPeepholeWithoutOptimize() {
+        var jasminResult = getJasminResult("PeepholeRules.jmm", false);
+        TestUtils.noErrors(jasminResult);
+
+        assertNull(getRulesReport(jasminResult));
+    }
+
+    @Test
+    public void deadStoreLoad() {
+        var peephole = JasminPeephole.withDefaultRules();
+        var code = optimize(peephole,
+                JasminInstruction.of("iload_1"),
+                JasminInstruction.of("istore_2"),
+                JasminInstruction.of("iload_2"),
+                JasminInstruction.of("ireturn"));
+
+        assertEquals(List.of("iload_1", "ireturn"), code);
+        assertEquals(Integer.valueOf(1), peephole.getHits().get("dead store-load"));
+    }
+
+    @Test
+    public void storeLoadKeptWhenReadLater() {
+        var peephole = JasminPeephole.withDefaultRules();
+        var code = optimize(peephole,
+                JasminInstruction.of("iload_1"),
+                JasminInstruction.of("istore_2"),
+                JasminInstruction.of("iload_2"),
+                JasminInstruction.of("iload_2"),
+                JasminInstruction.of("iadd"),
+                JasminInstruction.of("ireturn"));
+
+        assertEquals(6, code.size());
+        assertEquals(Integer.valueOf(0), peephole.getHits().get("dead store-load"));
+    }
+
+    @Test
+    public void gotoNext() {
+        var peephole = JasminPeephole.withDefaultRules();
+        var code = optimize(peephole,
+                JasminInstruction.of("goto", "L1"),
+                JasminInstruction.label("L1"),
+                JasminInstruction.of("return"));
+
+        assertEquals(List.of("L1:", "return"), code);
+        assertEquals(Integer.valueOf(1), peephole.getHits().get("goto next"));
+    }
+
+    @Test
+    public void booleanBranch() {
+        var peephole = JasminPeephole.withDefaultRules();
+        var code = optimize(peephole,
+                JasminInstruction.of("if_icmplt", "T"),
+                JasminInstruction.of("iconst_0"),
+                JasminInstruction.of("goto", "E"),
+                JasminInstruction.label("T"),
+                JasminInstruction.of("iconst_1"),
+                JasminInstruction.label("E"),
+                JasminInstruction.of("ifeq", "L"),
+                JasminInstruction.of("return"),
+                JasminInstruction.label("L"),
+                JasminInstruction.of("return"));
+
+        assertEquals(List.of("if_icmpge L", "return", "L:", "return"), code);
+        assertEquals(Integer.valueOf(1), peephole.getHits().get("boolean branch"));
+    }
+
+    @Test
+    public void constantBranch() {
+        var peephole = JasminPeephole.withDefaultRules();
+        var code = optimize(peephole,
+                JasminInstruction.label("L"),
+                JasminInstruction.of("iconst_0"),
+                JasminInstruction.of("ifne", "L"),
+                JasminInstruction.of("iconst_1"),
+                JasminInstruction.of("ifne", "L"),
+                JasminInstruction.of("return"));
+
+        assertEquals(List.of("L:", "goto L", "return"), code);
+        assertEquals(Integer.valueOf(2), peephole.getHits().get("constant branch"));
+    }
+
+    @Test
+    public void doubleNegation() {
+        var peephole = JasminPeephole.withDefaultRules();
+        var code = optimize(peephole,
+                JasminInstruction.of("iload_1"),
+                JasminInstruction.of("iconst_1"),
+                JasminInstruction.of("ixor"),
+                JasminInstruction.of("iconst_1"),
+                JasminInstruction.of("ixor"),
+                JasminInstruction.of("ireturn"));
+
+        assertEquals(List.of("iload_1", "ireturn"), code);
+        assertEquals(Integer.valueOf(1), peephole.getHits().get("double negation"));
+    }
+
+    @Test
+    public void negatedBranch() {
+        var peephole = JasminPeephole.withDefaultRules();
+        var code = optimize(peephole,
+                JasminInstruction.of("iload_1"),
+                JasminInstruction.of("iconst_1"),
+                JasminInstruction.of("ixor"),
+                JasminInstruction.of("ifne", "L"),
+                JasminInstruction.of("return"),
+                JasminInstruction.label("L"),
+                JasminInstruction.of("return"));
+
+        assertEquals(List.of("iload_1", "ifeq L", "return", "L:", "return"), code);
+        assertEquals(Integer.valueOf(1), peephole.getHits().get("negated branch"));
+    }
+}
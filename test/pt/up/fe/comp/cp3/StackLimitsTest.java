@@ -0,0 +1,106 @@
+package pt.up.fe.comp.cp3;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2025.backend.JasminInstruction;
+import pt.up.fe.comp2025.backend.JasminStackAnalysis;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StackLimitsTest {
+
+    static JasminResult getJasminResult(String filename, boolean debug) {
+        Map<String, String> config = new HashMap<>();
+        config.put("debug", String.valueOf(debug));
+        return TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cp3/jasmin/" + filename), config);
+    }
+
+    static int getLimitStack(JasminResult jasminResult, String methodName) {
+        var methodCode = CpUtils.getJasminMethod(jasminResult, methodName);
+        return Integer.parseInt(SpecsStrings.getRegexGroup(methodCode, CpUtils.getLimitStackRegex(), 1));
+    }
+
+    static List<String> getWarnings(JasminResult jasminResult) {
+        return jasminResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.WARNING)
+                .map(report -> report.getMessage())
+                .toList();
+    }
+
+    @Test
+    public void exactLimitStack() {
+        var jasminResult = getJasminResult("limits/StackLimits.jmm", false);
+
+        assertEquals(2, getLimitStack(jasminResult, "sum"));
+        assertEquals(4, getLimitStack(jasminResult, "call"));
+        assertEquals(3, getLimitStack(jasminResult, "store"));
+        assertEquals(4, getLimitStack(jasminResult, "branches"));
+
+        CpUtils.runJasmin(jasminResult, "6");
+    }
+
+    @Test
+    public void debugWarnsWhenCountersDiffer() {
+        var warnings = getWarnings(getJasminResult("limits/StackLimits.jmm", true));
+
+        assertEquals(List.of(
+                "Method store needs a stack of 3, but the stack counters of the generator give 4",
+                "Method branches needs a stack of 4, but the stack counters of the generator give 5"), warnings);
+    }
+
+    @Test
+    public void noWarningsWithoutDebug() {
+        assertTrue(getWarnings(getJasminResult("limits/StackLimits.jmm", false)).isEmpty());
+    }
+
+    @Test
+    public void maxStackFollowsBranches() {
+        // The deepest stack is only reached on the branch taken when the argument is zero
+        var code = List.of(
+                JasminInstruction.of("iload_1"),
+                JasminInstruction.of("ifeq", "deep"),
+                JasminInstruction.of("iconst_1"),
+                JasminInstruction.of("ireturn"),
+                JasminInstruction.label("deep"),
+                JasminInstruction.of("iconst_1"),
+                JasminInstruction.of("iconst_2"),
+                JasminInstruction.of("iconst_3"),
+                JasminInstruction.of("iadd"),
+                JasminInstruction.of("iadd"),
+                JasminInstruction.of("ireturn"));
+
+        assertEquals(3, JasminStackAnalysis.computeMaxStack(code));
+    }
+
+    @Test
+    public void invokeStackEffect() {
+        assertEquals(-1, JasminStackAnalysis.getStackEffect(JasminInstruction.of("invokestatic", "io/println(I)V")));
+        assertEquals(-3, JasminStackAnalysis.getStackEffect(
+                JasminInstruction.of("invokevirtual", "StackLimits/sum(III)I")));
+        assertEquals(-4, JasminStackAnalysis.getStackEffect(
+                JasminInstruction.of("invokevirtual", "A/f([ILjava/lang/String;Z)V")));
+        assertEquals(-1, JasminStackAnalysis.getStackEffect(JasminInstruction.of("invokespecial", "A/<init>()V")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void inconsistentHeightRejected() {
+        var code = List.of(
+                JasminInstruction.of("iload_1"),
+                JasminInstruction.of("ifeq", "end"),
+                JasminInstruction.of("iconst_1"),
+                JasminInstruction.label("end"),
+                JasminInstruction.of("return"));
+
+        JasminStackAnalysis.computeMaxStack(code);
+    }
+}